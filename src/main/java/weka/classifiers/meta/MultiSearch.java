@@ -26,11 +26,13 @@ import weka.classifiers.RandomizableSingleClassifierEnhancer;
 import weka.classifiers.functions.LinearRegression;
 import weka.classifiers.meta.multisearch.AbstractEvaluationFactory;
 import weka.classifiers.meta.multisearch.AbstractEvaluationMetrics;
+import weka.classifiers.meta.multisearch.AbstractMultiThreadedSearch;
 import weka.classifiers.meta.multisearch.AbstractSearch;
 import weka.classifiers.meta.multisearch.AbstractSearch.SearchResult;
 import weka.classifiers.meta.multisearch.DefaultEvaluationFactory;
 import weka.classifiers.meta.multisearch.DefaultSearch;
 import weka.classifiers.meta.multisearch.MultiSearchCapable;
+import weka.classifiers.meta.multisearch.ParameterGroupOwner;
 import weka.classifiers.meta.multisearch.Performance;
 import weka.classifiers.meta.multisearch.PerformanceComparator;
 import weka.classifiers.meta.multisearch.TraceableOptimizer;
@@ -40,6 +42,7 @@ import weka.core.Capabilities.Capability;
 import weka.core.Debug;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.InstancesFingerprint;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.PropertyPath;
@@ -69,6 +72,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -128,6 +136,10 @@ import java.util.Vector;
  *  FNR = False negative rate (per class)
  *  (default: CC)</pre>
  * 
+ * <pre> -additional-metrics "&lt;comma-separated list of metrics&gt;"
+ *  Additional metrics to compute and log, apart from the one used for evaluation.
+ *  (default: none)</pre>
+ * 
  * <pre> -class-label "&lt;1-based index&gt;"
  *  The class label index to retrieve the metric for (if applicable).
  * </pre>
@@ -144,6 +156,11 @@ import java.util.Vector;
  *  The log file to log the messages to.
  *  (default: none)</pre>
  * 
+ * <pre> -parallel-groups
+ *  Whether to search the parameter groups at the same time rather
+ *  than one after the other, sharing the pool of the search algorithm.
+ *  (default: off)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -230,6 +247,12 @@ public class MultiSearch
   /** the type of evaluation. */
   protected int m_Evaluation;
 
+  /** the additional metrics to compute (comma-separated list of tag IDs). */
+  protected String m_AdditionalMetrics = "";
+
+  /** the IDs of the metrics to compute, null if not yet determined. */
+  protected transient int[] m_MetricIDs;
+
   /** the class label index (if applicable). */
   protected SingleIndex m_ClassLabel;
 
@@ -251,6 +274,15 @@ public class MultiSearch
   /** for tracking the setups. */
   protected List<Entry<Integer, Performance>> m_Trace;
 
+  /** whether to search the parameter groups concurrently. */
+  protected boolean m_ParallelGroups = false;
+
+  /** whether the search has been stopped. */
+  protected transient volatile boolean m_StopRequested;
+
+  /** the search algorithms of the groups searched concurrently, null if none. */
+  protected transient AbstractSearch[] m_GroupAlgorithms;
+
   /**
    * the default constructor.
    */
@@ -402,6 +434,11 @@ public class MultiSearch
         + "\t(default: " + new SelectedTag(m_Metrics.getDefaultMetric(), m_Metrics.getTags()) + ")",
       "E", 1, "-E " + Tag.toOptionList(m_Metrics.getTags())));
 
+    result.addElement(new Option(
+      "\tAdditional metrics to compute and log, apart from the one used for evaluation.\n"
+	+ "\t(default: none)",
+      "additional-metrics", 1, "-additional-metrics \"<comma-separated list of metrics>\""));
+
     result.addElement(new Option(
       "\tThe class label index to retrieve the metric for (if applicable).\n",
       "class-label", 1, "-class-label \"<1-based index>\""));
@@ -419,6 +456,12 @@ public class MultiSearch
         + "\t(default: none)",
       "log-file", 1, "-log-file <filename>"));
 
+    result.addElement(new Option(
+      "\tWhether to search the parameter groups at the same time rather\n"
+	+ "\tthan one after the other, sharing the pool of the search algorithm.\n"
+	+ "\t(default: off)",
+      "parallel-groups", 0, "-parallel-groups"));
+
     en = super.listOptions();
     while (en.hasMoreElements())
       result.addElement(en.nextElement());
@@ -442,6 +485,11 @@ public class MultiSearch
     result.add("-E");
     result.add("" + getEvaluation());
 
+    if (!getAdditionalMetrics().isEmpty()) {
+      result.add("-additional-metrics");
+      result.add(getAdditionalMetrics());
+    }
+
     for (i = 0; i < getSearchParameters().length; i++) {
       result.add("-search");
       result.add(getCommandline(getSearchParameters()[i]));
@@ -456,6 +504,9 @@ public class MultiSearch
     result.add("-log-file");
     result.add("" + getLogFile());
 
+    if (getParallelGroups())
+      result.add("-parallel-groups");
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -483,6 +534,8 @@ public class MultiSearch
     else
       setEvaluation(new SelectedTag(m_Metrics.getDefaultMetric(), m_Metrics.getTags()));
 
+    setAdditionalMetrics(Utils.getOption("additional-metrics", options));
+
     search = new Vector<String>();
     do {
       tmpStr = Utils.getOption("search", options);
@@ -526,6 +579,8 @@ public class MultiSearch
     else
       setLogFile(new File(System.getProperty("user.dir")));
 
+    setParallelGroups(Utils.getFlag("parallel-groups", options));
+
     super.setOptions(options);
   }
 
@@ -686,6 +741,7 @@ public class MultiSearch
   public void setEvaluation(SelectedTag value) {
     if (value.getTags() == m_Metrics.getTags()) {
       m_Evaluation = value.getSelectedTag().getID();
+      m_MetricIDs  = null;
     }
   }
 
@@ -698,6 +754,85 @@ public class MultiSearch
     return new SelectedTag(m_Evaluation, m_Metrics.getTags());
   }
 
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String additionalMetricsTipText() {
+    return
+      "The comma-separated list of additional metrics to compute and log, "
+	+ "apart from the one used for evaluation (eg 'ACC,AUC').";
+  }
+
+  /**
+   * Sets the additional metrics to compute.
+   *
+   * @param value 	the comma-separated list of metrics
+   */
+  public void setAdditionalMetrics(String value) {
+    parseMetrics(value);
+    m_AdditionalMetrics = value.trim();
+    m_MetricIDs         = null;
+  }
+
+  /**
+   * Returns the additional metrics to compute.
+   *
+   * @return 		the comma-separated list of metrics
+   */
+  public String getAdditionalMetrics() {
+    return m_AdditionalMetrics;
+  }
+
+  /**
+   * Parses the comma-separated list of metrics.
+   *
+   * @param value	the list to parse
+   * @return		the IDs of the metrics
+   * @throws IllegalArgumentException	if a metric is unknown
+   */
+  protected List<Integer> parseMetrics(String value) {
+    List<Integer>	result;
+
+    result = new ArrayList<Integer>();
+    for (String metric: value.split(",")) {
+      if (metric.trim().isEmpty())
+	continue;
+      result.add(new SelectedTag(metric.trim(), m_Metrics.getTags()).getSelectedTag().getID());
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the IDs of the metrics to compute: the one used for evaluation,
+   * followed by the additional ones.
+   *
+   * @return		the metric IDs
+   */
+  public int[] getMetricIDs() {
+    List<Integer>	ids;
+    int[]		result;
+    int			i;
+
+    if (m_MetricIDs == null) {
+      ids = new ArrayList<Integer>();
+      ids.add(m_Evaluation);
+      for (Integer id: parseMetrics(m_AdditionalMetrics)) {
+	if (!ids.contains(id))
+	  ids.add(id);
+      }
+      result = new int[ids.size()];
+      for (i = 0; i < ids.size(); i++)
+	result[i] = ids.get(i);
+      m_MetricIDs = result;
+    }
+
+    return m_MetricIDs;
+  }
+
   /**
    * Returns the tip text for this property.
    *
@@ -726,6 +861,36 @@ public class MultiSearch
     m_LogFile = value;
   }
 
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String parallelGroupsTipText() {
+    return
+      "If enabled, the parameter groups get searched at the same time rather "
+	+ "than one after the other, sharing the pool of the search algorithm.";
+  }
+
+  /**
+   * Gets whether to search the parameter groups concurrently.
+   *
+   * @return 		true if concurrently
+   */
+  public boolean getParallelGroups() {
+    return m_ParallelGroups;
+  }
+
+  /**
+   * Sets whether to search the parameter groups concurrently.
+   *
+   * @param value 	true if concurrently
+   */
+  public void setParallelGroups(boolean value) {
+    m_ParallelGroups = value;
+  }
+
   /**
    * returns the best Classifier setup.
    *
@@ -939,10 +1104,8 @@ public class MultiSearch
    * @param performances	the performances to align
    */
   public void logPerformances(Space space, Vector<Performance> performances) {
-    int		i;
-
-    for (i = 0; i < m_Metrics.getTags().length; i++)
-      log("\n" + logPerformances(space, performances, m_Metrics.getTags()[i]), true);
+    for (int id: getMetricIDs())
+      log("\n" + logPerformances(space, performances, new SelectedTag(id, m_Metrics.getTags()).getSelectedTag()), true);
   }
 
   /**
@@ -982,7 +1145,7 @@ public class MultiSearch
       List<String> dimensions = m_Algorithm.getSearchDimensions();
       for (int i = 0; i < dimensions.size(); ++i) {
     	String parameter = dimensions.get(i);
-    	Object value = m_Trace.get(index).getValue().getValues().getValue(i);
+    	Object value = m_Trace.get(index).getValue().getPoint().getValue(i);
     	Map.Entry<String, Object> current = new AbstractMap.SimpleEntry<String,Object>(parameter,value);
     	parameterSettings.add(i, current);
       }
@@ -1038,6 +1201,165 @@ public class MultiSearch
     return result;
   }
 
+  /**
+   * Stops the search, eg from another thread. If the search algorithm
+   * supports it, the outstanding evaluations get cancelled and the best
+   * setup found so far gets used. Remaining parameter groups that have
+   * not been searched yet get skipped.
+   *
+   * @see AbstractMultiThreadedSearch#stopSearch()
+   */
+  public void stopSearch() {
+    AbstractSearch[]	algorithms;
+    int			i;
+
+    m_StopRequested = true;
+    if (m_Algorithm instanceof AbstractMultiThreadedSearch)
+      ((AbstractMultiThreadedSearch) m_Algorithm).stopSearch();
+    algorithms = m_GroupAlgorithms;
+    if (algorithms != null) {
+      for (i = 0; i < algorithms.length; i++) {
+	if (algorithms[i] instanceof AbstractMultiThreadedSearch)
+	  ((AbstractMultiThreadedSearch) algorithms[i]).stopSearch();
+      }
+    }
+  }
+
+  /**
+   * Returns whether the search has been stopped, either via
+   * {@link #stopSearch()} or by interrupting the search algorithm.
+   *
+   * @return		true if stopped
+   */
+  protected boolean isStopRequested() {
+    if (m_StopRequested)
+      return true;
+    if (m_Algorithm instanceof AbstractMultiThreadedSearch)
+      return ((AbstractMultiThreadedSearch) m_Algorithm).isStopRequested();
+    return false;
+  }
+
+  /**
+   * Returns the setup generator for the group of parameters.
+   *
+   * @param group	the parameters of the group
+   * @return		the generator
+   */
+  protected SetupGenerator newGenerator(AbstractParameter[] group) {
+    SetupGenerator	result;
+
+    result = new SetupGenerator();
+    result.setBaseObject(this);
+    result.setParameters(group.clone());
+    result.setBaseObject((Serializable) getClassifier());
+
+    return result;
+  }
+
+  /**
+   * Returns a job for searching a parameter group.
+   *
+   * @param algorithm	the search algorithm of the group
+   * @param data	the data to search
+   * @return		the job
+   */
+  protected Callable<SearchResult> newGroupSearch(final AbstractSearch algorithm, final Instances data) {
+    return new Callable<SearchResult>() {
+      @Override
+      public SearchResult call() throws Exception {
+	return algorithm.search(data);
+      }
+    };
+  }
+
+  /**
+   * Searches the parameter groups at the same time. Each group gets its own
+   * copy of the search algorithm and its own setup generator, the last
+   * group uses the actual search algorithm. If the algorithm is
+   * multi-threaded, all groups share a single pool.
+   *
+   * @param data	the data to search
+   * @param fingerprint	the fingerprint of the data
+   * @param groups	the parameter groups
+   * @return		the search results, in the order of the groups
+   * @throws Exception	if a search fails
+   */
+  protected List<SearchResult> searchGroupsConcurrently(Instances data, long fingerprint, List<AbstractParameter[]> groups) throws Exception {
+    List<SearchResult>		result;
+    AbstractSearch[]		algorithms;
+    SetupGenerator[]		generators;
+    List<Future<SearchResult>>	futures;
+    ExecutorService		pool;
+    ExecutorService		drivers;
+    int				last;
+    int				i;
+
+    log("\n---> searching " + groups.size() + " groups concurrently");
+
+    last       = groups.size() - 1;
+    algorithms = new AbstractSearch[groups.size()];
+    generators = new SetupGenerator[groups.size()];
+    for (i = 0; i < groups.size(); i++) {
+      generators[i] = newGenerator(groups.get(i));
+      if (i == last)
+	algorithms[i] = m_Algorithm;
+      else
+	algorithms[i] = (AbstractSearch) new SerializedObject(m_Algorithm).getObject();
+    }
+    m_Generator       = generators[last];
+    m_GroupAlgorithms = algorithms;
+    m_Algorithm.setOwner(this);
+    // the copies missed a stop request that came in while copying
+    if (m_StopRequested)
+      stopSearch();
+
+    pool = null;
+    if (m_Algorithm instanceof AbstractMultiThreadedSearch)
+      pool = ((AbstractMultiThreadedSearch) m_Algorithm).newExecutorPool();
+    drivers = Executors.newFixedThreadPool(groups.size());
+    futures = new ArrayList<Future<SearchResult>>();
+    result  = new ArrayList<SearchResult>();
+    try {
+      for (i = 0; i < groups.size(); i++) {
+	if (i < last)
+	  algorithms[i].setOwner(new ParameterGroupOwner(this, algorithms[i], generators[i]));
+	if (pool != null)
+	  ((AbstractMultiThreadedSearch) algorithms[i]).setExternalExecutorPool(pool);
+	algorithms[i].setDataFingerprint(data, fingerprint);
+	futures.add(drivers.submit(newGroupSearch(algorithms[i], data)));
+      }
+      for (i = 0; i < groups.size(); i++) {
+	while (result.size() == i) {
+	  try {
+	    result.add(futures.get(i).get());
+	  }
+	  catch (InterruptedException e) {
+	    // let the groups return their best setups so far
+	    log("\n---> search interrupted");
+	    stopSearch();
+	  }
+	  catch (ExecutionException e) {
+	    if (e.getCause() instanceof Exception)
+	      throw (Exception) e.getCause();
+	    throw e;
+	  }
+	}
+	log("\n---> group #" + (i+1) + ": " + result.get(i).performance);
+	m_Trace.addAll(algorithms[i].getTrace());
+      }
+    }
+    finally {
+      m_GroupAlgorithms = null;
+      drivers.shutdownNow();
+      if (pool != null) {
+	pool.shutdownNow();
+	((AbstractMultiThreadedSearch) m_Algorithm).setExternalExecutorPool(null);
+      }
+    }
+
+    return result;
+  }
+
   /**
    * builds the classifier.
    *
@@ -1052,16 +1374,25 @@ public class MultiSearch
     List<SearchResult>		results;
     PerformanceComparator	comp;
     StringBuilder		invalid;
+    long			fingerprint;
 
     m_Trace.clear();
+    m_StopRequested = false;
+    if (m_Algorithm instanceof AbstractMultiThreadedSearch)
+      ((AbstractMultiThreadedSearch) m_Algorithm).resetStopRequest();
 
     // can classifier handle the data?
     getCapabilities().testWithFail(data);
 
-    // remove instances with missing class
+    // remove instances with missing class; the search and the final model
+    // must not share the instances with the caller (the folds of the
+    // evaluations are views on this copy)
     data = new Instances(data);
     data.deleteWithMissingClass();
 
+    // the same for all the groups
+    fingerprint = InstancesFingerprint.compute(data);
+
     // split into groups
     groups = groupParameters();
 
@@ -1069,10 +1400,10 @@ public class MultiSearch
     invalid = new StringBuilder();
     for (i = 0; i < groups.size(); i++) {
       for (n = 0; n < groups.get(i).length; n++) {
-	if (PropertyPath.find(getClassifier(), new Path(((AbstractPropertyParameter) m_Parameters[i]).getProperty())) == null) {
+	if (PropertyPath.find(getClassifier(), new Path(((AbstractPropertyParameter) groups.get(i)[n]).getProperty())) == null) {
 	  if (invalid.length() > 0)
 	    invalid.append("\n");
-	  invalid.append("- group " + (i+1) + ", parameter " + (n+1) + ": ").append(((AbstractPropertyParameter) m_Parameters[i]).getProperty());
+	  invalid.append("- group " + (i+1) + ", parameter " + (n+1) + ": ").append(((AbstractPropertyParameter) groups.get(i)[n]).getProperty());
 	}
       }
     }
@@ -1080,21 +1411,29 @@ public class MultiSearch
       throw new Exception("Property path(s) in parameter(s) are invalid:\n" + invalid);
 
     // search each group
-    results = new ArrayList<SearchResult>();
-    for (i = 0; i < groups.size(); i++) {
-      if (groups.size() > 1)
-        log("\n---> group #" + (i+1));
+    if (m_ParallelGroups && (groups.size() > 1)) {
+      results = searchGroupsConcurrently(data, fingerprint, groups);
+    }
+    else {
+      results = new ArrayList<SearchResult>();
+      for (i = 0; i < groups.size(); i++) {
+	if (groups.size() > 1)
+	  log("\n---> group #" + (i+1));
+
+	m_Generator = newGenerator(groups.get(i));
 
-      m_Generator = new SetupGenerator();
-      m_Generator.setBaseObject(this);
-      m_Generator.setParameters(groups.get(i).clone());
-      m_Generator.setBaseObject((Serializable) getClassifier());
+	m_Algorithm.setOwner(this);
+	m_Algorithm.setDataFingerprint(data, fingerprint);
+	result = m_Algorithm.search(data);
+	results.add(result);
 
-      m_Algorithm.setOwner(this);
-      result = m_Algorithm.search(data);
-      results.add(result);
+	m_Trace.addAll(m_Algorithm.getTrace());
 
-      m_Trace.addAll(m_Algorithm.getTrace());
+	if (isStopRequested() && (i < groups.size() - 1)) {
+	  log("\n---> search stopped, skipping remaining groups");
+	  break;
+	}
+      }
     }
 
     // find best classifier among groups
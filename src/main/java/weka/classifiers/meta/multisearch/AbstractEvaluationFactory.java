@@ -22,7 +22,7 @@ package weka.classifiers.meta.multisearch;
 
 import weka.core.Instances;
 import weka.core.SetupGenerator;
-import weka.core.setupgenerator.Point;
+import weka.core.setupgenerator.GridPoint;
 
 import java.io.Serializable;
 
@@ -59,11 +59,11 @@ public abstract class AbstractEvaluationFactory<M extends AbstractEvaluationMetr
    * @param train	the training data
    * @param test	the test data
    * @param generator	the generator
-   * @param values	the values
+   * @param point	the point in the space
    * @param folds	the number of folds
    * @param eval	the evaluation
    * @param classLabel	the class label index (0-based; if applicable)
    * @return		the task
    */
-  public abstract T newTask(MultiSearchCapable owner, Instances train, Instances test, SetupGenerator generator, Point<Object> values, int folds, int eval, int classLabel);
+  public abstract T newTask(MultiSearchCapable owner, Instances train, Instances test, SetupGenerator generator, GridPoint point, int folds, int eval, int classLabel);
 }
@@ -42,6 +42,21 @@ public abstract class AbstractEvaluationMetrics
    */
   public abstract Tag[] getTags();
 
+  /**
+   * Returns the largest ID of all the tags.
+   *
+   * @return		the largest ID, -1 if no tags
+   */
+  public int getMaxID() {
+    int		result;
+
+    result = -1;
+    for (Tag tag: getTags())
+      result = Math.max(result, tag.getID());
+
+    return result;
+  }
+
   /**
    * Returns the ID of default metric to use.
    *
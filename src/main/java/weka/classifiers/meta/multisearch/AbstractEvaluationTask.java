@@ -22,7 +22,7 @@ package weka.classifiers.meta.multisearch;
 
 import weka.core.Instances;
 import weka.core.SetupGenerator;
-import weka.core.setupgenerator.Point;
+import weka.core.setupgenerator.GridPoint;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -47,7 +47,7 @@ public abstract class AbstractEvaluationTask
   protected SetupGenerator m_Generator;
 
   /** the setup. */
-  protected Point<Object> m_Values;
+  protected GridPoint m_Point;
 
   /** the number of folds for cross-validation. */
   protected int m_Folds;
@@ -61,6 +61,9 @@ public abstract class AbstractEvaluationTask
   /** an exception that occurred during evaluation. */
   protected Exception m_Exception;
 
+  /** the time the evaluation started (0 = not started yet). */
+  protected volatile long m_StartTime;
+
   /**
    * Initializes the task.
    *
@@ -68,14 +71,14 @@ public abstract class AbstractEvaluationTask
    * @param train		the training data
    * @param test		the test data, can be null
    * @param generator		the generator to use
-   * @param values		the setup values
+   * @param point		the point in the space
    * @param folds		the number of cross-validation folds
    * @param eval		the type of evaluation
    * @param classLabel		the class label index (0-based; if applicable)
    */
   public AbstractEvaluationTask(
     MultiSearchCapable owner, Instances train, Instances test,
-    SetupGenerator generator, Point<Object> values, int folds, int eval, int classLabel) {
+    SetupGenerator generator, GridPoint point, int folds, int eval, int classLabel) {
 
     super();
 
@@ -83,7 +86,7 @@ public abstract class AbstractEvaluationTask
     m_Train      = train;
     m_Test       = test;
     m_Generator  = generator;
-    m_Values     = values;
+    m_Point      = point;
     m_Folds      = folds;
     m_Evaluation = eval;
     m_ClassLabel = classLabel;
@@ -96,6 +99,42 @@ public abstract class AbstractEvaluationTask
     }
   }
 
+  /**
+   * Returns the setup that gets evaluated.
+   *
+   * @return		the point in the space
+   */
+  public GridPoint getPoint() {
+    return m_Point;
+  }
+
+  /**
+   * Returns the number of cross-validation folds.
+   *
+   * @return		the number of folds
+   */
+  public int getFolds() {
+    return m_Folds;
+  }
+
+  /**
+   * Returns the class label index.
+   *
+   * @return		the index (0-based; if applicable)
+   */
+  public int getClassLabel() {
+    return m_ClassLabel;
+  }
+
+  /**
+   * Returns the time the evaluation started.
+   *
+   * @return		the time in msec, 0 if not started yet
+   */
+  public long getStartTime() {
+    return m_StartTime;
+  }
+
   /**
    * Performs the evaluation.
    *
@@ -109,6 +148,7 @@ public abstract class AbstractEvaluationTask
   public Boolean call() throws Exception {
     Boolean 	result;
 
+    m_StartTime = System.currentTimeMillis();
     try {
       result = doRun();
     }
@@ -123,14 +163,14 @@ public abstract class AbstractEvaluationTask
   }
 
   /**
-   * Cleans up after the task finishes.
+   * Cleans up after the task finishes. The point is kept for identifying
+   * the setup afterwards.
    */
   public void cleanUp() {
     m_Owner     = null;
     m_Train     = null;
     m_Test      = null;
     m_Generator = null;
-    m_Values    = null;
   }
 
   /**
@@ -20,14 +20,32 @@
 
 package weka.classifiers.meta.multisearch;
 
+import weka.classifiers.Classifier;
 import weka.core.Instances;
 import weka.core.Option;
+import weka.core.PropertyPath;
+import weka.core.PropertyPath.Path;
+import weka.core.SelectedTag;
+import weka.core.Tag;
 import weka.core.Utils;
+import weka.core.setupgenerator.GridPoint;
 
+import java.beans.PropertyDescriptor;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Ancestor for multi-threaded searches.
@@ -38,12 +56,91 @@ import java.util.concurrent.Executors;
 public abstract class AbstractMultiThreadedSearch
   extends AbstractSearch {
 
+  /** executor: fixed pool per search. */
+  public static final int EXECUTOR_FIXED = 0;
+
+  /** executor: process-wide shared scheduler. */
+  public static final int EXECUTOR_SHARED = 1;
+
+  /** executor: virtual thread per task (JDK 21+). */
+  public static final int EXECUTOR_VIRTUAL = 2;
+
+  /** the executor types. */
+  public static final Tag[] TAGS_EXECUTOR = {
+    new Tag(EXECUTOR_FIXED, "FIXED", "Fixed thread pool per search"),
+    new Tag(EXECUTOR_SHARED, "SHARED", "Process-wide shared scheduler"),
+    new Tag(EXECUTOR_VIRTUAL, "VIRTUAL", "Virtual thread per task"),
+  };
+
   /** The number of threads to have executing at any one time. */
   protected int m_NumExecutionSlots = 1;
 
+  /** whether to evaluate cross-validation folds in parallel. */
+  protected boolean m_FoldParallel = false;
+
+  /** the type of executor to use. */
+  protected int m_Executor = EXECUTOR_FIXED;
+
+  /** whether to skip failed evaluations instead of aborting the search. */
+  protected boolean m_SkipFailures = false;
+
+  /** the maximum time in seconds for evaluating a single setup (0 = unlimited). */
+  protected int m_TaskTimeout = 0;
+
+  /** the maximum time in seconds for the search (0 = unlimited). */
+  protected int m_MaxTime = 0;
+
+  /** the maximum number of evaluations for the search (0 = unlimited). */
+  protected int m_MaxEvaluations = 0;
+
+  /** the interval in msec for checking whether the search got stopped. */
+  public static final long STOP_CHECK_INTERVAL = 500;
+
+  /** the total number of threads for the search (0 = no budget, -1 = number of processors). */
+  protected int m_CPUBudget = 0;
+
+  /** the number of threads per evaluation task (0 = determine automatically). */
+  protected int m_TaskThreads = 0;
+
+  /** the default property path for the number of threads of the base classifier. */
+  public static final String DEFAULT_TASK_THREADS_PROPERTY = "numExecutionSlots";
+
+  /** the placeholder for no property path on the command-line. */
+  public static final String NO_TASK_THREADS_PROPERTY = "none";
+
+  /** the property path of the base classifier for the number of threads per task. */
+  protected String m_TaskThreadsProperty = DEFAULT_TASK_THREADS_PROPERTY;
+
+  /** the fraction of the work of a task assumed to scale with its threads (Amdahl's law). */
+  public static final double TASK_PARALLEL_FRACTION = 0.9;
+
+  /** the number of tasks to run concurrently under the CPU budget (0 = not allocated yet). */
+  protected transient int m_AllocatedSlots;
+
+  /** the number of threads to configure per task (0 = leave classifier unchanged). */
+  protected transient int m_AllocatedTaskThreads;
+
+  /** the setups (folds/index) that failed to evaluate, null if none. */
+  protected transient Set<PerformanceCache.Key> m_FailedSetups;
+
+  /** the time by which the search has to finish (0 = unlimited). */
+  protected transient long m_Deadline;
+
+  /** the number of evaluations submitted so far. */
+  protected transient int m_NumEvaluations;
+
+  /** whether the search has been stopped or interrupted. */
+  protected transient volatile boolean m_StopRequested;
+
+  /** whether the budget of the search has been exhausted. */
+  protected transient boolean m_BudgetExhausted;
+
   /** Pool of threads to train models with. */
   protected transient ExecutorService m_ExecutorPool;
 
+  /** the externally managed pool to use instead of an own one, null if none. */
+  protected transient ExecutorService m_ExternalExecutorPool;
+
   /**
    * Gets an enumeration describing the available options.
    *
@@ -61,6 +158,77 @@ public abstract class AbstractMultiThreadedSearch
 	+ "\t(default 1 - i.e. no parallelism)",
       "num-slots", 1, "-num-slots <num>"));
 
+    result.addElement(new Option(
+      "\tWhether to evaluate the cross-validation folds of a setup in\n"
+	+ "\tparallel as well, using a work-stealing (fork/join) pool.\n"
+	+ "\tThe results are identical to the serial evaluation.\n"
+	+ "\t(default: off)",
+      "fold-parallel", 0, "-fold-parallel"));
+
+    result.addElement(new Option(
+      "\tThe type of executor for the evaluation tasks:\n"
+	+ "\tFIXED = thread pool with num-slots threads per search\n"
+	+ "\tSHARED = process-wide scheduler shared by all searches,\n"
+	+ "\tsized to the number of processors, with fair queuing between\n"
+	+ "\tthe searches; num-slots limits the tasks of a search running\n"
+	+ "\tat the same time, folds do not get evaluated in parallel;\n"
+	+ "\tnested searches run their tasks sequentially in the task\n"
+	+ "\tof the enclosing search\n"
+	+ "\tVIRTUAL = virtual thread per task (JDK 21+), num-slots limits\n"
+	+ "\tthe tasks running at the same time, folds do not get evaluated\n"
+	+ "\tin parallel; falls back to FIXED on older JVMs\n"
+	+ "\t(default: FIXED)",
+      "executor", 1, "-executor " + Tag.toOptionList(TAGS_EXECUTOR)));
+
+    result.addElement(new Option(
+      "\tWhether to skip setups whose evaluation failed instead of\n"
+	+ "\tcancelling the outstanding evaluations and aborting the search.\n"
+	+ "\t(default: off)",
+      "skip-failures", 0, "-skip-failures"));
+
+    result.addElement(new Option(
+      "\tThe maximum time in seconds for evaluating a single setup;\n"
+	+ "\tsetups that take longer get recorded as failed and their\n"
+	+ "\tevaluation gets interrupted; the timeout is cooperative, ie\n"
+	+ "\tclassifiers that ignore interrupts keep occupying their\n"
+	+ "\texecution slot until they finish.\n"
+	+ "\t(default: 0 = unlimited)",
+      "task-timeout", 1, "-task-timeout <seconds>"));
+
+    result.addElement(new Option(
+      "\tThe maximum time in seconds for the search; once exhausted,\n"
+	+ "\tthe best setup found so far is returned.\n"
+	+ "\t(default: 0 = unlimited)",
+      "max-time", 1, "-max-time <seconds>"));
+
+    result.addElement(new Option(
+      "\tThe maximum number of evaluations for the search; once exhausted,\n"
+	+ "\tthe best setup found so far is returned.\n"
+	+ "\t(default: 0 = unlimited)",
+      "max-evaluations", 1, "-max-evaluations <num>"));
+
+    result.addElement(new Option(
+      "\tThe total number of threads for the search, shared between the\n"
+	+ "\tevaluation tasks running concurrently and the threads of each\n"
+	+ "\ttask (ie of the base classifier); overrides num-slots.\n"
+	+ "\t(default: 0 = no budget, -1 = number of processors)",
+      "cpu-budget", 1, "-cpu-budget <num>"));
+
+    result.addElement(new Option(
+      "\tThe number of threads each evaluation task uses under the CPU\n"
+	+ "\tbudget; 0 chooses the number automatically if the base classifier\n"
+	+ "\thas the task threads property, otherwise tasks are assumed to be\n"
+	+ "\tsingle-threaded.\n"
+	+ "\t(default: 0)",
+      "task-threads", 1, "-task-threads <num>"));
+
+    result.addElement(new Option(
+      "\tThe property path of the base classifier for the number of\n"
+	+ "\tthreads per task, eg 'classifier.numExecutionSlots';\n"
+	+ "\t'" + NO_TASK_THREADS_PROPERTY + "' disables it.\n"
+	+ "\t(default: " + DEFAULT_TASK_THREADS_PROPERTY + ")",
+      "task-threads-property", 1, "-task-threads-property <path>"));
+
     en = super.listOptions();
     while (en.hasMoreElements())
       result.addElement(en.nextElement());
@@ -84,6 +252,36 @@ public abstract class AbstractMultiThreadedSearch
     result.add("-num-slots");
     result.add("" + getNumExecutionSlots());
 
+    if (getFoldParallel())
+      result.add("-fold-parallel");
+
+    result.add("-executor");
+    result.add("" + getExecutor());
+
+    if (getSkipFailures())
+      result.add("-skip-failures");
+
+    result.add("-task-timeout");
+    result.add("" + getTaskTimeout());
+
+    result.add("-max-time");
+    result.add("" + getMaxTime());
+
+    result.add("-max-evaluations");
+    result.add("" + getMaxEvaluations());
+
+    result.add("-cpu-budget");
+    result.add("" + getCPUBudget());
+
+    result.add("-task-threads");
+    result.add("" + getTaskThreads());
+
+    result.add("-task-threads-property");
+    if (getTaskThreadsProperty().isEmpty())
+      result.add(NO_TASK_THREADS_PROPERTY);
+    else
+      result.add(getTaskThreadsProperty());
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -107,6 +305,52 @@ public abstract class AbstractMultiThreadedSearch
     else
       setNumExecutionSlots(1);
 
+    setFoldParallel(Utils.getFlag("fold-parallel", options));
+
+    tmpStr = Utils.getOption("executor", options);
+    if (tmpStr.length() != 0)
+      setExecutor(new SelectedTag(tmpStr, TAGS_EXECUTOR));
+    else
+      setExecutor(new SelectedTag(EXECUTOR_FIXED, TAGS_EXECUTOR));
+
+    setSkipFailures(Utils.getFlag("skip-failures", options));
+
+    tmpStr = Utils.getOption("task-timeout", options);
+    if (tmpStr.length() != 0)
+      setTaskTimeout(Integer.parseInt(tmpStr));
+    else
+      setTaskTimeout(0);
+
+    tmpStr = Utils.getOption("max-time", options);
+    if (tmpStr.length() != 0)
+      setMaxTime(Integer.parseInt(tmpStr));
+    else
+      setMaxTime(0);
+
+    tmpStr = Utils.getOption("max-evaluations", options);
+    if (tmpStr.length() != 0)
+      setMaxEvaluations(Integer.parseInt(tmpStr));
+    else
+      setMaxEvaluations(0);
+
+    tmpStr = Utils.getOption("cpu-budget", options);
+    if (tmpStr.length() != 0)
+      setCPUBudget(Integer.parseInt(tmpStr));
+    else
+      setCPUBudget(0);
+
+    tmpStr = Utils.getOption("task-threads", options);
+    if (tmpStr.length() != 0)
+      setTaskThreads(Integer.parseInt(tmpStr));
+    else
+      setTaskThreads(0);
+
+    tmpStr = Utils.getOption("task-threads-property", options);
+    if (tmpStr.length() != 0)
+      setTaskThreadsProperty(tmpStr);
+    else
+      setTaskThreadsProperty(DEFAULT_TASK_THREADS_PROPERTY);
+
     super.setOptions(options);
   }
 
@@ -142,15 +386,737 @@ public abstract class AbstractMultiThreadedSearch
       "constructing the ensemble.";
   }
 
+  /**
+   * Sets whether to evaluate the cross-validation folds in parallel.
+   *
+   * @param value 	true if to evaluate folds in parallel
+   */
+  public void setFoldParallel(boolean value) {
+    m_FoldParallel = value;
+  }
+
+  /**
+   * Returns whether to evaluate the cross-validation folds in parallel.
+   *
+   * @return 		true if to evaluate folds in parallel
+   */
+  public boolean getFoldParallel() {
+    return m_FoldParallel;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String foldParallelTipText() {
+    return
+      "If enabled, the cross-validation folds of a setup get evaluated in "
+	+ "parallel as well, using a work-stealing (fork/join) pool; the results "
+	+ "are identical to the serial evaluation.";
+  }
+
+  /**
+   * Sets the type of executor to use.
+   *
+   * @param value 	the type
+   */
+  public void setExecutor(SelectedTag value) {
+    if (value.getTags() == TAGS_EXECUTOR)
+      m_Executor = value.getSelectedTag().getID();
+  }
+
+  /**
+   * Returns the type of executor to use.
+   *
+   * @return 		the type
+   */
+  public SelectedTag getExecutor() {
+    return new SelectedTag(m_Executor, TAGS_EXECUTOR);
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String executorTipText() {
+    return
+      "The type of executor for the evaluation tasks; SHARED uses a "
+	+ "process-wide scheduler sized to the number of processors, which "
+	+ "queues the tasks of concurrent searches fairly and limits each "
+	+ "search to the number of execution slots (searches nested in an "
+	+ "evaluated classifier run their tasks sequentially within the task "
+	+ "of the enclosing search); VIRTUAL runs each task in "
+	+ "its own virtual thread (JDK 21+, otherwise FIXED is used), limited to "
+	+ "the number of execution slots, so that blocking tasks do not occupy "
+	+ "platform threads.";
+  }
+
+  /**
+   * Sets whether to skip failed evaluations instead of aborting the search.
+   *
+   * @param value 	true if to skip failures
+   */
+  public void setSkipFailures(boolean value) {
+    m_SkipFailures = value;
+  }
+
+  /**
+   * Returns whether to skip failed evaluations instead of aborting the search.
+   *
+   * @return 		true if to skip failures
+   */
+  public boolean getSkipFailures() {
+    return m_SkipFailures;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String skipFailuresTipText() {
+    return
+      "If enabled, setups whose evaluation failed get skipped; otherwise the "
+	+ "outstanding evaluations get cancelled as soon as a failure is "
+	+ "encountered and the search is aborted.";
+  }
+
+  /**
+   * Sets the maximum time for evaluating a single setup. Evaluations that
+   * exceed it only stop once the classifier checks for interrupts.
+   *
+   * @param value 	the time in seconds, 0 for unlimited
+   */
+  public void setTaskTimeout(int value) {
+    if (value >= 0)
+      m_TaskTimeout = value;
+  }
+
+  /**
+   * Returns the maximum time for evaluating a single setup.
+   *
+   * @return 		the time in seconds, 0 for unlimited
+   */
+  public int getTaskTimeout() {
+    return m_TaskTimeout;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String taskTimeoutTipText() {
+    return
+      "The maximum time in seconds for evaluating a single setup (0 = unlimited); "
+	+ "setups that take longer get recorded as failed and their evaluation "
+	+ "gets interrupted; the timeout is cooperative, ie classifiers that "
+	+ "ignore interrupts keep occupying their execution slot until they finish.";
+  }
+
+  /**
+   * Sets the maximum time for the search.
+   *
+   * @param value 	the time in seconds, 0 for unlimited
+   */
+  public void setMaxTime(int value) {
+    if (value >= 0)
+      m_MaxTime = value;
+  }
+
+  /**
+   * Returns the maximum time for the search.
+   *
+   * @return 		the time in seconds, 0 for unlimited
+   */
+  public int getMaxTime() {
+    return m_MaxTime;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String maxTimeTipText() {
+    return
+      "The maximum time in seconds for the search (0 = unlimited); once "
+	+ "exhausted, the best setup found so far is returned.";
+  }
+
+  /**
+   * Sets the maximum number of evaluations for the search.
+   *
+   * @param value 	the maximum, 0 for unlimited
+   */
+  public void setMaxEvaluations(int value) {
+    if (value >= 0)
+      m_MaxEvaluations = value;
+  }
+
+  /**
+   * Returns the maximum number of evaluations for the search.
+   *
+   * @return 		the maximum, 0 for unlimited
+   */
+  public int getMaxEvaluations() {
+    return m_MaxEvaluations;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String maxEvaluationsTipText() {
+    return
+      "The maximum number of evaluations for the search (0 = unlimited); once "
+	+ "exhausted, the best setup found so far is returned.";
+  }
+
+  /**
+   * Sets the total number of threads for the search.
+   *
+   * @param value 	the number of threads, 0 for no budget, -1 for the
+   * 			number of processors
+   */
+  public void setCPUBudget(int value) {
+    if (value >= -1)
+      m_CPUBudget = value;
+  }
+
+  /**
+   * Returns the total number of threads for the search.
+   *
+   * @return 		the number of threads, 0 for no budget, -1 for the
+   * 			number of processors
+   */
+  public int getCPUBudget() {
+    return m_CPUBudget;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String CPUBudgetTipText() {
+    return
+      "The total number of threads for the search (0 = no budget, -1 = number "
+	+ "of processors), shared between the evaluation tasks running "
+	+ "concurrently and the threads of each task; overrides the number of "
+	+ "execution slots.";
+  }
+
+  /**
+   * Sets the number of threads each evaluation task uses under the CPU budget.
+   *
+   * @param value 	the number of threads, 0 to determine automatically
+   */
+  public void setTaskThreads(int value) {
+    if (value >= 0)
+      m_TaskThreads = value;
+  }
+
+  /**
+   * Returns the number of threads each evaluation task uses under the CPU budget.
+   *
+   * @return 		the number of threads, 0 to determine automatically
+   */
+  public int getTaskThreads() {
+    return m_TaskThreads;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String taskThreadsTipText() {
+    return
+      "The number of threads each evaluation task uses under the CPU budget; "
+	+ "0 chooses the number automatically if the base classifier has the "
+	+ "task threads property, otherwise tasks are assumed to be single-threaded.";
+  }
+
+  /**
+   * Sets the property path of the base classifier for the number of
+   * threads per task.
+   *
+   * @param value 	the property path, empty or {@link #NO_TASK_THREADS_PROPERTY}
+   * 			if not available
+   */
+  public void setTaskThreadsProperty(String value) {
+    if ((value == null) || value.trim().equals(NO_TASK_THREADS_PROPERTY))
+      value = "";
+    m_TaskThreadsProperty = value.trim();
+  }
+
+  /**
+   * Returns the property path of the base classifier for the number of
+   * threads per task.
+   *
+   * @return 		the property path, empty if not available
+   */
+  public String getTaskThreadsProperty() {
+    return m_TaskThreadsProperty;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String taskThreadsPropertyTipText() {
+    return
+      "The property path of the base classifier for the number of threads per "
+	+ "task (eg 'classifier.numExecutionSlots'), which gets set according to "
+	+ "the CPU budget; ignored if the base classifier does not have it, "
+	+ "'" + NO_TASK_THREADS_PROPERTY + "' disables it.";
+  }
+
+  /**
+   * Returns the total number of threads for the search.
+   *
+   * @return		the number of threads, 0 if no budget
+   */
+  public int getEffectiveCPUBudget() {
+    if (m_CPUBudget == -1)
+      return Runtime.getRuntime().availableProcessors();
+    return m_CPUBudget;
+  }
+
+  /**
+   * Returns whether the number of threads of the base classifier can be set
+   * via the task threads property.
+   *
+   * @return		true if the property is available
+   * @see		#getTaskThreadsProperty()
+   */
+  protected boolean hasTaskThreadsProperty() {
+    PropertyDescriptor	desc;
+
+    if (m_TaskThreadsProperty.isEmpty() || (m_Owner == null) || (m_Owner.getClassifier() == null))
+      return false;
+
+    try {
+      desc = PropertyPath.getPropertyDescriptor(m_Owner.getClassifier(), new Path(m_TaskThreadsProperty));
+    }
+    catch (Exception e) {
+      return false;
+    }
+
+    return (desc != null)
+      && (desc.getWriteMethod() != null)
+      && ((desc.getPropertyType() == Integer.TYPE) || (desc.getPropertyType() == Integer.class));
+  }
+
+  /**
+   * Splits the CPU budget into the number of tasks to run concurrently and
+   * the number of threads per task. Running tasks concurrently scales best,
+   * so threads per task are only used if there are fewer setups to
+   * evaluate than threads, with the split that minimizes the time for
+   * evaluating all setups, assuming that {@link #TASK_PARALLEL_FRACTION}
+   * of the work of a task scales with its threads.
+   *
+   * @param budget		the total number of threads
+   * @param taskThreads		the fixed number of threads per task, 0 to choose
+   * @param configurable	whether the number of threads per task can be set
+   * @param numSetups		the number of setups to evaluate, -1 if unknown
+   * @return			the number of concurrent tasks and threads per task
+   */
+  protected static int[] allocate(int budget, int taskThreads, boolean configurable, long numSetups) {
+    int[]	result;
+    long	tasks;
+    int		slots;
+    int		threads;
+    double	cost;
+    double	best;
+
+    budget = Math.max(1, budget);
+    if (numSetups < 1)
+      tasks = budget;
+    else
+      tasks = Math.min(budget, numSetups);
+
+    // fixed demand per task
+    if (taskThreads > 0)
+      return new int[]{(int) Math.max(1, Math.min(budget / taskThreads, tasks)), taskThreads};
+
+    // single-threaded tasks
+    if (!configurable || (numSetups < 1))
+      return new int[]{(int) tasks, 1};
+
+    result = null;
+    best   = 0;
+    for (slots = 1; slots <= tasks; slots++) {
+      threads = budget / slots;
+      cost    = Math.ceil((double) numSetups / slots) * ((1.0 - TASK_PARALLEL_FRACTION) + TASK_PARALLEL_FRACTION / threads);
+      if ((result == null) || (cost <= best)) {
+	best   = cost;
+	result = new int[]{slots, threads};
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the number of setups that the search evaluates at most at the
+   * same time, used for splitting the CPU budget.
+   *
+   * @return		the number of setups, -1 if unknown
+   */
+  protected long estimateNumSetups() {
+    long	result;
+
+    if (m_Space == null)
+      return -1;
+
+    result = m_Space.size();
+    if (m_MaxEvaluations > 0)
+      result = Math.min(result, m_MaxEvaluations);
+
+    return result;
+  }
+
+  /**
+   * Splits the CPU budget into concurrent tasks and threads per task.
+   *
+   * @param numSetups	the number of setups to evaluate, -1 if unknown
+   * @see		#allocate(int, int, boolean, long)
+   */
+  protected void allocateCPUBudget(long numSetups) {
+    int[]	alloc;
+    int		budget;
+    boolean	configurable;
+
+    budget       = getEffectiveCPUBudget();
+    configurable = hasTaskThreadsProperty();
+    alloc        = allocate(budget, m_TaskThreads, configurable, numSetups);
+    m_AllocatedSlots = alloc[0];
+    if (configurable)
+      m_AllocatedTaskThreads = alloc[1];
+    else
+      m_AllocatedTaskThreads = 0;
+
+    log("CPU budget of " + budget + " thread(s): "
+      + alloc[0] + " concurrent task(s) with " + alloc[1] + " thread(s) each"
+      + (configurable ? " (" + m_TaskThreadsProperty + ")" : ""));
+  }
+
+  /**
+   * Returns the number of evaluation tasks to run at the same time, ie the
+   * number of execution slots or the number of concurrent tasks under the
+   * CPU budget.
+   *
+   * @return		the number of tasks
+   */
+  public int getEffectiveNumExecutionSlots() {
+    if (m_CPUBudget == 0)
+      return m_NumExecutionSlots;
+    if (m_AllocatedSlots == 0)
+      allocateCPUBudget(-1);
+    return m_AllocatedSlots;
+  }
+
+  /**
+   * Sets the number of threads per task in the classifier to evaluate,
+   * according to the CPU budget.
+   *
+   * @param classifier	the classifier to configure
+   * @throws Exception	if setting the property fails
+   */
+  public void applyTaskThreads(Classifier classifier) throws Exception {
+    if (m_AllocatedTaskThreads > 0) {
+      if (!PropertyPath.setValue(classifier, new Path(m_TaskThreadsProperty), m_AllocatedTaskThreads))
+	throw new IllegalStateException("Failed to set threads per task via property: " + m_TaskThreadsProperty);
+    }
+  }
+
+  /**
+   * Stops the search, eg from another thread. No further setups get
+   * evaluated, the outstanding evaluations get cancelled and the search
+   * returns the best setup found so far. Interrupting the thread running
+   * the search has the same effect.
+   * <br>
+   * The request also applies to a search that has not started yet, ie it
+   * stays in effect until {@link #resetStopRequest()} gets called.
+   */
+  public void stopSearch() {
+    m_StopRequested = true;
+  }
+
+  /**
+   * Clears a previous stop request, to be called before starting a new
+   * search.
+   *
+   * @see		#stopSearch()
+   */
+  public void resetStopRequest() {
+    m_StopRequested = false;
+  }
+
+  /**
+   * Returns whether the search has been stopped or interrupted.
+   *
+   * @return		true if stopped
+   * @see		#stopSearch()
+   */
+  public boolean isStopRequested() {
+    return m_StopRequested;
+  }
+
+  /**
+   * Returns whether the search has to stop, ie whether it has been stopped
+   * or the maximum time has been reached.
+   *
+   * @return		true if the search has to stop
+   */
+  protected boolean isStopped() {
+    if (m_StopRequested)
+      return true;
+    if ((m_Deadline > 0) && (System.currentTimeMillis() >= m_Deadline)) {
+      if (!m_BudgetExhausted)
+	log("Maximum search time of " + m_MaxTime + "s reached!");
+      m_BudgetExhausted = true;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether the budget of the search has been exhausted or the
+   * search has been stopped, ie no further setups get evaluated.
+   *
+   * @return		true if exhausted
+   */
+  protected boolean isBudgetExhausted() {
+    return isStopped() || m_BudgetExhausted;
+  }
+
+  /**
+   * Checks whether another setup can get evaluated and, if so, counts it
+   * towards the maximum number of evaluations.
+   *
+   * @return		true if the setup can get evaluated
+   */
+  protected boolean acquireEvaluation() {
+    if (isStopped())
+      return false;
+    if ((m_MaxEvaluations > 0) && (m_NumEvaluations >= m_MaxEvaluations)) {
+      if (!m_BudgetExhausted)
+	log("Maximum number of evaluations (" + m_MaxEvaluations + ") reached!");
+      m_BudgetExhausted = true;
+      return false;
+    }
+    m_NumEvaluations++;
+    return true;
+  }
+
+  /**
+   * Checks whether further evaluations fit into the budget, without
+   * counting them yet (eg speculative evaluations that only count once
+   * required by the search).
+   *
+   * @param reserved	the number of evaluations submitted but not counted yet
+   * @return		true if within the budget
+   */
+  protected boolean hasEvaluationBudget(int reserved) {
+    if (isBudgetExhausted())
+      return false;
+    return (m_MaxEvaluations <= 0) || (m_NumEvaluations + reserved < m_MaxEvaluations);
+  }
+
+  /**
+   * Returns the time to wait for a result before checking on the search
+   * and the evaluations again.
+   *
+   * @param start	the start time of the earliest running evaluation,
+   * 			0 if none running
+   * @return		the time in msec
+   */
+  protected long nextWait(long start) {
+    long	result;
+    long	now;
+
+    now    = System.currentTimeMillis();
+    result = STOP_CHECK_INTERVAL;
+    if (m_Deadline > 0)
+      result = Math.min(result, m_Deadline - now);
+    if ((m_TaskTimeout > 0) && (start > 0))
+      result = Math.min(result, start + m_TaskTimeout * 1000L - now);
+
+    return Math.max(1, result);
+  }
+
+  /**
+   * Returns whether the evaluation has exceeded the task timeout.
+   *
+   * @param start	the start time of the evaluation, 0 if not started
+   * @return		true if timed out
+   */
+  protected boolean isTimedOut(long start) {
+    return (m_TaskTimeout > 0) && (start > 0) && (System.currentTimeMillis() - start >= m_TaskTimeout * 1000L);
+  }
+
+  /**
+   * Records the setup whose evaluation exceeded the task timeout as failed,
+   * with a performance without any metrics. Any result that the evaluation
+   * may still produce gets discarded.
+   *
+   * @param folds	the number of folds
+   * @param point	the setup
+   * @param classLabel	the class label index (0-based; if applicable)
+   */
+  protected void timedOut(int folds, GridPoint point, int classLabel) {
+    log(point + ": timed out after " + m_TaskTimeout + "s, interrupting evaluation");
+    try {
+      addPerformance(new Performance(point, null, m_Owner.getEvaluation().getSelectedTag().getID(), classLabel, m_Owner.getMetricIDs(), m_Owner.getGenerator()), folds);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to record timed out setup: " + point);
+      e.printStackTrace();
+    }
+    addFailed(folds, point);
+  }
+
+  /**
+   * Waits for the next evaluation to complete. Evaluations that exceed the
+   * task timeout get cancelled and recorded as failed. Cancelling only
+   * interrupts the thread of the evaluation, which keeps running (and
+   * occupying its slot) until the classifier reacts to the interrupt, its
+   * result gets discarded. If the search gets
+   * stopped or interrupted, or the maximum time is reached, all outstanding
+   * evaluations get cancelled and recorded as failed as well, so that any
+   * result they may still produce gets discarded.
+   *
+   * @param completion	the completion service the evaluations were submitted to
+   * @param pending	the outstanding evaluations, the caller has to remove
+   * 			the returned one
+   * @return		the completed evaluation, null if none outstanding or
+   * 			the search has been stopped
+   */
+  protected Future<Boolean> nextCompleted(CompletionService<Boolean> completion, Map<Future<Boolean>,AbstractEvaluationTask> pending) {
+    Future<Boolean>						future;
+    Iterator<Map.Entry<Future<Boolean>,AbstractEvaluationTask>>	iter;
+    Map.Entry<Future<Boolean>,AbstractEvaluationTask>		entry;
+    long							start;
+
+    while (!pending.isEmpty()) {
+      if (isStopped()) {
+	iter = pending.entrySet().iterator();
+	while (iter.hasNext()) {
+	  entry = iter.next();
+	  addFailed(entry.getValue().getFolds(), entry.getValue().getPoint());
+	}
+	cancelPending(pending.keySet());
+	pending.clear();
+	return null;
+      }
+
+      // earliest running evaluation
+      start = 0;
+      iter  = pending.entrySet().iterator();
+      while (iter.hasNext()) {
+	entry = iter.next();
+	if ((entry.getValue().getStartTime() > 0) && ((start == 0) || (entry.getValue().getStartTime() < start)))
+	  start = entry.getValue().getStartTime();
+      }
+
+      try {
+	future = completion.poll(nextWait(start), TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) {
+	log("Search interrupted!");
+	stopSearch();
+	continue;
+      }
+      // cancelled evaluations get queued as well
+      if ((future != null) && pending.containsKey(future))
+	return future;
+
+      // timeouts
+      if (m_TaskTimeout > 0) {
+	iter = pending.entrySet().iterator();
+	while (iter.hasNext()) {
+	  entry = iter.next();
+	  if (isTimedOut(entry.getValue().getStartTime()) && entry.getKey().cancel(true)) {
+	    timedOut(entry.getValue().getFolds(), entry.getValue().getPoint(), entry.getValue().getClassLabel());
+	    iter.remove();
+	  }
+	}
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Sets an externally managed pool to use instead of creating an own one,
+   * eg for sharing a pool between searches. The pool does not get shut
+   * down by the search.
+   *
+   * @param value	the pool, null to create an own one
+   */
+  public void setExternalExecutorPool(ExecutorService value) {
+    m_ExternalExecutorPool = value;
+  }
+
+  /**
+   * Creates a new pool of execution threads, according to the executor type.
+   *
+   * @return		the pool
+   */
+  public ExecutorService newExecutorPool() {
+    SharedEvaluationScheduler	scheduler;
+    ExecutorService		result;
+    int				slots;
+
+    slots = getEffectiveNumExecutionSlots();
+    if (m_Executor == EXECUTOR_SHARED) {
+      scheduler = SharedEvaluationScheduler.getSingleton();
+      log("Using shared scheduler with " + scheduler.getNumThreads() + " threads and " + slots + " slots...");
+      return scheduler.newExecutor(slots);
+    }
+
+    if (m_Executor == EXECUTOR_VIRTUAL) {
+      result = VirtualThreadExecutor.newExecutor(slots);
+      if (result != null) {
+	log("Using virtual threads with " + slots + " slots...");
+	return result;
+      }
+      log("Virtual threads not supported by JVM, falling back to fixed thread pool...");
+    }
+
+    log("Starting thread pool with " + slots + " slots...");
+    if (m_FoldParallel)
+      return new ForkJoinPool(slots);
+    else
+      return Executors.newFixedThreadPool(slots);
+  }
+
   /**
    * Start the pool of execution threads.
    */
   protected void startExecutorPool() {
     stopExecutorPool();
 
-    log("Starting thread pool with " + m_NumExecutionSlots + " slots...");
-
-    m_ExecutorPool = Executors.newFixedThreadPool(m_NumExecutionSlots);
+    if (m_ExternalExecutorPool != null)
+      m_ExecutorPool = m_ExternalExecutorPool;
+    else
+      m_ExecutorPool = newExecutorPool();
   }
 
   /**
@@ -159,16 +1125,158 @@ public abstract class AbstractMultiThreadedSearch
   protected void stopExecutorPool() {
     log("Shutting down thread pool...");
 
-    if (m_ExecutorPool != null)
+    if ((m_ExecutorPool != null) && (m_ExecutorPool != m_ExternalExecutorPool))
       m_ExecutorPool.shutdownNow();
 
     m_ExecutorPool = null;
   }
 
+  /**
+   * Checks the outcome of an evaluation task. Failures either get logged
+   * and skipped or result in an exception, depending on whether failures
+   * are to be skipped.
+   *
+   * @param success	the result of the task, null if it failed with an exception
+   * @param task	the task, for the error message
+   * @param cause	the exception the task failed with, null if none
+   * @return		true if successful, false if failed and skipped
+   * @throws IllegalStateException	if failed and not skipped
+   * @see		#getSkipFailures()
+   */
+  protected boolean checkResult(Boolean success, Object task, Throwable cause) {
+    if (Boolean.TRUE.equals(success))
+      return true;
+
+    if (m_SkipFailures) {
+      log("Skipping failed evaluation:\n" + task);
+      return false;
+    }
+
+    System.err.println("Execution of evaluation thread failed:\n" + task);
+    throw new IllegalStateException("Execution of evaluation thread failed:\n" + task, cause);
+  }
+
+  /**
+   * Checks the outcome of a completed evaluation task. Skipped setups get
+   * recorded as failed.
+   *
+   * @param future	the completed future of the task
+   * @param task	the task
+   * @return		true if successful, false if failed and skipped
+   * @throws InterruptedException	if interrupted
+   * @throws IllegalStateException	if failed and not skipped
+   * @see		#checkResult(Boolean, Object, Throwable)
+   */
+  protected boolean checkResult(Future<Boolean> future, AbstractEvaluationTask task) throws InterruptedException {
+    boolean	result;
+
+    try {
+      result = checkResult(future.get(), task, null);
+    }
+    catch (ExecutionException e) {
+      result = checkResult(null, task, e.getCause());
+    }
+    if (!result)
+      addFailed(task.getFolds(), task.getPoint());
+
+    return result;
+  }
+
+  /**
+   * Records a setup whose evaluation failed, so that its performance does
+   * not get considered.
+   *
+   * @param folds	the number of folds
+   * @param point	the setup
+   * @see		#removeFailedPerformances(int)
+   */
+  protected void addFailed(int folds, GridPoint point) {
+    if (m_FailedSetups == null)
+      m_FailedSetups = Collections.synchronizedSet(new HashSet<PerformanceCache.Key>());
+    m_FailedSetups.add(new PerformanceCache.Key(folds, point.getIndex()));
+  }
+
+  /**
+   * Returns whether the evaluation of the setup failed.
+   *
+   * @param folds	the number of folds
+   * @param point	the setup
+   * @return		true if failed
+   */
+  protected boolean isFailed(int folds, GridPoint point) {
+    return (m_FailedSetups != null) && m_FailedSetups.contains(new PerformanceCache.Key(folds, point.getIndex()));
+  }
+
+  /**
+   * Removes the performances of the setups whose evaluation failed from the
+   * current performances, including cached ones.
+   *
+   * @param folds	the number of folds of the current performances
+   * @return		true if performances are left, false if none are left
+   * 			because the budget got exhausted or the search got
+   * 			stopped
+   * @throws IllegalStateException	if all evaluations failed
+   */
+  protected boolean removeFailedPerformances(int folds) {
+    int		i;
+
+    for (i = m_Performances.size() - 1; i >= 0; i--) {
+      if (isFailed(folds, m_Performances.get(i).getPoint()))
+	m_Performances.remove(i);
+    }
+    if (m_Performances.isEmpty()) {
+      if (isBudgetExhausted())
+	return false;
+      throw new IllegalStateException("All evaluations failed!");
+    }
+
+    return true;
+  }
+
+  /**
+   * Adds the performance to the cache and the current list of performances.
+   * Results of evaluations that got recorded as failed already (eg after
+   * timing out) get discarded.
+   *
+   * @param performance	the performance to add
+   * @param folds	the number of folds
+   */
+  @Override
+  public void addPerformance(Performance performance, int folds) {
+    if (isFailed(folds, performance.getPoint())) {
+      log(performance.getPoint() + ": discarding result of failed evaluation");
+      return;
+    }
+    super.addPerformance(performance, folds);
+  }
+
+  /**
+   * Cancels the outstanding evaluations, interrupting the running ones.
+   *
+   * @param futures	the futures of the evaluations
+   */
+  protected void cancelPending(Collection<Future<Boolean>> futures) {
+    Iterator<Future<Boolean>>	iter;
+    Future<Boolean>		future;
+    int				count;
+
+    count = 0;
+    iter  = futures.iterator();
+    while (iter.hasNext()) {
+      future = iter.next();
+      if (!future.isDone() && future.cancel(true))
+	count++;
+    }
+    if (count > 0)
+      log("Cancelled " + count + " outstanding evaluation(s)");
+  }
+
   /**
    * Called before the search is executed.
    * <br>
-   * Starts the thread pool.
+   * Splits the CPU budget (if any) and starts the thread pool. With an
+   * externally managed pool, the number of setups is unknown when the pool
+   * gets created, so tasks are kept single-threaded.
    *
    * @param data	the dataset to use
    * @throws Exception	if search fails
@@ -176,6 +1284,17 @@ public abstract class AbstractMultiThreadedSearch
   @Override
   public void preSearch(Instances data) throws Exception {
     super.preSearch(data);
+    m_FailedSetups    = Collections.synchronizedSet(new HashSet<PerformanceCache.Key>());
+    m_NumEvaluations  = 0;
+    m_BudgetExhausted = false;
+    if (m_MaxTime > 0)
+      m_Deadline = System.currentTimeMillis() + m_MaxTime * 1000L;
+    else
+      m_Deadline = 0;
+    m_AllocatedSlots       = 0;
+    m_AllocatedTaskThreads = 0;
+    if (m_CPUBudget != 0)
+      allocateCPUBudget((m_ExternalExecutorPool == null) ? estimateNumSetups() : -1);
     if (m_Debug)
       System.out.println("Starting executor pool.");
     startExecutorPool();
@@ -184,13 +1303,13 @@ public abstract class AbstractMultiThreadedSearch
   /**
    * Called after the search regardless whether successful or failed.
    * <br>
-   * Stops the thread pool.
+   * Stops the thread pool before releasing the resources of the search.
    */
   @Override
   public void cleanUpSearch() {
-    super.cleanUpSearch();
     if (m_Debug)
       System.out.println("Stopping executor pool.");
     stopExecutorPool();
+    super.cleanUpSearch();
   }
 }
@@ -22,17 +22,23 @@ package weka.classifiers.meta.multisearch;
 
 import weka.classifiers.Classifier;
 import weka.core.Instances;
+import weka.core.InstancesFingerprint;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.Tag;
 import weka.core.Utils;
+import weka.core.setupgenerator.GridPoint;
 import weka.core.setupgenerator.Point;
 import weka.core.setupgenerator.Space;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -76,7 +82,7 @@ public abstract class AbstractSearch
   protected Space m_Space;
 
   /** the number of setups to evaluate. */
-  protected int m_NumSetups;
+  protected long m_NumSetups;
 
   /** for storing the performances. */
   protected Vector<Performance> m_Performances;
@@ -85,6 +91,39 @@ public abstract class AbstractSearch
    * (raw points in space, not evaluated ones!). */
   protected PerformanceCache m_Cache;
 
+  /** the maximum number of entries in the cache (0 = unbounded). */
+  protected int m_CacheMaxEntries = 0;
+
+  /** the maximum estimated memory of the cache in MB (0 = unbounded). */
+  protected int m_CacheMaxMemory = 0;
+
+  /** the directory for the persistent cache (disabled if "."). */
+  protected File m_PersistentCacheDir = new File(".");
+
+  /** the persistent cache, null if disabled. */
+  protected transient volatile PersistentPerformanceCache m_PersistentCache;
+
+  /** the key prefix describing the data and evaluation for the persistent cache. */
+  protected transient String m_PersistentKey;
+
+  /** the fingerprints of the datasets used in the search (name - fingerprint). */
+  protected Map<String,Long> m_Fingerprints = new LinkedHashMap<String,Long>();
+
+  /** the fingerprints of the datasets, computed during the current search. */
+  protected transient Map<Instances,Long> m_FingerprintCache;
+
+  /** the data with the fingerprint computed by the caller, null if none. */
+  protected transient Instances m_PresetFingerprintData;
+
+  /** the fingerprint computed by the caller. */
+  protected transient long m_PresetFingerprint;
+
+  /** the cross-validation plans of the current search (data - folds - plan). */
+  protected transient Map<Instances,Map<Integer,FoldPlan>> m_FoldPlans;
+
+  /** the number of performances obtained from the persistent cache. */
+  protected transient int m_PersistentHits;
+
   /** whether all performances in the space are the same. */
   protected boolean m_UniformPerformance = false;
 
@@ -161,6 +200,25 @@ public abstract class AbstractSearch
 
     result = new Vector();
 
+    result.addElement(new Option(
+      "\tThe maximum number of entries in the performance cache.\n"
+	+ "\tThe least recently used entries get evicted first.\n"
+	+ "\t(default: 0 = unbounded)",
+      "cache-max-entries", 1, "-cache-max-entries <num>"));
+
+    result.addElement(new Option(
+      "\tThe maximum estimated memory of the performance cache in MB.\n"
+	+ "\tThe least recently used entries get evicted first.\n"
+	+ "\t(default: 0 = unbounded)",
+      "cache-max-memory", 1, "-cache-max-memory <MB>"));
+
+    result.addElement(new Option(
+      "\tThe directory for the persistent performance cache, which is\n"
+	+ "\tshared across runs and processes.\n"
+	+ "\tThe cache gets disabled if pointing to '.'.\n"
+	+ "\t(default: .)",
+      "persistent-cache", 1, "-persistent-cache <dir>"));
+
     result.addElement(new Option(
       "\tWhether to enable debugging output.\n"
 	+ "\t(default off)",
@@ -180,6 +238,15 @@ public abstract class AbstractSearch
 
     result = new ArrayList<String>();
 
+    result.add("-cache-max-entries");
+    result.add("" + getCacheMaxEntries());
+
+    result.add("-cache-max-memory");
+    result.add("" + getCacheMaxMemory());
+
+    result.add("-persistent-cache");
+    result.add("" + getPersistentCacheDir());
+
     if (getDebug())
       result.add("-D");
 
@@ -194,10 +261,144 @@ public abstract class AbstractSearch
    */
   @Override
   public void setOptions(String[] options) throws Exception {
+    String	tmpStr;
+
+    tmpStr = Utils.getOption("cache-max-entries", options);
+    if (tmpStr.length() != 0)
+      setCacheMaxEntries(Integer.parseInt(tmpStr));
+    else
+      setCacheMaxEntries(0);
+
+    tmpStr = Utils.getOption("cache-max-memory", options);
+    if (tmpStr.length() != 0)
+      setCacheMaxMemory(Integer.parseInt(tmpStr));
+    else
+      setCacheMaxMemory(0);
+
+    tmpStr = Utils.getOption("persistent-cache", options);
+    if (tmpStr.length() != 0)
+      setPersistentCacheDir(new File(tmpStr));
+    else
+      setPersistentCacheDir(new File("."));
+
     setDebug(Utils.getFlag("D", options));
     Utils.checkForRemainingOptions(options);
   }
 
+  /**
+   * Sets the maximum number of entries in the performance cache.
+   *
+   * @param value	the maximum, 0 for unbounded
+   */
+  public void setCacheMaxEntries(int value) {
+    if (value >= 0)
+      m_CacheMaxEntries = value;
+    else
+      System.err.println("Maximum number of cache entries must be at least 0, provided: " + value);
+  }
+
+  /**
+   * Returns the maximum number of entries in the performance cache.
+   *
+   * @return		the maximum, 0 if unbounded
+   */
+  public int getCacheMaxEntries() {
+    return m_CacheMaxEntries;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String cacheMaxEntriesTipText() {
+    return
+      "The maximum number of entries in the performance cache, the least "
+	+ "recently used ones get evicted first; 0 for unbounded.";
+  }
+
+  /**
+   * Sets the maximum estimated memory of the performance cache.
+   *
+   * @param value	the maximum in MB, 0 for unbounded
+   */
+  public void setCacheMaxMemory(int value) {
+    if (value >= 0)
+      m_CacheMaxMemory = value;
+    else
+      System.err.println("Maximum memory of cache must be at least 0, provided: " + value);
+  }
+
+  /**
+   * Returns the maximum estimated memory of the performance cache.
+   *
+   * @return		the maximum in MB, 0 if unbounded
+   */
+  public int getCacheMaxMemory() {
+    return m_CacheMaxMemory;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String cacheMaxMemoryTipText() {
+    return
+      "The maximum estimated memory of the performance cache in MB, the least "
+	+ "recently used entries get evicted first; 0 for unbounded.";
+  }
+
+  /**
+   * Returns the performance cache of the current/last search.
+   *
+   * @return		the cache, null if no search performed yet
+   */
+  public PerformanceCache getCache() {
+    return m_Cache;
+  }
+
+  /**
+   * Sets the directory for the persistent performance cache.
+   *
+   * @param value	the directory, "." to disable
+   */
+  public void setPersistentCacheDir(File value) {
+    m_PersistentCacheDir = value;
+  }
+
+  /**
+   * Returns the directory for the persistent performance cache.
+   *
+   * @return		the directory, "." if disabled
+   */
+  public File getPersistentCacheDir() {
+    return m_PersistentCacheDir;
+  }
+
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String persistentCacheDirTipText() {
+    return
+      "The directory for the persistent performance cache, which is shared "
+	+ "across runs and processes; disabled if pointing to '.'.";
+  }
+
+  /**
+   * Returns whether the persistent cache is enabled.
+   *
+   * @return		true if enabled
+   */
+  public boolean isPersistentCacheEnabled() {
+    return !m_PersistentCacheDir.getPath().equals(".");
+  }
+
   /**
    * Set debugging mode.
    *
@@ -279,10 +480,229 @@ public abstract class AbstractSearch
    * @param folds	the number of folds
    */
   public void addPerformance(Performance performance, int folds) {
+    PersistentPerformanceCache	cache;
+    int[]			ids;
+    double[]			values;
+    int				i;
 
     m_Performances.add(performance);
     m_Cache.add(folds, performance);
     m_Trace.add(new AbstractMap.SimpleEntry<Integer, Performance>(folds, performance));
+
+    cache = m_PersistentCache;
+    if ((cache != null) && (m_PersistentKey != null)
+      && !Double.isNaN(performance.getPerformance())) {
+      ids    = m_Owner.getMetricIDs();
+      values = new double[ids.length];
+      for (i = 0; i < ids.length; i++)
+	values[i] = performance.getPerformance(ids[i]);
+      try {
+	cache.put(m_PersistentKey + getPersistentKey(performance.getPoint()), ids, values);
+      }
+      catch (Exception e) {
+	log("Failed to store performance in " + cache + ": " + e);
+      }
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the dataset, which gets computed only once
+   * per search.
+   *
+   * @param data	the dataset to get the fingerprint for
+   * @return		the fingerprint
+   * @see		InstancesFingerprint
+   */
+  protected synchronized long fingerprint(Instances data) {
+    Long	result;
+
+    if (m_FingerprintCache == null)
+      m_FingerprintCache = new IdentityHashMap<Instances,Long>();
+    result = m_FingerprintCache.get(data);
+    if (result == null) {
+      result = InstancesFingerprint.compute(data);
+      m_FingerprintCache.put(data, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the cross-validation plan for the data and number of folds,
+   * using the seed of the owner. A plan gets only generated once per
+   * search and is shared by all the evaluation tasks.
+   *
+   * @param data	the data to cross-validate
+   * @param folds	the number of folds
+   * @return		the plan
+   * @throws Exception	if generating the plan fails
+   */
+  public synchronized FoldPlan getFoldPlan(Instances data, int folds) throws Exception {
+    Map<Integer,FoldPlan>	plans;
+    FoldPlan			result;
+
+    if (m_FoldPlans == null)
+      m_FoldPlans = new IdentityHashMap<Instances,Map<Integer,FoldPlan>>();
+    plans = m_FoldPlans.get(data);
+    if (plans == null) {
+      plans = new HashMap<Integer,FoldPlan>();
+      m_FoldPlans.put(data, plans);
+    }
+    result = plans.get(folds);
+    if (result == null) {
+      result = new FoldPlan(data, folds, m_Owner.getSeed());
+      plans.put(folds, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Sets the fingerprint of the data for the next search, as computed by
+   * the caller, so that searches on the same data (eg of the parameter
+   * groups) do not compute it again.
+   *
+   * @param data	the data to be searched, null to unset
+   * @param fingerprint	the fingerprint of the data
+   * @see		InstancesFingerprint#compute(Instances)
+   */
+  public void setDataFingerprint(Instances data, long fingerprint) {
+    m_PresetFingerprintData = data;
+    m_PresetFingerprint     = fingerprint;
+  }
+
+  /**
+   * Computes the fingerprint of the dataset and records it under the
+   * given name.
+   *
+   * @param name	the name of the dataset (eg "data" or "sample")
+   * @param data	the dataset, ignored if null
+   * @see		#getFingerprints()
+   */
+  protected void addFingerprint(String name, Instances data) {
+    if (data == null)
+      return;
+    m_Fingerprints.put(name, fingerprint(data));
+    log("Fingerprint of " + name + ": " + InstancesFingerprint.toHex(m_Fingerprints.get(name)));
+  }
+
+  /**
+   * Returns the fingerprints of the datasets that were used in the last
+   * search, eg training data, sample and test sets.
+   *
+   * @return		the fingerprints (name - fingerprint)
+   * @see		InstancesFingerprint
+   */
+  public Map<String,Long> getFingerprints() {
+    return m_Fingerprints;
+  }
+
+  /**
+   * Returns the fingerprint of the training data of the last search.
+   *
+   * @return		the fingerprint, 0 if no search performed yet
+   * @see		InstancesFingerprint
+   */
+  public long getDataFingerprint() {
+    if (m_Fingerprints.containsKey("data"))
+      return m_Fingerprints.get("data");
+    else
+      return 0L;
+  }
+
+  /**
+   * Initializes the key prefix for the persistent cache, describing data,
+   * evaluation and base classifier. Does nothing if the cache is disabled.
+   *
+   * @param train	the training data
+   * @param test	the test data, null if cross-validation is used
+   * @param folds	the number of folds
+   * @param classLabel	the class label index, -1 if not applicable
+   */
+  protected void initPersistentKey(Instances train, Instances test, int folds, int classLabel) {
+    StringBuilder	key;
+
+    if (m_PersistentCache == null) {
+      m_PersistentKey = null;
+      return;
+    }
+
+    key = new StringBuilder();
+    key.append("train=").append(InstancesFingerprint.toHex(fingerprint(train)));
+    key.append("\ttest=").append((test == null) ? "-" : InstancesFingerprint.toHex(fingerprint(test)));
+    key.append("\tfolds=").append(folds);
+    key.append("\tseed=").append(m_Owner.getSeed());
+    key.append("\tlabel=").append(classLabel);
+    key.append("\tclassifier=").append(getCommandline(m_Owner.getClassifier()));
+    m_PersistentKey = key.toString();
+  }
+
+  /**
+   * Returns the part of the persistent cache key that describes the setup
+   * of the point.
+   *
+   * @param point	the point to describe
+   * @return		the key part
+   */
+  protected String getPersistentKey(GridPoint point) {
+    StringBuilder	result;
+    Point<Object>	values;
+    int			i;
+
+    result = new StringBuilder();
+    values = m_Owner.getGenerator().evaluate(point);
+    for (i = 0; i < values.dimensions(); i++) {
+      result.append("\t").append(point.getSpace().getDimension(i).getLabel());
+      result.append("=").append(values.getValue(i));
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Returns the performance for the point from the in-memory cache or,
+   * if enabled, from the persistent cache. Performances obtained from the
+   * persistent cache get added to the in-memory one.
+   *
+   * @param folds	the number of folds
+   * @param point	the point to look up
+   * @param classLabel	the class label index, -1 if not applicable
+   * @return		the performance, null if not cached
+   */
+  protected Performance getCachedPerformance(int folds, GridPoint point, int classLabel) {
+    Performance			result;
+    PersistentPerformanceCache	cache;
+    Map<Integer,Double>		values;
+    int[]			ids;
+    int				i;
+
+    result = m_Cache.getIfPresent(folds, point);
+    cache  = m_PersistentCache;
+    if ((result != null) || (cache == null) || (m_PersistentKey == null))
+      return result;
+
+    try {
+      values = cache.get(m_PersistentKey + getPersistentKey(point));
+    }
+    catch (Exception e) {
+      log("Failed to read performance from " + cache + ": " + e);
+      return null;
+    }
+    if (values == null)
+      return null;
+    ids = m_Owner.getMetricIDs();
+    for (i = 0; i < ids.length; i++) {
+      if (!values.containsKey(ids[i]))
+	return null;
+    }
+
+    result = new Performance(
+      point, m_Owner.getMetrics(), values, m_Owner.getEvaluation().getSelectedTag().getID(),
+      classLabel, m_Owner.getGenerator());
+    m_Cache.add(folds, result);
+    m_PersistentHits++;
+
+    return result;
   }
 
   /**
@@ -340,7 +760,7 @@ public abstract class AbstractSearch
     List<String> dimensions = getSearchDimensions();
     for (int i = 0; i < dimensions.size(); ++i) {
       String parameter = dimensions.get(i);
-      Object value = m_Trace.get(index).getValue().getValues().getValue(i);
+      Object value = m_Trace.get(index).getValue().getPoint().getValue(i);
       Map.Entry<String, Object> current = new AbstractMap.SimpleEntry<String,Object>(parameter,value);
       result.add(i, current);
     }
@@ -383,18 +803,34 @@ public abstract class AbstractSearch
   /**
    * Called before the search is executed.
    * <br>
-   * Default implementation only initializes the trace.
+   * Default implementation initializes the trace and caches and computes
+   * the fingerprint of the data, unless set by the caller.
    *
    * @param data	the dataset to use
    * @throws Exception	if search fails
+   * @see		#setDataFingerprint(Instances, long)
    */
   public void preSearch(Instances data) throws Exception {
-    m_Cache        = new PerformanceCache();
+    m_Cache        = new PerformanceCache(m_CacheMaxEntries, m_CacheMaxMemory * 1024L * 1024L);
     m_Performances = new Vector<Performance>();
     m_Trace        = new Vector<Entry<Integer, Performance>>();
 
     m_Owner.getGenerator().reset();
     m_Space = m_Owner.getGenerator().getSpace();
+
+    m_PersistentKey    = null;
+    m_PersistentHits   = 0;
+    m_FingerprintCache = new IdentityHashMap<Instances,Long>();
+    m_FoldPlans        = new IdentityHashMap<Instances,Map<Integer,FoldPlan>>();
+    m_Fingerprints     = new LinkedHashMap<String,Long>();
+    if (m_PresetFingerprintData == data)
+      m_FingerprintCache.put(data, m_PresetFingerprint);
+    addFingerprint("data", data);
+
+    if (isPersistentCacheEnabled())
+      m_PersistentCache = PersistentPerformanceCache.getInstance(m_PersistentCacheDir);
+    else
+      m_PersistentCache = null;
   }
 
   /**
@@ -448,6 +884,8 @@ public abstract class AbstractSearch
 
       log("\n---> postSearch");
       result = postSearch(data, best);
+
+      log("\nPerformance cache: " + m_Cache.getStatistics());
     }
     catch (Exception e) {
       throw e;
@@ -462,8 +900,21 @@ public abstract class AbstractSearch
   /**
    * Called after the search regardless whether successful or failed.
    * <br>
-   * Default implementation does nothing.
+   * Default implementation discards the fingerprints and fold plans
+   * cached during the search and releases the persistent cache.
    */
   public void cleanUpSearch() {
+    m_FingerprintCache      = null;
+    m_PresetFingerprintData = null;
+    m_FoldPlans             = null;
+    if (m_PersistentCache != null) {
+      try {
+	m_PersistentCache.close();
+      }
+      catch (Exception e) {
+	log("Failed to close " + m_PersistentCache + ": " + e);
+      }
+      m_PersistentCache = null;
+    }
   }
 }
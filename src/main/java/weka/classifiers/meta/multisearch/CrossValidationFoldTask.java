@@ -0,0 +1,352 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CrossValidationFoldTask.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.ConditionalDensityEstimator;
+import weka.classifiers.Evaluation;
+import weka.classifiers.IntervalEstimator;
+import weka.classifiers.misc.InputMappedClassifier;
+import weka.core.BatchPredictor;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.InstancesView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds a copy of the classifier on the training data of a single
+ * cross-validation fold and computes the class distributions for the
+ * test data of the fold, the same way that
+ * {@link Evaluation#evaluateModel(Classifier, Instances, Object...)} does.
+ * <br>
+ * The distributions get recorded with the evaluation afterwards, in the
+ * order of the folds, making the results identical to
+ * {@link Evaluation#crossValidateModel(Classifier, Instances, int, Random, Object...)}.
+ * <br>
+ * The training data of the folds are read-only views. Classifiers that
+ * modify their training data instead of a copy of it get built on a
+ * modifiable copy instead.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ * @see #crossValidateModel(Evaluation, Classifier, FoldPlan)
+ */
+public class CrossValidationFoldTask
+  implements Callable<double[][]> {
+
+  /** the classifier template. */
+  protected Classifier m_Classifier;
+
+  /** the training data of the fold. */
+  protected Instances m_Train;
+
+  /** the test data of the fold. */
+  protected Instances m_Test;
+
+  /** the thread evaluating the fold, null if not running. */
+  protected transient Thread m_Runner;
+
+  /** whether the evaluation got aborted. */
+  protected volatile boolean m_Aborted;
+
+  /**
+   * Initializes the task.
+   *
+   * @param classifier	the classifier template, gets copied
+   * @param train	the training data of the fold
+   * @param test	the test data of the fold
+   */
+  public CrossValidationFoldTask(Classifier classifier, Instances train, Instances test) {
+    super();
+
+    m_Classifier = classifier;
+    m_Train      = train;
+    m_Test       = test;
+  }
+
+  /**
+   * Returns the training data of the fold.
+   *
+   * @return		the training data
+   */
+  public Instances getTrain() {
+    return m_Train;
+  }
+
+  /**
+   * Returns the test data of the fold.
+   *
+   * @return		the test data
+   */
+  public Instances getTest() {
+    return m_Test;
+  }
+
+  /**
+   * Aborts the evaluation of the fold: it does not get started anymore or,
+   * if running, the thread evaluating it gets interrupted.
+   */
+  public synchronized void abort() {
+    m_Aborted = true;
+    if ((m_Runner != null) && (m_Runner != Thread.currentThread()))
+      m_Runner.interrupt();
+  }
+
+  /**
+   * Returns whether the evaluation got aborted.
+   *
+   * @return		true if aborted
+   */
+  public boolean isAborted() {
+    return m_Aborted;
+  }
+
+  /**
+   * Builds the classifier and computes the distributions for the test data.
+   *
+   * @return		the distributions, one per test instance
+   * @throws Exception	if building or predicting fails
+   * @throws InterruptedException	if aborted
+   */
+  @Override
+  public double[][] call() throws Exception {
+    synchronized(this) {
+      if (m_Aborted)
+	throw new InterruptedException();
+      m_Runner = Thread.currentThread();
+    }
+
+    try {
+      return evaluate();
+    }
+    finally {
+      synchronized(this) {
+	m_Runner = null;
+	// the worker thread must not pass on the interrupt to its next task
+	if (m_Aborted)
+	  Thread.interrupted();
+      }
+    }
+  }
+
+  /**
+   * Builds the classifier and computes the distributions for the test data.
+   *
+   * @return		the distributions, one per test instance
+   * @throws Exception	if building or predicting fails
+   */
+  protected double[][] evaluate() throws Exception {
+    Classifier	classifier;
+    Instances	test;
+    Instance	inst;
+    double[][]	result;
+    int		i;
+
+    classifier = buildClassifier(m_Classifier, m_Train);
+    if (m_Aborted || Thread.currentThread().isInterrupted())
+      throw new InterruptedException();
+
+    if ((classifier instanceof BatchPredictor) && ((BatchPredictor) classifier).implementsMoreEfficientBatchPrediction()) {
+      test = new Instances(m_Test);
+      for (i = 0; i < test.numInstances(); i++)
+	test.instance(i).setClassMissing();
+      result = ((BatchPredictor) classifier).distributionsForInstances(test);
+    }
+    else {
+      result = new double[m_Test.numInstances()][];
+      for (i = 0; i < m_Test.numInstances(); i++) {
+	inst = (Instance) m_Test.instance(i).copy();
+	inst.setDataset(m_Test);
+	inst.setClassMissing();
+	result[i] = classifier.distributionForInstance(inst);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Builds a copy of the classifier on the training data. If the training
+   * data is a read-only view that the classifier attempts to modify, the
+   * classifier gets built on a modifiable copy of the data instead.
+   *
+   * @param classifier	the classifier template, gets copied
+   * @param train	the training data
+   * @return		the built classifier
+   * @throws Exception	if building fails
+   */
+  public static Classifier buildClassifier(Classifier classifier, Instances train) throws Exception {
+    Classifier	result;
+
+    result = AbstractClassifier.makeCopy(classifier);
+    try {
+      result.buildClassifier(train);
+    }
+    catch (UnsupportedOperationException e) {
+      if (!(train instanceof InstancesView))
+	throw e;
+      result = AbstractClassifier.makeCopy(classifier);
+      result.buildClassifier(new Instances(train));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns whether the folds of the classifier can be evaluated in
+   * parallel with identical results. Not the case for classifiers whose
+   * statistics get computed using the built model rather than the
+   * distributions.
+   *
+   * @param classifier	the classifier to check
+   * @return		true if supported
+   */
+  public static boolean isSupported(Classifier classifier) {
+    return !(classifier instanceof InputMappedClassifier)
+      && !(classifier instanceof IntervalEstimator)
+      && !(classifier instanceof ConditionalDensityEstimator);
+  }
+
+  /**
+   * Returns whether the throwable or one of its causes is an
+   * {@link InterruptedException}. Fork/join tasks wrap the exceptions of
+   * their callables.
+   *
+   * @param t		the throwable to check
+   * @return		true if an interruption
+   */
+  protected static boolean isInterruption(Throwable t) {
+    while (t != null) {
+      if (t instanceof InterruptedException)
+	return true;
+      t = t.getCause();
+    }
+    return false;
+  }
+
+  /**
+   * Waits for the fold subtask to complete. Joining (rather than a timed
+   * wait) lets the calling worker thread help with the outstanding folds
+   * instead of blocking, so that the pool does not have to start
+   * compensation threads. Joining does not respond to interrupts, the
+   * calling thread gets checked for interrupts before and after.
+   *
+   * @param task	the task to wait for
+   * @throws InterruptedException	if the calling thread or the task got interrupted
+   * @throws Exception	if the task failed
+   */
+  protected static void await(ForkJoinTask<double[][]> task) throws Exception {
+    if (Thread.currentThread().isInterrupted())
+      throw new InterruptedException();
+    try {
+      task.join();
+    }
+    catch (CancellationException e) {
+      // fold subtasks only get cancelled when interrupted
+      throw new InterruptedException();
+    }
+    catch (RuntimeException e) {
+      if (isInterruption(e))
+	throw new InterruptedException();
+      throw e;
+    }
+    if (Thread.currentThread().isInterrupted())
+      throw new InterruptedException();
+  }
+
+  /**
+   * Performs cross-validation using the splits of the plan. The folds get
+   * evaluated as fork/join subtasks if called from within a fork/join
+   * pool and the classifier is supported, otherwise sequentially.
+   * <br>
+   * If the calling thread gets interrupted (eg when the evaluation gets
+   * cancelled after a timeout), the outstanding fold subtasks get aborted,
+   * interrupting the threads that evaluate them, once the fold that is
+   * being waited for finishes (or, if the calling thread evaluates that
+   * fold itself, right away). The same happens if one of the folds fails.
+   * <br>
+   * The distributions get recorded in the order of the folds, so that the
+   * results are identical to
+   * {@link Evaluation#crossValidateModel(Classifier, Instances, int, Random, Object...)}.
+   *
+   * @param eval	the evaluation to record the predictions with
+   * @param classifier	the classifier to evaluate
+   * @param plan	the plan with the splits
+   * @throws InterruptedException	if the calling thread got interrupted
+   * @throws Exception	if evaluation fails
+   */
+  public static void crossValidateModel(Evaluation eval, Classifier classifier, FoldPlan plan) throws Exception {
+    CrossValidationFoldTask[]		folds;
+    List<ForkJoinTask<double[][]>>	tasks;
+    Classifier				copy;
+    double[][]				dists;
+    int					i;
+    int					n;
+
+    // sequential
+    if (!ForkJoinTask.inForkJoinPool() || !isSupported(classifier)) {
+      for (i = 0; i < plan.getNumFolds(); i++) {
+	eval.setPriors(plan.getTrain(i));
+	copy = buildClassifier(classifier, plan.getTrain(i));
+	if (Thread.currentThread().isInterrupted())
+	  throw new InterruptedException();
+	eval.evaluateModel(copy, plan.getTest(i));
+      }
+      return;
+    }
+
+    // build and predict
+    folds = new CrossValidationFoldTask[plan.getNumFolds()];
+    tasks = new ArrayList<ForkJoinTask<double[][]>>();
+    for (i = 0; i < plan.getNumFolds(); i++) {
+      folds[i] = new CrossValidationFoldTask(classifier, plan.getTrain(i), plan.getTest(i));
+      tasks.add(ForkJoinTask.adapt(folds[i]));
+    }
+    for (i = tasks.size() - 1; i >= 0; i--)
+      tasks.get(i).fork();
+    try {
+      for (i = 0; i < tasks.size(); i++)
+	await(tasks.get(i));
+    }
+    catch (Exception e) {
+      // interrupted or a fold failed: the outstanding folds are of no use
+      for (i = 0; i < tasks.size(); i++) {
+	tasks.get(i).cancel(false);
+	folds[i].abort();
+      }
+      throw e;
+    }
+
+    // record predictions
+    for (i = 0; i < plan.getNumFolds(); i++) {
+      eval.setPriors(folds[i].getTrain());
+      dists = tasks.get(i).join();
+      for (n = 0; n < dists.length; n++)
+	eval.evaluateModelOnceAndRecordPrediction(dists[n], folds[i].getTest().instance(n));
+    }
+  }
+}
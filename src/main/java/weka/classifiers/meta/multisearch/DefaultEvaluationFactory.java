@@ -23,7 +23,7 @@ package weka.classifiers.meta.multisearch;
 import weka.classifiers.Evaluation;
 import weka.core.Instances;
 import weka.core.SetupGenerator;
-import weka.core.setupgenerator.Point;
+import weka.core.setupgenerator.GridPoint;
 
 /**
  * Default factory.
@@ -64,14 +64,14 @@ public class DefaultEvaluationFactory
    * @param train	the training data
    * @param test	the test data
    * @param generator	the generator
-   * @param values	the values
+   * @param point	the point in the space
    * @param folds	the number of folds
    * @param eval	the evaluation
    * @param classLabel	the class label index (0-based; if applicable)
    * @return		the task
    */
   @Override
-  public DefaultEvaluationTask newTask(MultiSearchCapable owner, Instances train, Instances test, SetupGenerator generator, Point<Object> values, int folds, int eval, int classLabel) {
-    return new DefaultEvaluationTask(owner, train, test, generator, values, folds, eval, classLabel);
+  public DefaultEvaluationTask newTask(MultiSearchCapable owner, Instances train, Instances test, SetupGenerator generator, GridPoint point, int folds, int eval, int classLabel) {
+    return new DefaultEvaluationTask(owner, train, test, generator, point, folds, eval, classLabel);
   }
 }
@@ -24,10 +24,10 @@ import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
 import weka.core.Instances;
 import weka.core.SetupGenerator;
+import weka.core.setupgenerator.GridPoint;
 import weka.core.setupgenerator.Point;
 
 import java.io.Serializable;
-import java.util.Random;
 
 /**
  * Default Evaluation task.
@@ -42,28 +42,32 @@ public class DefaultEvaluationTask
    * @param train		the training data
    * @param test		the test data, can be null
    * @param generator		the generator to use
-   * @param values		the setup values
+   * @param point		the point in the space
    * @param folds		the number of cross-validation folds
    * @param eval		the type of evaluation
    * @param classLabel		the class label index (0-based; if applicable)
    */
   public DefaultEvaluationTask(
     MultiSearchCapable owner, Instances train, Instances test,
-    SetupGenerator generator, Point<Object> values, int folds, int eval, int classLabel) {
-    super(owner, train, test, generator, values, folds, eval, classLabel);
+    SetupGenerator generator, GridPoint point, int folds, int eval, int classLabel) {
+    super(owner, train, test, generator, point, folds, eval, classLabel);
   }
 
   /**
-   * Returns whether predictions can be discarded (depends on selected measure).
+   * Returns whether predictions can be discarded (depends on the measures
+   * to compute).
    */
   protected boolean canDiscardPredictions() {
-    switch (m_Owner.getEvaluation().getSelectedTag().getID()) {
-      case DefaultEvaluationMetrics.EVALUATION_AUC:
-      case DefaultEvaluationMetrics.EVALUATION_PRC:
-        return false;
-      default:
-        return true;
+    for (int id: m_Owner.getMetricIDs()) {
+      switch (id) {
+        case DefaultEvaluationMetrics.EVALUATION_AUC:
+        case DefaultEvaluationMetrics.EVALUATION_WEIGHTED_AUC:
+        case DefaultEvaluationMetrics.EVALUATION_PRC:
+        case DefaultEvaluationMetrics.EVALUATION_WEIGHTED_PRC:
+          return false;
+      }
     }
+    return true;
   }
 
   /**
@@ -79,8 +83,10 @@ public class DefaultEvaluationTask
 
     // setup
     try {
-      evals = m_Generator.evaluate(m_Values);
+      evals = m_Generator.evaluate(m_Point);
       classifier = (Classifier) m_Generator.setup((Serializable) m_Owner.getClassifier(), evals);
+      if (m_Owner.getAlgorithm() instanceof AbstractMultiThreadedSearch)
+	((AbstractMultiThreadedSearch) m_Owner.getAlgorithm()).applyTaskThreads(classifier);
     }
     catch (Exception e) {
       m_Exception = e;
@@ -95,7 +101,7 @@ public class DefaultEvaluationTask
       eval.setDiscardPredictions(canDiscardPredictions());
       if (m_Test == null) {
         if (m_Folds >= 2) {
-          eval.crossValidateModel(classifier, m_Train, m_Folds, new Random(m_Owner.getSeed()));
+          CrossValidationFoldTask.crossValidateModel(eval, classifier, m_Owner.getAlgorithm().getFoldPlan(m_Train, m_Folds));
         }
         else {
           classifier.buildClassifier(m_Train);
@@ -111,6 +117,9 @@ public class DefaultEvaluationTask
     catch (Exception e) {
       eval = null;
       m_Exception = e;
+      // cancelled or timed out, the search takes care of the setup
+      if ((e instanceof InterruptedException) || Thread.currentThread().isInterrupted())
+        return false;
       System.err.println("Encountered exception while evaluating classifier, skipping!");
       System.err.println("- Classifier: " + m_Owner.getCommandline(classifier));
       e.printStackTrace();
@@ -119,11 +128,12 @@ public class DefaultEvaluationTask
 
     // store performance
     performance = new Performance(
-      m_Values,
+      m_Point,
       m_Owner.getFactory().newWrapper(eval),
       m_Evaluation,
       m_ClassLabel,
-      (Classifier) m_Generator.setup((Serializable) m_Owner.getClassifier(), evals));
+      m_Owner.getMetricIDs(),
+      m_Generator);
     m_Owner.getAlgorithm().addPerformance(performance, m_Folds);
 
     // log
@@ -25,6 +25,7 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.Utils;
 import weka.core.converters.ConverterUtils.DataSource;
+import weka.core.setupgenerator.GridPoint;
 import weka.core.setupgenerator.Point;
 import weka.core.setupgenerator.Space;
 import weka.filters.Filter;
@@ -34,11 +35,17 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 
 /**
@@ -95,10 +102,96 @@ import java.util.concurrent.Future;
  *  Whether to be more lenient, eg to accept that all results have been cached.
  *  (default: off)</pre>
  *
+ * <pre> -speculative &lt;num&gt;
+ *  The number of best candidates of a space whose neighbourhoods get
+ *  evaluated speculatively, while the last setups of the space are
+ *  still being evaluated. Speculative evaluations that turn out not
+ *  to be required get cancelled. They only count towards the maximum
+ *  number of evaluations once required.
+ *  (default: 0 = off)</pre>
+ *
  * <pre> -num-slots &lt;num&gt;
  *  Number of execution slots.
  *  (default 1 - i.e. no parallelism)</pre>
  * 
+ * <pre> -fold-parallel
+ *  Whether to evaluate the cross-validation folds of a setup in
+ *  parallel as well, using a work-stealing (fork/join) pool.
+ *  The results are identical to the serial evaluation.
+ *  (default: off)</pre>
+ * 
+ * <pre> -executor &lt;FIXED|SHARED|VIRTUAL&gt;
+ *  The type of executor for the evaluation tasks:
+ *  FIXED = thread pool with num-slots threads per search
+ *  SHARED = process-wide scheduler shared by all searches,
+ *  sized to the number of processors, with fair queuing between
+ *  the searches; num-slots limits the tasks of a search running
+ *  at the same time, folds do not get evaluated in parallel;
+ *  nested searches run their tasks sequentially in the task
+ *  of the enclosing search
+ *  VIRTUAL = virtual thread per task (JDK 21+), num-slots limits
+ *  the tasks running at the same time, folds do not get evaluated
+ *  in parallel; falls back to FIXED on older JVMs
+ *  (default: FIXED)</pre>
+ * 
+ * <pre> -skip-failures
+ *  Whether to skip setups whose evaluation failed instead of
+ *  cancelling the outstanding evaluations and aborting the search.
+ *  (default: off)</pre>
+ * 
+ * <pre> -task-timeout &lt;seconds&gt;
+ *  The maximum time in seconds for evaluating a single setup;
+ *  setups that take longer get recorded as failed and their
+ *  evaluation gets interrupted; the timeout is cooperative, ie
+ *  classifiers that ignore interrupts keep occupying their
+ *  execution slot until they finish.
+ *  (default: 0 = unlimited)</pre>
+ * 
+ * <pre> -max-time &lt;seconds&gt;
+ *  The maximum time in seconds for the search; once exhausted,
+ *  the best setup found so far is returned.
+ *  (default: 0 = unlimited)</pre>
+ * 
+ * <pre> -max-evaluations &lt;num&gt;
+ *  The maximum number of evaluations for the search; once exhausted,
+ *  the best setup found so far is returned.
+ *  (default: 0 = unlimited)</pre>
+ * 
+ * <pre> -cpu-budget &lt;num&gt;
+ *  The total number of threads for the search, shared between the
+ *  evaluation tasks running concurrently and the threads of each
+ *  task (ie of the base classifier); overrides num-slots.
+ *  (default: 0 = no budget, -1 = number of processors)</pre>
+ * 
+ * <pre> -task-threads &lt;num&gt;
+ *  The number of threads each evaluation task uses under the CPU
+ *  budget; 0 chooses the number automatically if the base classifier
+ *  has the task threads property, otherwise tasks are assumed to be
+ *  single-threaded.
+ *  (default: 0)</pre>
+ * 
+ * <pre> -task-threads-property &lt;path&gt;
+ *  The property path of the base classifier for the number of
+ *  threads per task, eg 'classifier.numExecutionSlots';
+ *  'none' disables it.
+ *  (default: numExecutionSlots)</pre>
+ * 
+ * <pre> -cache-max-entries &lt;num&gt;
+ *  The maximum number of entries in the performance cache.
+ *  The least recently used entries get evicted first.
+ *  (default: 0 = unbounded)</pre>
+ * 
+ * <pre> -cache-max-memory &lt;MB&gt;
+ *  The maximum estimated memory of the performance cache in MB.
+ *  The least recently used entries get evicted first.
+ *  (default: 0 = unbounded)</pre>
+ * 
+ * <pre> -persistent-cache &lt;dir&gt;
+ *  The directory for the persistent performance cache, which is
+ *  shared across runs and processes.
+ *  The cache gets disabled if pointing to '.'.
+ *  (default: .)</pre>
+ * 
  * <pre> -D
  *  Whether to enable debugging output.
  *  (default off)</pre>
@@ -142,6 +235,21 @@ public class DefaultSearch
   /** whether to be more lenient (does not throw exception when all results cached). */
   protected boolean m_Lenient = false;
 
+  /** the number of best candidates whose neighbourhoods get evaluated speculatively (0 = off). */
+  protected int m_SpeculativeCandidates = 0;
+
+  /** the speculative evaluations that have not been adopted yet. */
+  protected transient Map<GridPoint,SpeculativeTask> m_Speculations;
+
+  /** the number of submitted speculative evaluations. */
+  protected transient int m_SpeculativeSubmitted;
+
+  /** the number of speculative evaluations that were required by the search. */
+  protected transient int m_SpeculativeHits;
+
+  /** the number of speculative evaluations that got cancelled before starting. */
+  protected transient int m_SpeculativeCancelled;
+
   /**
    * Returns a string describing the object.
    *
@@ -234,6 +342,15 @@ public class DefaultSearch
 	+ "\t(default: off)",
       "lenient", 0, "-lenient"));
 
+    result.addElement(new Option(
+      "\tThe number of best candidates of a space whose neighbourhoods get\n"
+	+ "\tevaluated speculatively, while the last setups of the space are\n"
+	+ "\tstill being evaluated. Speculative evaluations that turn out not\n"
+	+ "\tto be required get cancelled. They only count towards the maximum\n"
+	+ "\tnumber of evaluations once required.\n"
+	+ "\t(default: 0 = off)",
+      "speculative", 1, "-speculative <num>"));
+
     en = super.listOptions();
     while (en.hasMoreElements())
       result.addElement(en.nextElement());
@@ -272,6 +389,9 @@ public class DefaultSearch
     if (getLenient())
       result.add("-lenient");
 
+    result.add("-speculative");
+    result.add("" + getSpeculativeCandidates());
+
     options = super.getOptions();
     for (i = 0; i < options.length; i++)
       result.add(options[i]);
@@ -321,6 +441,12 @@ public class DefaultSearch
 
     setLenient(Utils.getFlag("lenient", options));
 
+    tmpStr = Utils.getOption("speculative", options);
+    if (tmpStr.length() != 0)
+      setSpeculativeCandidates(Integer.parseInt(tmpStr));
+    else
+      setSpeculativeCandidates(0);
+
     super.setOptions(options);
   }
 
@@ -504,6 +630,250 @@ public class DefaultSearch
     m_Lenient = value;
   }
 
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String speculativeCandidatesTipText() {
+    return
+      "The number of best candidates of a space whose neighbourhoods get "
+	+ "evaluated speculatively while the last setups of the space are still "
+	+ "being evaluated, keeping the execution slots busy; speculative "
+	+ "evaluations that are not required get cancelled and only the required "
+	+ "ones count towards the maximum number of evaluations; 0 turns "
+	+ "speculation off.";
+  }
+
+  /**
+   * Gets the number of best candidates whose neighbourhoods get evaluated
+   * speculatively.
+   *
+   * @return 		the number of candidates, 0 if off
+   */
+  public int getSpeculativeCandidates() {
+    return m_SpeculativeCandidates;
+  }
+
+  /**
+   * Sets the number of best candidates whose neighbourhoods get evaluated
+   * speculatively.
+   *
+   * @param value 	the number of candidates, 0 to turn off
+   */
+  public void setSpeculativeCandidates(int value) {
+    if (value >= 0)
+      m_SpeculativeCandidates = value;
+  }
+
+  /**
+   * Adds the performance to the cache and the current list of performances.
+   * The performances of speculative evaluations get held back until the
+   * search requires the point.
+   *
+   * @param performance	the performance to add
+   * @param folds	the number of folds
+   */
+  @Override
+  public void addPerformance(Performance performance, int folds) {
+    SpeculativeTask	task;
+
+    task = null;
+    if (m_Speculations != null)
+      task = m_Speculations.get(performance.getPoint());
+    if ((task != null) && (task.getFolds() == folds) && task.offer(performance))
+      return;
+
+    super.addPerformance(performance, folds);
+  }
+
+  /**
+   * Adopts the speculative evaluation of the point, if available. Only
+   * adopted evaluations count towards the maximum number of evaluations.
+   *
+   * @param folds	the number of folds the point is required for
+   * @param point	the point
+   * @return		the adopted evaluation, null if none available or the
+   * 			budget is exhausted
+   */
+  protected SpeculativeTask adoptSpeculation(int folds, GridPoint point) {
+    SpeculativeTask	result;
+    Performance		performance;
+
+    if (m_Speculations == null)
+      return null;
+    result = m_Speculations.get(point);
+    if ((result == null) || (result.getFolds() != folds))
+      return null;
+    if (!acquireEvaluation())
+      return null;
+
+    m_Speculations.remove(point);
+    m_SpeculativeHits++;
+    performance = result.adopt();
+    if (performance != null)
+      super.addPerformance(performance, folds);
+    log(point + ": speculative=true");
+
+    return result;
+  }
+
+  /**
+   * Submits speculative evaluations for the neighbourhoods of the current
+   * best candidates of the space, using the setup of the subsequent spaces.
+   * Points that are already cached, being evaluated or part of the space
+   * (if evaluated with the same setup) get skipped. The evaluations only
+   * get counted once adopted, but no more get submitted than the remaining
+   * budget allows.
+   *
+   * @param space	the space that is being evaluated
+   * @param train	the training data
+   * @param folds	the number of folds used for the space
+   * @param classLabel	the class label index (0-based; if applicable)
+   */
+  protected void speculate(Space space, Instances train, int folds, int classLabel) {
+    List<Performance>		candidates;
+    GridPoint			center;
+    Enumeration<GridPoint>	enm;
+    GridPoint			point;
+    SpeculativeTask		task;
+    int				i;
+
+    candidates = new ArrayList<Performance>(m_Performances);
+    Collections.sort(candidates, new PerformanceComparator(m_Owner.getEvaluation().getSelectedTag().getID(), m_Owner.getMetrics()));
+    for (i = 0; (i < m_SpeculativeCandidates) && (i < candidates.size()); i++) {
+      center = candidates.get(i).getPoint();
+      if (m_Space.isOnBorder(center))
+	continue;
+      enm = m_Space.subspace(center).gridPoints();
+      while (enm.hasMoreElements()) {
+	point = enm.nextElement();
+	if (m_Speculations.containsKey(point))
+	  continue;
+	if ((folds == m_SubsequentSpaceNumFolds) && space.contains(point))
+	  continue;
+	if (m_Cache.contains(m_SubsequentSpaceNumFolds, point))
+	  continue;
+	if (!hasEvaluationBudget(m_Speculations.size()))
+	  return;
+	task = new SpeculativeTask(point, m_SubsequentSpaceNumFolds, m_Owner.getFactory().newTask(
+	  m_Owner, train, m_SubsequentSpaceTestInst, m_Owner.getGenerator(), point, m_SubsequentSpaceNumFolds,
+	  m_Owner.getEvaluation().getSelectedTag().getID(), classLabel));
+	m_Speculations.put(point, task);
+	m_ExecutorPool.submit(task);
+	m_SpeculativeSubmitted++;
+      }
+    }
+  }
+
+  /**
+   * Waits for an adopted speculative evaluation to finish. Evaluations that
+   * exceed the task timeout get aborted and recorded as failed. If the
+   * search gets stopped or interrupted, the evaluation gets aborted and
+   * recorded as failed as well.
+   *
+   * @param task	the evaluation to wait for
+   * @param classLabel	the class label index (0-based; if applicable)
+   * @return		true if finished, false if aborted
+   */
+  protected boolean waitForSpeculation(SpeculativeTask task, int classLabel) {
+    while (!task.isFinished()) {
+      if (isStopped()) {
+	addFailed(task.getFolds(), task.getPoint());
+	task.abort();
+	return false;
+      }
+      if (isTimedOut(task.getStartTime())) {
+	task.abort();
+	timedOut(task.getFolds(), task.getPoint(), classLabel);
+	return false;
+      }
+      try {
+	task.waitFor(nextWait(task.getStartTime()));
+      }
+      catch (InterruptedException e) {
+	log("Search interrupted!");
+	stopSearch();
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Cancels the speculative evaluations that have not started yet. Running
+   * or finished ones are kept, as they may still be required later on.
+   */
+  protected void cancelSpeculations() {
+    Iterator<SpeculativeTask>	iter;
+
+    if (m_Speculations == null)
+      return;
+    iter = m_Speculations.values().iterator();
+    while (iter.hasNext()) {
+      if (iter.next().cancel()) {
+	iter.remove();
+	m_SpeculativeCancelled++;
+      }
+    }
+  }
+
+  /**
+   * Cancels the speculative evaluations that have not started yet and
+   * interrupts the running ones, rather than waiting for them (they may
+   * exceed the task timeout or the search may have been stopped). The
+   * speculations are kept, so that any performance they still produce
+   * gets held back and discarded.
+   */
+  protected void finishSpeculations() {
+    Iterator<SpeculativeTask>	iter;
+
+    cancelSpeculations();
+    iter = m_Speculations.values().iterator();
+    while (iter.hasNext())
+      iter.next().abort();
+  }
+
+  /**
+   * Returns the number of pending evaluations.
+   *
+   * @param results	the futures of the evaluations
+   * @param adopted	the adopted speculative evaluations
+   * @return		the number of evaluations that have not finished yet
+   */
+  protected int numPending(Collection<Future<Boolean>> results, List<SpeculativeTask> adopted) {
+    int				result;
+    Iterator<Future<Boolean>>	iter;
+    int				i;
+
+    result = 0;
+    iter   = results.iterator();
+    while (iter.hasNext()) {
+      if (!iter.next().isDone())
+	result++;
+    }
+    for (i = 0; i < adopted.size(); i++) {
+      if (!adopted.get(i).isFinished())
+	result++;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns statistics on the speculative evaluations.
+   *
+   * @return		the statistics
+   */
+  public String getSpeculativeStatistics() {
+    return
+      "submitted=" + m_SpeculativeSubmitted
+	+ ", hits=" + m_SpeculativeHits
+	+ ", cancelled=" + m_SpeculativeCancelled
+	+ ", hit rate=" + ((m_SpeculativeSubmitted == 0) ? "-" : Utils.doubleToString(100.0 * m_SpeculativeHits / m_SpeculativeSubmitted, 1) + "%");
+  }
+
   /**
    * determines the best point for the given space, using CV with
    * specified number of folds.
@@ -515,21 +885,29 @@ public class DefaultSearch
    * 			evaluation based on the training set is used
    * @param postClean	cleans performance vector in the end. Defaults to true,
    * 			only consider setting to false for testing purposes	
-   * @return		the best point (not actual parameters!)
+   * @return		the best point (not actual parameters!), null if the
+   * 			budget got exhausted or the search got stopped before
+   * 			any setup of the space got evaluated
    * @throws Exception	if setup or training fails
    */
   protected Performance determineBestInSpace(Space space, Instances train, Instances test, int folds, boolean postClean) throws Exception {
     Performance			result;
     int				i;
-    Enumeration<Point<Object>> enm;
+    Enumeration<GridPoint>	enm;
     Performance			performance;
-    Point<Object>		values;
+    GridPoint			values;
     boolean			allCached;
     Performance			p1;
     Performance			p2;
     AbstractEvaluationTask 	newTask;
-    List<Callable>		tasks;
+    CompletionService<Boolean>	completion;
+    Map<Future<Boolean>,AbstractEvaluationTask>	pending;
+    Future<Boolean>		future;
     int				classLabel;
+    int				persistentHits;
+    SpeculativeTask		speculative;
+    List<SpeculativeTask>	adopted;
+    boolean			speculated;
 
     m_Performances.clear();
 
@@ -540,50 +918,84 @@ public class DefaultSearch
     else
       log("Determining best values with evaluation on training set in space:\n" + space + "\n");
 
-    enm         = space.values();
+    enm         = space.gridPoints();
     allCached   = true;
     m_NumSetups = space.size();
     if (train.classAttribute().isNominal())
       classLabel = m_Owner.getClassLabelIndex(train.classAttribute().numValues());
     else
       classLabel = -1;
+    initPersistentKey(train, test, folds, classLabel);
+    persistentHits = m_PersistentHits;
 
-    tasks = new ArrayList<Callable>();
-    ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    completion = new ExecutorCompletionService<Boolean>(m_ExecutorPool);
+    pending    = new HashMap<Future<Boolean>,AbstractEvaluationTask>();
+    adopted    = new ArrayList<SpeculativeTask>();
     while (enm.hasMoreElements()) {
       values = enm.nextElement();
 
+      // evaluated speculatively?
+      speculative = adoptSpeculation(folds, values);
+      if (speculative != null) {
+	allCached = false;
+	adopted.add(speculative);
+	continue;
+      }
+
       // already calculated?
-      if (m_Cache.isCached(folds, values)) {
-	performance = m_Cache.get(folds, values);
+      performance = getCachedPerformance(folds, values, classLabel);
+      if (performance != null) {
 	m_Performances.add(performance);
 	m_Trace.add(new AbstractMap.SimpleEntry<Integer, Performance>(folds, performance));
 	log(performance + ": cached=true");
       }
-      else {
+      else if (acquireEvaluation()) {
 	allCached = false;
 	newTask   = m_Owner.getFactory().newTask(m_Owner, train, test, m_Owner.getGenerator(), values, folds, m_Owner.getEvaluation().getSelectedTag().getID(), classLabel);
-	tasks.add(newTask);
-	results.add(m_ExecutorPool.submit(newTask));
+	pending.put(completion.submit(newTask), newTask);
       }
     }
 
-    // wait for execution to finish
+    // speculative evaluations that are not required
+    cancelSpeculations();
+
+    // wait for execution to finish in order of completion, speculating once
+    // the slots start to idle
+    speculated = (m_SpeculativeCandidates < 1);
     try {
-      for (i = 0; i < results.size(); i++) {
-	if (!results.get(i).get()) {
-	  System.err.println("Execution of evaluation thread failed:\n" + tasks.get(i));
-	  throw new IllegalStateException("Execution of evaluation thread failed:\n" + tasks.get(i));
+      while (!pending.isEmpty()) {
+	if (!speculated && (numPending(pending.keySet(), adopted) <= getEffectiveNumExecutionSlots())) {
+	  speculate(space, train, folds, classLabel);
+	  speculated = true;
 	}
+	future = nextCompleted(completion, pending);
+	if (future == null)
+	  break;
+	checkResult(future, pending.remove(future));
       }
+      for (i = 0; i < adopted.size(); i++) {
+	if (!speculated && (numPending(pending.keySet(), adopted) <= getEffectiveNumExecutionSlots())) {
+	  speculate(space, train, folds, classLabel);
+	  speculated = true;
+	}
+	if (!waitForSpeculation(adopted.get(i), classLabel))
+	  continue;
+	if (!checkResult(adopted.get(i).waitFor(), adopted.get(i), null))
+	  addFailed(adopted.get(i).getFolds(), adopted.get(i).getPoint());
+      }
+      if (!speculated)
+	speculate(space, train, folds, classLabel);
     }
     catch (Exception e) {
+      cancelPending(pending.keySet());
       System.err.println("Thread-based execution of evaluation tasks failed!");
       e.printStackTrace();
       throw new IllegalStateException("Thread-based execution of evaluation tasks failed!", e);
     }
 
-    if (allCached) {
+    // points from the persistent cache or skipped due to the budget are not
+    // an abnormal state
+    if (allCached && (m_PersistentHits == persistentHits) && !isBudgetExhausted()) {
       if (!m_Lenient) {
 	log("All points were already cached - abnormal state!");
 	throw new IllegalStateException("All points were already cached - abnormal state!");
@@ -594,6 +1006,10 @@ public class DefaultSearch
     }
 
     // sort list
+    if (!removeFailedPerformances(folds)) {
+      log("\nNo setup evaluated before the search got stopped.");
+      return null;
+    }
     Collections.sort(m_Performances, new PerformanceComparator(m_Owner.getEvaluation().getSelectedTag().getID(), m_Owner.getMetrics()));
 
     result = m_Performances.firstElement();
@@ -639,7 +1055,7 @@ public class DefaultSearch
    */
   protected Performance findBest(Instances inst) throws Exception {
     Performance		result;
-    Point<Integer>	center;
+    GridPoint		center;
     Space		neighborSpace;
     boolean		finished;
     Point<Object>	evals;
@@ -662,24 +1078,40 @@ public class DefaultSearch
       resample.setSampleSizePercent(getSampleSizePercent());
       resample.setInputFormat(inst);
       sample = Filter.useFilter(inst, resample);
+      addFingerprint("sample", sample);
     }
 
     iteration            = 0;
     m_UniformPerformance = false;
+    m_Speculations         = null;
+    m_SpeculativeSubmitted = 0;
+    m_SpeculativeHits      = 0;
+    m_SpeculativeCancelled = 0;
+    if (m_SpeculativeCandidates > 0)
+      m_Speculations = new ConcurrentHashMap<GridPoint,SpeculativeTask>();
 
     // find first center
     log("\n=== Initial space - Start ===");
     result = determineBestInSpace(m_Space, sample, m_InitialSpaceTestInst, m_InitialSpaceNumFolds, true);
+    if (result == null) {
+      if (m_Speculations != null)
+	finishSpeculations();
+      throw new IllegalStateException("Search stopped before any setup got evaluated!");
+    }
     log("\nResult of Step 1: " + result + "\n");
     log("=== Initial space - End ===\n");
 
     finished = m_UniformPerformance;
+    if (isBudgetExhausted()) {
+      finished = true;
+      log("\nSearch stopped, using best point found so far.");
+    }
 
     if (!finished) {
       do {
 	iteration++;
 	resultOld = (Performance) result.clone();
-	center    = m_Space.getLocations(result.getValues());
+	center    = result.getPoint();
 	// on border? -> finished
 	if (m_Space.isOnBorder(center)) {
 	  log("Center is on border of space.");
@@ -690,12 +1122,23 @@ public class DefaultSearch
 	// around it
 	if (!finished) {
 	  neighborSpace = m_Space.subspace(center);
+	  m_Cache.setPinned(neighborSpace);
 	  result = determineBestInSpace(neighborSpace, sample, m_SubsequentSpaceTestInst, m_SubsequentSpaceNumFolds, true);
-	  log("\nResult of Step 2/Iteration " + (iteration) + ":\n" + result);
+	  // nothing evaluated before budget got exhausted -> previous result
+	  if (result == null)
+	    result = resultOld;
+	  else
+	    log("\nResult of Step 2/Iteration " + (iteration) + ":\n" + result);
 	  finished = m_UniformPerformance;
 
+	  // budget exhausted?
+	  if (isBudgetExhausted()) {
+	    finished = true;
+	    log("\nSearch stopped, using best point found so far.");
+	  }
+
 	  // no improvement?
-	  if (result.getValues().equals(resultOld.getValues())) {
+	  if (result.getPoint().equals(resultOld.getPoint())) {
 	    finished = true;
 	    log("\nNo better point found.");
 	  }
@@ -704,8 +1147,15 @@ public class DefaultSearch
       while (!finished);
     }
 
+    m_Cache.setPinned(null);
+
+    if (m_Speculations != null) {
+      finishSpeculations();
+      log("\nSpeculative evaluations: " + getSpeculativeStatistics());
+    }
+
     log("\nFinal result: " + result);
-    evals = m_Owner.getGenerator().evaluate(result.getValues());
+    evals = m_Owner.getGenerator().evaluate(result.getPoint());
     cls = (Classifier) m_Owner.getGenerator().setup((Serializable) m_Owner.getClassifier(), evals);
     log("Classifier: " + getCommandline(cls));
 
@@ -729,6 +1179,7 @@ public class DefaultSearch
       if (msg != null)
 	throw new IllegalArgumentException("Test set for initial space not compatible with training dta:\n" +  msg);
       m_InitialSpaceTestInst.deleteWithMissingClass();
+      addFingerprint("initial-test-set", m_InitialSpaceTestInst);
       log("Using test set for initial space: " + m_InitialSpaceTestSet);
     }
 
@@ -740,6 +1191,7 @@ public class DefaultSearch
       if (msg != null)
 	throw new IllegalArgumentException("Test set for subsequent sub-spaces not compatible with training dta:\n" +  msg);
       m_SubsequentSpaceTestInst.deleteWithMissingClass();
+      addFingerprint("subsequent-test-set", m_SubsequentSpaceTestInst);
       log("Using test set for subsequent sub-spaces: " + m_InitialSpaceTestSet);
     }
   }
@@ -759,8 +1211,8 @@ public class DefaultSearch
 
     loadTestData(data);
 
-    performance        = findBest(new Instances(data));
-    evals              = m_Owner.getGenerator().evaluate(performance.getValues());
+    performance        = findBest(data);
+    evals              = m_Owner.getGenerator().evaluate(performance.getPoint());
     result             = new SearchResult();
     result.classifier  = (Classifier) m_Owner.getGenerator().setup((Serializable) m_Owner.getClassifier(), evals);
     result.performance = performance;
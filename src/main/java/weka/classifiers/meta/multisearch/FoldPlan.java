@@ -0,0 +1,248 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FoldPlan.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.InstancesView;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * The train/test splits of a cross-validation for a dataset, number of
+ * folds and seed. The splits are identical to the ones that
+ * {@link Evaluation#crossValidateModel(Classifier, Instances, int, Random, Object...)}
+ * generates with <code>new Random(seed)</code>.
+ * <br>
+ * The row indices of the splits get determined by applying the same
+ * randomization, stratification and fold generation to a proxy dataset
+ * that only consists of the row index and the class. The fold datasets
+ * are read-only views on the rows of the data (not copying any instances),
+ * which get created only once and are shared by all the tasks that use the
+ * plan.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class FoldPlan {
+
+  /** the data the plan is for. */
+  protected Instances m_Data;
+
+  /** the number of folds. */
+  protected int m_NumFolds;
+
+  /** the seed. */
+  protected long m_Seed;
+
+  /** the row indices of the training sets (in order). */
+  protected int[][] m_TrainIndices;
+
+  /** the row indices of the test sets (in order). */
+  protected int[][] m_TestIndices;
+
+  /** the training sets, created on demand. */
+  protected Instances[] m_Train;
+
+  /** the test sets, created on demand. */
+  protected Instances[] m_Test;
+
+  /**
+   * Initializes the plan.
+   *
+   * @param data	the data to generate the splits for
+   * @param numFolds	the number of folds
+   * @param seed	the seed for the random number generator
+   * @throws Exception	if generating the splits fails
+   */
+  public FoldPlan(Instances data, int numFolds, long seed) throws Exception {
+    super();
+
+    m_Data         = data;
+    m_NumFolds     = numFolds;
+    m_Seed         = seed;
+    m_TrainIndices = new int[numFolds][];
+    m_TestIndices  = new int[numFolds][];
+    m_Train        = new Instances[numFolds];
+    m_Test         = new Instances[numFolds];
+
+    initialize();
+  }
+
+  /**
+   * Creates the proxy dataset with the row index and the class.
+   *
+   * @return		the proxy dataset
+   */
+  protected Instances newProxy() {
+    ArrayList<Attribute>	atts;
+    Instances			result;
+    double[]			values;
+    int				i;
+
+    atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("row"));
+    atts.add((Attribute) m_Data.classAttribute().copy());
+    result = new Instances(m_Data.relationName(), atts, m_Data.numInstances());
+    result.setClassIndex(1);
+    for (i = 0; i < m_Data.numInstances(); i++) {
+      values    = new double[2];
+      values[0] = i;
+      values[1] = m_Data.instance(i).classValue();
+      result.add(new DenseInstance(1.0, values));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the row indices stored in the proxy dataset.
+   *
+   * @param proxy	the proxy dataset
+   * @return		the row indices
+   */
+  protected int[] indices(Instances proxy) {
+    int[]	result;
+    int		i;
+
+    result = new int[proxy.numInstances()];
+    for (i = 0; i < result.length; i++)
+      result[i] = (int) proxy.instance(i).value(0);
+
+    return result;
+  }
+
+  /**
+   * Generates the splits, using the same steps as
+   * {@link Evaluation#crossValidateModel(Classifier, Instances, int, Random, Object...)}.
+   *
+   * @throws Exception	if generating the splits fails
+   */
+  protected void initialize() throws Exception {
+    Instances	proxy;
+    Random	random;
+    int		i;
+
+    random = new Random(m_Seed);
+    proxy  = newProxy();
+    proxy.randomize(random);
+    if (proxy.classAttribute().isNominal())
+      proxy.stratify(m_NumFolds);
+    for (i = 0; i < m_NumFolds; i++) {
+      m_TrainIndices[i] = indices(proxy.trainCV(m_NumFolds, i, random));
+      m_TestIndices[i]  = indices(proxy.testCV(m_NumFolds, i));
+    }
+  }
+
+  /**
+   * Returns the data the plan is for.
+   *
+   * @return		the data
+   */
+  public Instances getData() {
+    return m_Data;
+  }
+
+  /**
+   * Returns the number of folds.
+   *
+   * @return		the number of folds
+   */
+  public int getNumFolds() {
+    return m_NumFolds;
+  }
+
+  /**
+   * Returns the seed.
+   *
+   * @return		the seed
+   */
+  public long getSeed() {
+    return m_Seed;
+  }
+
+  /**
+   * Returns the row indices of the training set of the fold.
+   *
+   * @param fold	the fold (0-based)
+   * @return		the row indices
+   */
+  public int[] getTrainIndices(int fold) {
+    return m_TrainIndices[fold].clone();
+  }
+
+  /**
+   * Returns the row indices of the test set of the fold.
+   *
+   * @param fold	the fold (0-based)
+   * @return		the row indices
+   */
+  public int[] getTestIndices(int fold) {
+    return m_TestIndices[fold].clone();
+  }
+
+  /**
+   * Creates a view on the rows of the data.
+   *
+   * @param indices	the row indices
+   * @return		the view
+   */
+  protected Instances newDataset(int[] indices) {
+    return new InstancesView(m_Data, indices);
+  }
+
+  /**
+   * Returns the (read-only) training set of the fold.
+   *
+   * @param fold	the fold (0-based)
+   * @return		the training set
+   */
+  public synchronized Instances getTrain(int fold) {
+    if (m_Train[fold] == null)
+      m_Train[fold] = newDataset(m_TrainIndices[fold]);
+    return m_Train[fold];
+  }
+
+  /**
+   * Returns the (read-only) test set of the fold.
+   *
+   * @param fold	the fold (0-based)
+   * @return		the test set
+   */
+  public synchronized Instances getTest(int fold) {
+    if (m_Test[fold] == null)
+      m_Test[fold] = newDataset(m_TestIndices[fold]);
+    return m_Test[fold];
+  }
+
+  /**
+   * Returns a short description of the plan.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + ": folds=" + m_NumFolds + ", seed=" + m_Seed + ", rows=" + m_Data.numInstances();
+  }
+}
@@ -154,6 +154,14 @@ public interface MultiSearchCapable
    */
   public SelectedTag getEvaluation();
 
+  /**
+   * Returns the IDs of the metrics to compute: the one used for evaluation,
+   * followed by any additional ones.
+   *
+   * @return		the metric IDs
+   */
+  public int[] getMetricIDs();
+
   /**
    * Gets the seed for the random number generations
    *
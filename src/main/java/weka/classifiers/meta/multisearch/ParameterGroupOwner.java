@@ -0,0 +1,301 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParameterGroupOwner.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import weka.classifiers.Classifier;
+import weka.core.Capabilities;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.SetupGenerator;
+import weka.core.Tag;
+import weka.core.setupgenerator.Point;
+import weka.core.setupgenerator.Space;
+
+import java.util.Vector;
+
+/**
+ * Owner for the search of a single parameter group, when searching
+ * several groups at the same time. Keeps the search algorithm and the
+ * setup generator of the group isolated from the other groups, everything
+ * else gets delegated to the actual owner.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ParameterGroupOwner
+  implements MultiSearchCapable {
+
+  /** the actual owner. */
+  protected MultiSearchCapable m_Owner;
+
+  /** the search algorithm of the group. */
+  protected AbstractSearch m_Algorithm;
+
+  /** the setup generator of the group. */
+  protected SetupGenerator m_Generator;
+
+  /**
+   * Initializes the owner.
+   *
+   * @param owner	the actual owner
+   * @param algorithm	the search algorithm of the group
+   * @param generator	the setup generator of the group
+   */
+  public ParameterGroupOwner(MultiSearchCapable owner, AbstractSearch algorithm, SetupGenerator generator) {
+    super();
+
+    m_Owner     = owner;
+    m_Algorithm = algorithm;
+    m_Generator = generator;
+  }
+
+  /**
+   * Returns the actual owner.
+   *
+   * @return		the owner
+   */
+  public MultiSearchCapable getOwner() {
+    return m_Owner;
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param data	ignored
+   * @throws Exception	always
+   */
+  @Override
+  public void buildClassifier(Instances data) throws Exception {
+    throw new UnsupportedOperationException("Only manages the search of a parameter group!");
+  }
+
+  /**
+   * Delegates to the actual owner.
+   *
+   * @param instance	the instance to classify
+   * @return		the classification
+   * @throws Exception	if classification fails
+   */
+  @Override
+  public double classifyInstance(Instance instance) throws Exception {
+    return m_Owner.classifyInstance(instance);
+  }
+
+  /**
+   * Delegates to the actual owner.
+   *
+   * @param instance	the instance to classify
+   * @return		the class distribution
+   * @throws Exception	if classification fails
+   */
+  @Override
+  public double[] distributionForInstance(Instance instance) throws Exception {
+    return m_Owner.distributionForInstance(instance);
+  }
+
+  /**
+   * Returns the capabilities of the actual owner.
+   *
+   * @return		the capabilities
+   */
+  @Override
+  public Capabilities getCapabilities() {
+    return m_Owner.getCapabilities();
+  }
+
+  /**
+   * Logs the message via the actual owner.
+   *
+   * @param message	the message to print or store in a log file
+   */
+  @Override
+  public void log(String message) {
+    m_Owner.log(message);
+  }
+
+  /**
+   * Logs the message via the actual owner.
+   *
+   * @param message	the message to print or store in a log file
+   * @param onlyLog	if true the message will only be put into the log file
+   * 			but not to stdout
+   */
+  @Override
+  public void log(String message, boolean onlyLog) {
+    m_Owner.log(message, onlyLog);
+  }
+
+  /**
+   * Aligns the performances via the actual owner.
+   *
+   * @param space	the current space to align the performances to
+   * @param performances	the performances to align
+   * @param type	the type of performance
+   * @return		the table string
+   */
+  @Override
+  public String logPerformances(Space space, Vector<Performance> performances, Tag type) {
+    return m_Owner.logPerformances(space, performances, type);
+  }
+
+  /**
+   * Logs the performances via the actual owner.
+   *
+   * @param space	the current space to align the performances to
+   * @param performances	the performances to align
+   */
+  @Override
+  public void logPerformances(Space space, Vector<Performance> performances) {
+    m_Owner.logPerformances(space, performances);
+  }
+
+  /**
+   * Returns the commandline via the actual owner.
+   *
+   * @param obj		the object to get the commandline for
+   * @return		the commandline
+   */
+  @Override
+  public String getCommandline(Object obj) {
+    return m_Owner.getCommandline(obj);
+  }
+
+  /**
+   * Returns the factory of the actual owner.
+   *
+   * @return		the factory
+   */
+  @Override
+  public AbstractEvaluationFactory getFactory() {
+    return m_Owner.getFactory();
+  }
+
+  /**
+   * Returns the metrics of the actual owner.
+   *
+   * @return		the metrics
+   */
+  @Override
+  public AbstractEvaluationMetrics getMetrics() {
+    return m_Owner.getMetrics();
+  }
+
+  /**
+   * Returns the search algorithm of the group.
+   *
+   * @return		the algorithm
+   */
+  @Override
+  public AbstractSearch getAlgorithm() {
+    return m_Algorithm;
+  }
+
+  /**
+   * Returns the best values of the actual owner.
+   *
+   * @return		the best values
+   */
+  @Override
+  public Point<Object> getBestValues() {
+    return m_Owner.getBestValues();
+  }
+
+  /**
+   * Returns the best coordinates of the actual owner.
+   *
+   * @return		the best coordinates
+   */
+  @Override
+  public Point<Object> getBestCoordinates() {
+    return m_Owner.getBestCoordinates();
+  }
+
+  /**
+   * Returns the best classifier of the actual owner.
+   *
+   * @return		the best classifier
+   */
+  @Override
+  public Classifier getBestClassifier() {
+    return m_Owner.getBestClassifier();
+  }
+
+  /**
+   * Returns the base classifier of the actual owner.
+   *
+   * @return		the base classifier
+   */
+  @Override
+  public Classifier getClassifier() {
+    return m_Owner.getClassifier();
+  }
+
+  /**
+   * Returns the setup generator of the group.
+   *
+   * @return		the generator
+   */
+  @Override
+  public SetupGenerator getGenerator() {
+    return m_Generator;
+  }
+
+  /**
+   * Returns the class label index via the actual owner.
+   *
+   * @param upper	the maximum to use
+   * @return		the index (0-based)
+   */
+  @Override
+  public int getClassLabelIndex(int upper) {
+    return m_Owner.getClassLabelIndex(upper);
+  }
+
+  /**
+   * Returns the evaluation criterion of the actual owner.
+   *
+   * @return		the evaluation criterion
+   */
+  @Override
+  public SelectedTag getEvaluation() {
+    return m_Owner.getEvaluation();
+  }
+
+  /**
+   * Returns the metric IDs of the actual owner.
+   *
+   * @return		the metric IDs
+   */
+  @Override
+  public int[] getMetricIDs() {
+    return m_Owner.getMetricIDs();
+  }
+
+  /**
+   * Returns the seed of the actual owner.
+   *
+   * @return		the seed
+   */
+  @Override
+  public int getSeed() {
+    return m_Owner.getSeed();
+  }
+}
@@ -21,11 +21,14 @@
 package weka.classifiers.meta.multisearch;
 
 import weka.classifiers.Classifier;
+import weka.core.SetupGenerator;
 import weka.core.Tag;
+import weka.core.setupgenerator.GridPoint;
 import weka.core.setupgenerator.Point;
 
 import java.io.Serializable;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * A helper class for storing the performance of values in the parameter
@@ -41,8 +44,8 @@ public class Performance
   /** for serialization. */
   private static final long serialVersionUID = -4374706475277588755L;
 
-  /** the values the filter/classifier were built with. */
-  protected Point<Object> m_Values;
+  /** the point in the space the filter/classifier were built with. */
+  protected GridPoint m_Point;
 
   /** the evaluation type. */
   protected int m_Evaluation;
@@ -53,11 +56,11 @@ public class Performance
   /** the metrics. */
   protected AbstractEvaluationMetrics m_Metrics;
 
-  /** stores the metric values. */
-  protected HashMap<Integer,Double> m_MetricValues;
+  /** stores the metric values, indexed by metric ID (NaN if missing). */
+  protected double[] m_MetricValues;
 
-  /** the classifier. */
-  protected Classifier m_Classifier;
+  /** the generator for re-creating the classifier. */
+  protected SetupGenerator m_Generator;
 
   protected Performance() {
     super();
@@ -68,27 +71,62 @@ public class Performance
    * then the worst possible values for the measures are assumed (in order to
    * assure a low ranking).
    *
-   * @param values		the values
+   * @param point		the point in the space
    * @param evaluation		the evaluation to extract the performance
    * 				measures from, can be null
    * @param evalType		the type of evaluation
    * @param classLabel		the class label index (if applicable)
-   * @param classifier		the classifier
+   * @param metricIDs		the IDs of the metrics to retrieve, null for all
+   * @param generator		the generator for re-creating the classifier
    * @throws Exception	if retrieving of measures fails
    */
-  public Performance(Point<Object> values, AbstractEvaluationWrapper evaluation, int evalType, int classLabel, Classifier classifier) throws Exception {
+  public Performance(GridPoint point, AbstractEvaluationWrapper evaluation, int evalType, int classLabel, int[] metricIDs, SetupGenerator generator) throws Exception {
     this();
 
-    m_Values       = values;
+    m_Point        = point;
     m_Evaluation   = evalType;
-    m_MetricValues = new HashMap<Integer, Double>();
+    m_MetricValues = new double[0];
     m_Metrics      = null;
-    m_Classifier   = classifier;
+    m_Generator    = generator;
     if (evaluation != null) {
-      m_Metrics = evaluation.getMetrics();
-      for (Tag tag : evaluation.getMetrics().getTags()) {
-        m_MetricValues.put(tag.getID(), evaluation.getMetric(tag, classLabel));
+      m_Metrics      = evaluation.getMetrics();
+      m_MetricValues = new double[m_Metrics.getMaxID() + 1];
+      Arrays.fill(m_MetricValues, Double.NaN);
+      if (metricIDs == null) {
+        for (Tag tag : m_Metrics.getTags())
+          m_MetricValues[tag.getID()] = evaluation.getMetric(tag, classLabel);
       }
+      else {
+        for (int id : metricIDs)
+          m_MetricValues[id] = evaluation.getMetric(id, classLabel);
+      }
+    }
+  }
+
+  /**
+   * Initializes the performance container with metric values that were
+   * computed previously.
+   *
+   * @param point		the point in the space
+   * @param metrics		the metrics the values belong to
+   * @param values		the metric values (ID - value)
+   * @param evalType		the type of evaluation
+   * @param classLabel		the class label index (if applicable)
+   * @param generator		the generator for re-creating the classifier
+   */
+  public Performance(GridPoint point, AbstractEvaluationMetrics metrics, Map<Integer,Double> values, int evalType, int classLabel, SetupGenerator generator) {
+    this();
+
+    m_Point        = point;
+    m_Evaluation   = evalType;
+    m_ClassLabel   = classLabel;
+    m_Metrics      = metrics;
+    m_Generator    = generator;
+    m_MetricValues = new double[m_Metrics.getMaxID() + 1];
+    Arrays.fill(m_MetricValues, Double.NaN);
+    for (Integer id : values.keySet()) {
+      if ((id >= 0) && (id < m_MetricValues.length))
+        m_MetricValues[id] = values.get(id);
     }
   }
 
@@ -102,12 +140,12 @@ public class Performance
     Performance		result;
 
     result                = new Performance();
-    result.m_Values       = (Point<Object>) m_Values.clone();
+    result.m_Point        = m_Point;
     result.m_Evaluation   = m_Evaluation;
     result.m_ClassLabel   = m_ClassLabel;
     result.m_Metrics      = m_Metrics;
-    result.m_MetricValues = (HashMap<Integer,Double>) m_MetricValues.clone();
-    result.m_Classifier   = m_Classifier;
+    result.m_MetricValues = m_MetricValues.clone();
+    result.m_Generator    = m_Generator;
 
     return result;
   }
@@ -146,9 +184,18 @@ public class Performance
    * @param value 	the performance measure
    */
   public void setPerformance(int evaluation, double value) {
+    int		size;
+
     if ((m_Metrics != null) && !m_Metrics.check(evaluation))
       return;
-    m_MetricValues.put(evaluation, value);
+    if (evaluation < 0)
+      return;
+    if (evaluation >= m_MetricValues.length) {
+      size           = m_MetricValues.length;
+      m_MetricValues = Arrays.copyOf(m_MetricValues, evaluation + 1);
+      Arrays.fill(m_MetricValues, size, m_MetricValues.length, Double.NaN);
+    }
+    m_MetricValues[evaluation] = value;
   }
 
   /**
@@ -158,13 +205,38 @@ public class Performance
    * @return 			the performance measure
    */
   public double getPerformance(int evaluation) {
-    if ((m_Metrics != null) && !m_Metrics.check(evaluation))
+    if ((evaluation < 0) || (evaluation >= m_MetricValues.length))
       return Double.NaN;
 
-    if (!m_MetricValues.containsKey(evaluation))
-      return Double.NaN;
+    return m_MetricValues[evaluation];
+  }
 
-    return m_MetricValues.get(evaluation);
+  /**
+   * Returns a rough estimate of the memory used by this object in bytes,
+   * including the point and the metric values, but excluding the shared
+   * generator and metrics.
+   *
+   * @return		the estimated size in bytes
+   */
+  public long estimateMemory() {
+    long	result;
+
+    // object header, fields and metric values
+    result = 48 + 16 + 8L * m_MetricValues.length;
+    // grid point with locations and (lazily created) values
+    if (m_Point != null)
+      result += 40 + 16 + 28L * m_Point.dimensions();
+
+    return result;
+  }
+
+  /**
+   * returns the point in the space for this performance.
+   *
+   * @return the point
+   */
+  public GridPoint getPoint() {
+    return m_Point;
   }
 
   /**
@@ -173,16 +245,31 @@ public class Performance
    * @return the values
    */
   public Point<Object> getValues() {
-    return m_Values;
+    return m_Point.getValues();
   }
 
   /**
-   * Returns the classifier.
+   * Returns the generator used for re-creating the classifier.
+   *
+   * @return the generator
+   */
+  public SetupGenerator getGenerator() {
+    return m_Generator;
+  }
+
+  /**
+   * Returns the classifier, which gets re-created from the base classifier
+   * of the generator and the point each time this method is called.
    *
    * @return the classifier
    */
   public Classifier getClassifier() {
-    return m_Classifier;
+    try {
+      return (Classifier) m_Generator.setup(m_Generator.getBaseObject(), m_Generator.evaluate(m_Point));
+    }
+    catch (Exception e) {
+      throw new IllegalStateException("Failed to set up classifier for " + getValues() + "!", e);
+    }
   }
 
   /**
@@ -21,12 +21,28 @@
 package weka.classifiers.meta.multisearch;
 
 import java.io.Serializable;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-import weka.core.setupgenerator.Point;
+import weka.core.setupgenerator.GridPoint;
+import weka.core.setupgenerator.Space;
 
 /**
- * Represents a simple cache for performance objects.
+ * Represents a simple cache for performance objects. Lookups and additions
+ * do not lock, so that evaluation threads do not contend when storing
+ * their results.
+ * <br>
+ * The cache can be bounded by the number of entries and/or the estimated
+ * memory of the entries. Once a bound is exceeded, the least recently used
+ * entries get evicted (approximate LRU, based on an access clock that
+ * advances with every addition) until the cache is below 90% of the
+ * bound(s). Points within the pinned space (eg the current neighbourhood
+ * of DefaultSearch) never get evicted.
  *
  * @author  fracpete (fracpete at waikato dot ac dot nz)
  * @version $Revision: 5156 $
@@ -37,26 +53,256 @@ public class PerformanceCache
   /** for serialization. */
   private static final long serialVersionUID = 5838863230451530252L;
 
+  /**
+   * Compact key for the cache: number of folds and index of the point in
+   * the (root) space, with a precomputed hash code.
+   */
+  public static class Key
+    implements Serializable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = -3245796329486021693L;
+
+    /** the number of folds. */
+    protected int m_Folds;
+
+    /** the index of the point in the space. */
+    protected long m_Index;
+
+    /** the hash code. */
+    protected int m_HashCode;
+
+    /**
+     * Initializes the key.
+     *
+     * @param folds	the number of folds in the cross-validation
+     * @param index	the index of the point in the space
+     */
+    public Key(int folds, long index) {
+      m_Folds    = folds;
+      m_Index    = index;
+      m_HashCode = 31 * folds + (int) (index ^ (index >>> 32));
+    }
+
+    /**
+     * Returns the number of folds.
+     *
+     * @return		the folds
+     */
+    public int getFolds() {
+      return m_Folds;
+    }
+
+    /**
+     * Returns the index of the point in the space.
+     *
+     * @return		the index
+     */
+    public long getIndex() {
+      return m_Index;
+    }
+
+    /**
+     * Returns the hash code.
+     *
+     * @return		the hash code
+     */
+    @Override
+    public int hashCode() {
+      return m_HashCode;
+    }
+
+    /**
+     * Checks whether the object is a key with the same folds and index.
+     *
+     * @param obj	the object to compare with
+     * @return		true if the same
+     */
+    @Override
+    public boolean equals(Object obj) {
+      Key	other;
+
+      if (!(obj instanceof Key))
+	return false;
+      other = (Key) obj;
+      return (m_Index == other.m_Index) && (m_Folds == other.m_Folds);
+    }
+
+    /**
+     * Returns a string representation of the key.
+     *
+     * @return		the string representation
+     */
+    @Override
+    public String toString() {
+      return m_Folds + "/" + m_Index;
+    }
+  }
+
+  /**
+   * Cache entry, recording the last access.
+   */
+  public static class Entry
+    implements Serializable {
+
+    /** for serialization. */
+    private static final long serialVersionUID = 2836518265377541076L;
+
+    /** the cached performance. */
+    protected Performance m_Performance;
+
+    /** the estimated memory of the performance. */
+    protected long m_Memory;
+
+    /** the value of the access clock at the last access. */
+    protected volatile long m_LastAccess;
+
+    /**
+     * Initializes the entry.
+     *
+     * @param performance	the performance to cache
+     * @param access		the current value of the access clock
+     */
+    public Entry(Performance performance, long access) {
+      m_Performance = performance;
+      m_Memory      = performance.estimateMemory();
+      m_LastAccess  = access;
+    }
+
+    /**
+     * Returns the cached performance.
+     *
+     * @return		the performance
+     */
+    public Performance getPerformance() {
+      return m_Performance;
+    }
+
+    /**
+     * Returns the estimated memory of the performance.
+     *
+     * @return		the memory in bytes
+     */
+    public long getMemory() {
+      return m_Memory;
+    }
+
+    /**
+     * Returns the value of the access clock at the last access.
+     *
+     * @return		the clock value
+     */
+    public long getLastAccess() {
+      return m_LastAccess;
+    }
+
+    /**
+     * Returns the performance as string.
+     *
+     * @return		the string representation
+     */
+    @Override
+    public String toString() {
+      return "" + m_Performance;
+    }
+  }
+
+  /** the fraction of the bounds that the cache gets reduced to when evicting. */
+  public final static double EVICTION_TARGET = 0.9;
+
   /** the cache for points in the space that got calculated. */
-  protected Hashtable<String,Performance> m_Cache = new Hashtable<String,Performance>();
+  protected ConcurrentHashMap<Key,Entry> m_Cache = new ConcurrentHashMap<Key,Entry>();
+
+  /** the maximum number of entries (0 = unbounded). */
+  protected int m_MaxEntries = 0;
+
+  /** the maximum estimated memory in bytes (0 = unbounded). */
+  protected long m_MaxMemory = 0;
+
+  /** the access clock, advances with every addition. */
+  protected AtomicLong m_Clock = new AtomicLong();
+
+  /** the estimated memory of all entries. */
+  protected AtomicLong m_Memory = new AtomicLong();
+
+  /** the number of hits. */
+  protected AtomicLong m_Hits = new AtomicLong();
+
+  /** the number of misses. */
+  protected AtomicLong m_Misses = new AtomicLong();
+
+  /** the number of evicted entries. */
+  protected AtomicLong m_Evictions = new AtomicLong();
+
+  /** the points that must not get evicted, null if none. */
+  protected volatile Space m_Pinned;
+
+  /**
+   * Initializes an unbounded cache.
+   */
+  public PerformanceCache() {
+    this(0, 0);
+  }
 
   /**
-   * returns the ID string for a cache item.
+   * Initializes the cache with the given bounds.
    *
-   * @param cv	the number of folds in the cross-validation
-   * @param values	the point in the space
-   * @return		the ID string
+   * @param maxEntries	the maximum number of entries, 0 for unbounded
+   * @param maxMemory	the maximum estimated memory in bytes, 0 for unbounded
+   */
+  public PerformanceCache(int maxEntries, long maxMemory) {
+    super();
+
+    m_MaxEntries = Math.max(0, maxEntries);
+    m_MaxMemory  = Math.max(0, maxMemory);
+  }
+
+  /**
+   * Returns the maximum number of entries.
+   *
+   * @return		the maximum, 0 if unbounded
+   */
+  public int getMaxEntries() {
+    return m_MaxEntries;
+  }
+
+  /**
+   * Returns the maximum estimated memory.
+   *
+   * @return		the maximum in bytes, 0 if unbounded
    */
-  protected String getID(int cv, Point<Object> values) {
-    String	result;
-    int	i;
+  public long getMaxMemory() {
+    return m_MaxMemory;
+  }
 
-    result = "" + cv;
+  /**
+   * Sets the space with the points that must not get evicted, eg the
+   * current neighbourhood.
+   *
+   * @param value	the space, null to unpin
+   */
+  public void setPinned(Space value) {
+    m_Pinned = value;
+  }
 
-    for (i = 0; i < values.dimensions(); i++)
-      result += "\t" + values.getValue(i);
+  /**
+   * Returns the space with the points that must not get evicted.
+   *
+   * @return		the space, null if none
+   */
+  public Space getPinned() {
+    return m_Pinned;
+  }
 
-    return result;
+  /**
+   * Returns the key for the point.
+   *
+   * @param cv		the number of folds in the cross-validation
+   * @param values	the point in the space
+   * @return		the key
+   */
+  protected Key newKey(int cv, GridPoint values) {
+    return new Key(cv, values.getIndex());
   }
 
   /**
@@ -66,19 +312,55 @@ public class PerformanceCache
    * @param values	the point in the space
    * @return		true if the value is already cached
    */
-  public boolean isCached(int cv, Point<Object> values) {
-    return (get(cv, values) != null);
+  public boolean isCached(int cv, GridPoint values) {
+    return (getIfPresent(cv, values) != null);
+  }
+
+  /**
+   * checks whether the point is in the cache, without counting as hit or
+   * miss and without marking the entry as used.
+   *
+   * @param cv		the number of folds in the cross-validation
+   * @param values	the point in the space
+   * @return		true if the value is in the cache
+   */
+  public boolean contains(int cv, GridPoint values) {
+    return m_Cache.containsKey(newKey(cv, values));
+  }
+
+  /**
+   * returns a cached performance object, null if not yet in the cache.
+   *
+   * @param cv	the number of folds in the cross-validation
+   * @param values	the point in the space
+   * @return		the cached performance item, null if not in cache
+   * @see		#getIfPresent(int, GridPoint)
+   */
+  public Performance get(int cv, GridPoint values) {
+    return getIfPresent(cv, values);
   }
 
   /**
    * returns a cached performance object, null if not yet in the cache.
+   * Single lookup, use instead of {@link #isCached(int, GridPoint)}
+   * followed by {@link #get(int, GridPoint)}.
    *
    * @param cv	the number of folds in the cross-validation
    * @param values	the point in the space
    * @return		the cached performance item, null if not in cache
    */
-  public Performance get(int cv, Point<Object> values) {
-    return m_Cache.get(getID(cv, values));
+  public Performance getIfPresent(int cv, GridPoint values) {
+    Entry	entry;
+
+    entry = m_Cache.get(newKey(cv, values));
+    if (entry == null) {
+      m_Misses.incrementAndGet();
+      return null;
+    }
+    m_Hits.incrementAndGet();
+    entry.m_LastAccess = m_Clock.get();
+
+    return entry.getPerformance();
   }
 
   /**
@@ -88,7 +370,124 @@ public class PerformanceCache
    * @param p		the performance object to store
    */
   public void add(int cv, Performance p) {
-    m_Cache.put(getID(cv, p.getValues()), p);
+    Entry	entry;
+    Entry	old;
+
+    entry = new Entry(p, m_Clock.incrementAndGet());
+    old   = m_Cache.put(newKey(cv, p.getPoint()), entry);
+    m_Memory.addAndGet(entry.getMemory());
+    if (old != null)
+      m_Memory.addAndGet(-old.getMemory());
+
+    if (isOverBounds(1.0))
+      evict();
+  }
+
+  /**
+   * Checks whether the cache exceeds the fraction of the bounds.
+   *
+   * @param fraction	the fraction of the bounds to check against
+   * @return		true if exceeded
+   */
+  protected boolean isOverBounds(double fraction) {
+    if ((m_MaxEntries > 0) && (m_Cache.size() > m_MaxEntries * fraction))
+      return true;
+    if ((m_MaxMemory > 0) && (m_Memory.get() > m_MaxMemory * fraction))
+      return true;
+    return false;
+  }
+
+  /**
+   * Evicts the least recently used entries that are not pinned, until the
+   * cache is within {@link #EVICTION_TARGET} of the bounds.
+   */
+  protected synchronized void evict() {
+    List<Map.Entry<Key,Entry>>	candidates;
+    Space			pinned;
+    int				i;
+
+    if (!isOverBounds(1.0))
+      return;
+
+    pinned     = m_Pinned;
+    candidates = new ArrayList<Map.Entry<Key,Entry>>(m_Cache.size());
+    for (Map.Entry<Key,Entry> e: m_Cache.entrySet()) {
+      if ((pinned != null) && pinned.contains(e.getValue().getPerformance().getPoint()))
+	continue;
+      candidates.add(e);
+    }
+    Collections.sort(candidates, new Comparator<Map.Entry<Key,Entry>>() {
+      @Override
+      public int compare(Map.Entry<Key,Entry> o1, Map.Entry<Key,Entry> o2) {
+	return Long.compare(o1.getValue().getLastAccess(), o2.getValue().getLastAccess());
+      }
+    });
+
+    for (i = 0; (i < candidates.size()) && isOverBounds(EVICTION_TARGET); i++) {
+      if (m_Cache.remove(candidates.get(i).getKey(), candidates.get(i).getValue())) {
+	m_Memory.addAndGet(-candidates.get(i).getValue().getMemory());
+	m_Evictions.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Returns the number of cache hits.
+   *
+   * @return		the hits
+   */
+  public long getHits() {
+    return m_Hits.get();
+  }
+
+  /**
+   * Returns the number of cache misses.
+   *
+   * @return		the misses
+   */
+  public long getMisses() {
+    return m_Misses.get();
+  }
+
+  /**
+   * Returns the number of evicted entries.
+   *
+   * @return		the evictions
+   */
+  public long getEvictions() {
+    return m_Evictions.get();
+  }
+
+  /**
+   * Returns the estimated memory of all entries.
+   *
+   * @return		the memory in bytes
+   */
+  public long getMemory() {
+    return m_Memory.get();
+  }
+
+  /**
+   * Returns a short summary of size and counters.
+   *
+   * @return		the statistics
+   */
+  public String getStatistics() {
+    return
+      "size=" + size()
+	+ ", memory=" + getMemory()
+	+ ", hits=" + getHits()
+	+ ", misses=" + getMisses()
+	+ ", evictions=" + getEvictions();
+  }
+
+  /**
+   * Returns the number of cached performances.
+   *
+   * @return		the number of entries
+   */
+  public int size() {
+    return m_Cache.size();
   }
 
   /**
@@ -99,4 +498,4 @@ public class PerformanceCache
   public String toString() {
     return m_Cache.toString();
   }
-}
\ No newline at end of file
+}
@@ -42,6 +42,9 @@ public class PerformanceComparator
   /** the metrics to use. */
   protected AbstractEvaluationMetrics m_Metrics;
 
+  /** whether to invert the order of the performance measure. */
+  protected boolean m_Invert;
+
   /**
    * initializes the comparator with the given performance measure.
    *
@@ -53,6 +56,7 @@ public class PerformanceComparator
 
     m_Evaluation = evaluation;
     m_Metrics    = metrics;
+    m_Invert     = metrics.invert(evaluation);
   }
 
   /**
@@ -98,12 +102,12 @@ public class PerformanceComparator
     else if (p1 > p2)
       result = 1;
     else
-      result = o1.getValues().compareTo(o2.getValues());
+      result = o1.getPoint().compareTo(o2.getPoint());
 
     // only correlation coefficient/accuracy/kappa obey to this order, for the
     // errors (and the combination of all three), the smaller the number the
     // better -> hence invert them
-    if (getMetrics().invert(getEvaluation()))
+    if (m_Invert)
       result = -result;
 
     return result;
@@ -0,0 +1,404 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PersistentPerformanceCache.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Performance cache that is stored on disk and shared across runs and
+ * processes. Uses two append-only files in the cache directory:
+ * <ul>
+ *   <li>performance.dat - the records (key and metric values)</li>
+ *   <li>performance.idx - the index, entries of 64-bit key hash and the
+ *   offset of the record in the data file</li>
+ * </ul>
+ * Appending is guarded by an exclusive file lock on the data file, so that
+ * multiple JVMs can write to the same cache. An index entry only gets
+ * written after its record, readers therefore never see incomplete records.
+ * Index entries written by other processes get picked up with every
+ * lookup, so that a more recent record for the same key takes effect.
+ * <br>
+ * There is only one instance per directory within a JVM, obtained via
+ * {@link #getInstance(File)}. Every call of this method must be paired with
+ * a call of {@link #close()}, the files get closed and the instance gets
+ * discarded once the last user has closed it.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class PersistentPerformanceCache
+  implements Closeable {
+
+  /** the name of the data file. */
+  public final static String DATA_FILE = "performance.dat";
+
+  /** the name of the index file. */
+  public final static String INDEX_FILE = "performance.idx";
+
+  /** the size of an index entry in bytes. */
+  public final static int INDEX_ENTRY_SIZE = 16;
+
+  /** the instances per directory. */
+  protected static Map<File,PersistentPerformanceCache> m_Instances = new HashMap<File,PersistentPerformanceCache>();
+
+  /** the cache directory. */
+  protected File m_Directory;
+
+  /** the data file. */
+  protected FileChannel m_Data;
+
+  /** the index file. */
+  protected FileChannel m_Index;
+
+  /** how far the index file has been read. */
+  protected long m_IndexPosition;
+
+  /** the index (key hash - record offsets). */
+  protected Map<Long,List<Long>> m_Offsets;
+
+  /** the number of users that obtained the instance via getInstance. */
+  protected int m_References;
+
+  /**
+   * Opens the cache in the specified directory.
+   *
+   * @param dir		the cache directory
+   * @throws IOException	if opening the files fails
+   */
+  protected PersistentPerformanceCache(File dir) throws IOException {
+    super();
+
+    if (!dir.exists() && !dir.mkdirs())
+      throw new IOException("Failed to create cache directory: " + dir);
+
+    m_Directory     = dir;
+    m_Data          = new RandomAccessFile(new File(dir, DATA_FILE), "rw").getChannel();
+    m_Index         = new RandomAccessFile(new File(dir, INDEX_FILE), "rw").getChannel();
+    m_IndexPosition = 0;
+    m_Offsets       = new HashMap<Long,List<Long>>();
+
+    refresh();
+  }
+
+  /**
+   * Returns the cache for the specified directory, opening it if necessary.
+   *
+   * @param dir		the cache directory
+   * @return		the cache
+   * @throws IOException	if opening the cache fails
+   */
+  public static synchronized PersistentPerformanceCache getInstance(File dir) throws IOException {
+    PersistentPerformanceCache	result;
+
+    dir    = dir.getCanonicalFile();
+    result = m_Instances.get(dir);
+    if (result == null) {
+      result = new PersistentPerformanceCache(dir);
+      m_Instances.put(dir, result);
+    }
+    result.m_References++;
+
+    return result;
+  }
+
+  /**
+   * Releases the cache. Closes the files and discards the index once the
+   * last user obtained via {@link #getInstance(File)} has released it, or
+   * immediately if the cache was not obtained via that method.
+   *
+   * @throws IOException	if closing the files fails
+   */
+  public void close() throws IOException {
+    synchronized(PersistentPerformanceCache.class) {
+      if (m_References > 0) {
+	m_References--;
+	if (m_References > 0)
+	  return;
+	if (m_Instances.get(m_Directory) == this)
+	  m_Instances.remove(m_Directory);
+      }
+    }
+
+    synchronized(this) {
+      m_Offsets.clear();
+      m_IndexPosition = 0;
+      try {
+	m_Data.close();
+      }
+      finally {
+	m_Index.close();
+      }
+    }
+  }
+
+  /**
+   * Returns the cache directory.
+   *
+   * @return		the directory
+   */
+  public File getDirectory() {
+    return m_Directory;
+  }
+
+  /**
+   * Computes the 64-bit hash (FNV-1a) of the key.
+   *
+   * @param key		the key to hash
+   * @return		the hash
+   */
+  protected static long hash(byte[] key) {
+    long	result;
+    int		i;
+
+    result = 0xcbf29ce484222325L;
+    for (i = 0; i < key.length; i++) {
+      result ^= (key[i] & 0xff);
+      result *= 0x100000001b3L;
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the index entries that got appended since the last refresh.
+   *
+   * @throws IOException	if reading fails
+   */
+  protected void refresh() throws IOException {
+    ByteBuffer		buffer;
+    long		end;
+    long		hash;
+    long		offset;
+    List<Long>		offsets;
+
+    end = m_Index.size();
+    end = end - (end % INDEX_ENTRY_SIZE);
+    if (end <= m_IndexPosition)
+      return;
+
+    buffer = ByteBuffer.allocate((int) Math.min(end - m_IndexPosition, 1024 * INDEX_ENTRY_SIZE));
+    while (m_IndexPosition < end) {
+      buffer.clear();
+      buffer.limit((int) Math.min(buffer.capacity(), end - m_IndexPosition));
+      readFully(m_Index, buffer, m_IndexPosition);
+      buffer.flip();
+      while (buffer.remaining() >= INDEX_ENTRY_SIZE) {
+	hash    = buffer.getLong();
+	offset  = buffer.getLong();
+	offsets = m_Offsets.get(hash);
+	if (offsets == null) {
+	  offsets = new ArrayList<Long>(1);
+	  m_Offsets.put(hash, offsets);
+	}
+	offsets.add(offset);
+	m_IndexPosition += INDEX_ENTRY_SIZE;
+      }
+    }
+  }
+
+  /**
+   * Fills the buffer from the channel, starting at the given position.
+   *
+   * @param channel	the channel to read from
+   * @param buffer	the buffer to fill
+   * @param position	the position in the channel
+   * @throws IOException	if reading fails or end of file is reached
+   */
+  protected void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    int		read;
+
+    while (buffer.hasRemaining()) {
+      read = channel.read(buffer, position);
+      if (read < 0)
+	throw new IOException("Unexpected end of file in " + m_Directory);
+      position += read;
+    }
+  }
+
+  /**
+   * Reads the record at the given offset, if it is for the given key.
+   *
+   * @param offset	the offset of the record
+   * @param key		the key to match
+   * @return		the metric values (ID - value), null if the key differs
+   * @throws IOException	if reading fails
+   */
+  protected Map<Integer,Double> read(long offset, byte[] key) throws IOException {
+    Map<Integer,Double>	result;
+    ByteBuffer		buffer;
+    byte[]		stored;
+    int			count;
+    int			i;
+
+    buffer = ByteBuffer.allocate(4);
+    readFully(m_Data, buffer, offset);
+    buffer.flip();
+    if (buffer.getInt() != key.length)
+      return null;
+
+    buffer = ByteBuffer.allocate(key.length + 4);
+    readFully(m_Data, buffer, offset + 4);
+    buffer.flip();
+    stored = new byte[key.length];
+    buffer.get(stored);
+    for (i = 0; i < key.length; i++) {
+      if (stored[i] != key[i])
+	return null;
+    }
+    count = buffer.getInt();
+
+    buffer = ByteBuffer.allocate(count * 12);
+    readFully(m_Data, buffer, offset + 4 + key.length + 4);
+    buffer.flip();
+    result = new HashMap<Integer,Double>();
+    for (i = 0; i < count; i++)
+      result.put(buffer.getInt(), buffer.getDouble());
+
+    return result;
+  }
+
+  /**
+   * Looks up the metric values stored for the key.
+   *
+   * @param key		the key to look up
+   * @return		the metric values (ID - value), null if not cached
+   * @throws IOException	if reading fails
+   */
+  public synchronized Map<Integer,Double> get(String key) throws IOException {
+    Map<Integer,Double>	result;
+    byte[]		bytes;
+    List<Long>		offsets;
+    int			i;
+
+    // other processes may have appended records, also for known keys
+    refresh();
+
+    bytes   = key.getBytes(StandardCharsets.UTF_8);
+    offsets = m_Offsets.get(hash(bytes));
+    if (offsets == null)
+      return null;
+
+    // most recent record wins
+    for (i = offsets.size() - 1; i >= 0; i--) {
+      result = read(offsets.get(i), bytes);
+      if (result != null)
+	return result;
+    }
+
+    return null;
+  }
+
+  /**
+   * Appends the metric values for the key.
+   *
+   * @param key		the key
+   * @param ids		the IDs of the metrics
+   * @param values	the values of the metrics
+   * @throws IOException	if writing fails
+   */
+  public synchronized void put(String key, int[] ids, double[] values) throws IOException {
+    FileLock	lock;
+    ByteBuffer	buffer;
+    byte[]	bytes;
+    long	offset;
+    long	pos;
+    long	end;
+    int		i;
+
+    bytes  = key.getBytes(StandardCharsets.UTF_8);
+    buffer = ByteBuffer.allocate(4 + bytes.length + 4 + ids.length * 12);
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+    buffer.putInt(ids.length);
+    for (i = 0; i < ids.length; i++) {
+      buffer.putInt(ids[i]);
+      buffer.putDouble(values[i]);
+    }
+    buffer.flip();
+
+    lock = m_Data.lock();
+    try {
+      // record
+      offset = m_Data.size();
+      pos    = offset;
+      while (buffer.hasRemaining())
+	pos += m_Data.write(buffer, pos);
+
+      // index entry, dropping any incomplete entry left behind by a crash
+      end = m_Index.size();
+      if (end % INDEX_ENTRY_SIZE != 0) {
+	end -= end % INDEX_ENTRY_SIZE;
+	m_Index.truncate(end);
+      }
+      buffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+      buffer.putLong(hash(bytes));
+      buffer.putLong(offset);
+      buffer.flip();
+      while (buffer.hasRemaining())
+	end += m_Index.write(buffer, end);
+    }
+    finally {
+      lock.release();
+    }
+
+    refresh();
+  }
+
+  /**
+   * Returns the number of records in the index.
+   *
+   * @return		the number of records
+   * @throws IOException	if reading the index fails
+   */
+  public synchronized int size() throws IOException {
+    int			result;
+    Iterator<List<Long>>	iter;
+
+    refresh();
+    result = 0;
+    iter   = m_Offsets.values().iterator();
+    while (iter.hasNext())
+      result += iter.next().size();
+
+    return result;
+  }
+
+  /**
+   * Returns a short description of the cache.
+   *
+   * @return		the description
+   */
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + ": " + m_Directory;
+  }
+}
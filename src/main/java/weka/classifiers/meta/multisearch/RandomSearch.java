@@ -26,6 +26,7 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.Utils;
 import weka.core.converters.ConverterUtils.DataSource;
+import weka.core.setupgenerator.GridPoint;
 import weka.core.setupgenerator.Point;
 import weka.core.setupgenerator.Space;
 import weka.filters.Filter;
@@ -34,13 +35,16 @@ import weka.filters.unsupervised.instance.Resample;
 import java.io.File;
 import java.io.Serializable;
 import java.util.AbstractMap;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.Vector;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
 
 /**
@@ -78,6 +82,84 @@ import java.util.concurrent.Future;
  *  Number of execution slots.
  *  (default 1 - i.e. no parallelism)</pre>
  *
+ * <pre> -fold-parallel
+ *  Whether to evaluate the cross-validation folds of a setup in
+ *  parallel as well, using a work-stealing (fork/join) pool.
+ *  The results are identical to the serial evaluation.
+ *  (default: off)</pre>
+ * 
+ * <pre> -executor &lt;FIXED|SHARED|VIRTUAL&gt;
+ *  The type of executor for the evaluation tasks:
+ *  FIXED = thread pool with num-slots threads per search
+ *  SHARED = process-wide scheduler shared by all searches,
+ *  sized to the number of processors, with fair queuing between
+ *  the searches; num-slots limits the tasks of a search running
+ *  at the same time, folds do not get evaluated in parallel;
+ *  nested searches run their tasks sequentially in the task
+ *  of the enclosing search
+ *  VIRTUAL = virtual thread per task (JDK 21+), num-slots limits
+ *  the tasks running at the same time, folds do not get evaluated
+ *  in parallel; falls back to FIXED on older JVMs
+ *  (default: FIXED)</pre>
+ * 
+ * <pre> -skip-failures
+ *  Whether to skip setups whose evaluation failed instead of
+ *  cancelling the outstanding evaluations and aborting the search.
+ *  (default: off)</pre>
+ * 
+ * <pre> -task-timeout &lt;seconds&gt;
+ *  The maximum time in seconds for evaluating a single setup;
+ *  setups that take longer get recorded as failed and their
+ *  evaluation gets interrupted; the timeout is cooperative, ie
+ *  classifiers that ignore interrupts keep occupying their
+ *  execution slot until they finish.
+ *  (default: 0 = unlimited)</pre>
+ * 
+ * <pre> -max-time &lt;seconds&gt;
+ *  The maximum time in seconds for the search; once exhausted,
+ *  the best setup found so far is returned.
+ *  (default: 0 = unlimited)</pre>
+ * 
+ * <pre> -max-evaluations &lt;num&gt;
+ *  The maximum number of evaluations for the search; once exhausted,
+ *  the best setup found so far is returned.
+ *  (default: 0 = unlimited)</pre>
+ * 
+ * <pre> -cpu-budget &lt;num&gt;
+ *  The total number of threads for the search, shared between the
+ *  evaluation tasks running concurrently and the threads of each
+ *  task (ie of the base classifier); overrides num-slots.
+ *  (default: 0 = no budget, -1 = number of processors)</pre>
+ * 
+ * <pre> -task-threads &lt;num&gt;
+ *  The number of threads each evaluation task uses under the CPU
+ *  budget; 0 chooses the number automatically if the base classifier
+ *  has the task threads property, otherwise tasks are assumed to be
+ *  single-threaded.
+ *  (default: 0)</pre>
+ * 
+ * <pre> -task-threads-property &lt;path&gt;
+ *  The property path of the base classifier for the number of
+ *  threads per task, eg 'classifier.numExecutionSlots';
+ *  'none' disables it.
+ *  (default: numExecutionSlots)</pre>
+ * 
+ * <pre> -cache-max-entries &lt;num&gt;
+ *  The maximum number of entries in the performance cache.
+ *  The least recently used entries get evicted first.
+ *  (default: 0 = unbounded)</pre>
+ * 
+ * <pre> -cache-max-memory &lt;MB&gt;
+ *  The maximum estimated memory of the performance cache in MB.
+ *  The least recently used entries get evicted first.
+ *  (default: 0 = unbounded)</pre>
+ * 
+ * <pre> -persistent-cache &lt;dir&gt;
+ *  The directory for the persistent performance cache, which is
+ *  shared across runs and processes.
+ *  The cache gets disabled if pointing to '.'.
+ *  (default: .)</pre>
+ * 
  * <pre> -D
  *  Whether to enable debugging output.
  *  (default off)</pre>
@@ -395,6 +477,89 @@ public class RandomSearch
     m_RandomSeed = value;
   }
 
+  /**
+   * Returns the number of setups that the search evaluates at most at the
+   * same time, ie at most the number of iterations.
+   *
+   * @return		the number of setups, -1 if unknown
+   */
+  @Override
+  protected long estimateNumSetups() {
+    long	result;
+
+    result = super.estimateNumSetups();
+    if (result > -1)
+      result = Math.min(result, m_NumIterations);
+
+    return result;
+  }
+
+  /**
+   * Returns a pseudo-random long between 0 (inclusive) and bound (exclusive).
+   *
+   * @param random	the random number generator to use
+   * @param bound	the upper bound (exclusive), must be positive
+   * @return		the random number
+   */
+  protected long nextLong(Random random, long bound) {
+    long	bits;
+    long	result;
+
+    if (bound <= Integer.MAX_VALUE)
+      return random.nextInt((int) bound);
+
+    // rejection sampling to avoid modulo bias
+    do {
+      bits   = random.nextLong() >>> 1;
+      result = bits % bound;
+    }
+    while (bits - result + (bound - 1) < 0);
+
+    return result;
+  }
+
+  /**
+   * Draws the specified number of distinct indices from the range 0 to
+   * size-1, i.e., sampling without replacement (Floyd's algorithm). Only
+   * requires memory proportional to the number of samples, not the size
+   * of the range.
+   *
+   * @param size	the size of the range to sample from
+   * @param num		the number of samples to draw, at most size
+   * @param random	the random number generator to use
+   * @return		the sampled indices
+   */
+  protected long[] sampleIndices(long size, int num, Random random) {
+    long[]	result;
+    Set<Long>	drawn;
+    long	j;
+    long	t;
+    int		i;
+    int		n;
+
+    result = new long[num];
+    drawn  = new HashSet<Long>();
+    i      = 0;
+    for (j = size - num; j < size; j++) {
+      t = nextLong(random, j + 1);
+      if (!drawn.add(t)) {
+	t = j;
+	drawn.add(t);
+      }
+      result[i++] = t;
+    }
+
+    // randomize order, as Floyd's algorithm favors large indices at the end
+    for (i = result.length - 1; i > 0; i--) {
+      n         = random.nextInt(i + 1);
+      t         = result[i];
+      result[i] = result[n];
+      result[n] = t;
+    }
+
+    return result;
+  }
+
   /**
    * determines the best point for the given space, using CV with specified
    * number of folds.
@@ -418,13 +583,15 @@ public class RandomSearch
   protected Performance determineBestInSpace(Space space, Instances train,
 					     Instances test, int folds, Random random, boolean postClean) throws Exception {
     Performance result;
-    List<Point<Object>> enm;
+    long[] indices;
     Performance performance;
-    Point<Object> values;
+    GridPoint values;
     Performance p1;
     Performance p2;
     AbstractEvaluationTask newTask;
-    List<Callable> tasks;
+    CompletionService<Boolean> completion;
+    Map<Future<Boolean>,AbstractEvaluationTask> pending;
+    Future<Boolean> future;
     int classLabel;
 
     m_Performances.clear();
@@ -438,51 +605,56 @@ public class RandomSearch
       log("Determining best values with evaluation on training set in space:\n"
 	+ space + "\n");
 
-    enm = Collections.list(space.values());
-    m_NumSetups = Math.min(space.size(), m_NumIterations);
-    Collections.shuffle(enm, random);
+    m_NumSetups = Math.min(space.size(), (long) m_NumIterations);
+    indices = sampleIndices(space.size(), (int) m_NumSetups, random);
     if (train.classAttribute().isNominal())
       classLabel = m_Owner.getClassLabelIndex(train.classAttribute().numValues());
     else
       classLabel = -1;
+    initPersistentKey(train, test, folds, classLabel);
 
-    tasks = new ArrayList<Callable>();
-    ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+    completion = new ExecutorCompletionService<Boolean>(m_ExecutorPool);
+    pending = new HashMap<Future<Boolean>,AbstractEvaluationTask>();
     for (int i = 0; i < m_NumSetups; ++i) {
-      values = enm.get(i);
+      values = space.gridPointAt(indices[i]);
 
       // already calculated?
-      if (m_Cache.isCached(folds, values)) {
-	performance = m_Cache.get(folds, values);
+      performance = getCachedPerformance(folds, values, classLabel);
+      if (performance != null) {
 	m_Performances.add(performance);
 	m_Trace.add(new AbstractMap.SimpleEntry<Integer, Performance>(
 	  folds, performance));
 	log(performance + ": cached=true");
-      } else {
+      } else if (acquireEvaluation()) {
 	newTask = m_Owner.getFactory().newTask(m_Owner, train, test,
 	  m_Owner.getGenerator(), values, folds,
 	  m_Owner.getEvaluation().getSelectedTag().getID(),
 	  classLabel);
-	results.add(m_ExecutorPool.submit(newTask));
+	pending.put(completion.submit(newTask), newTask);
       }
     }
 
-    // wait for execution to finish
+    // wait for execution to finish, in order of completion
     try {
-      for (int i = 0; i < results.size(); i++) {
-	if (!results.get(i).get()) {
-	  System.err.println("Execution of evaluation thread failed:\n" + tasks.get(i));
-	  throw new IllegalStateException("Execution of evaluation thread failed:\n" + tasks.get(i));
-	}
+      while (!pending.isEmpty()) {
+	future = nextCompleted(completion, pending);
+	if (future == null)
+	  break;
+	checkResult(future, pending.remove(future));
       }
+      if (isBudgetExhausted())
+	log("\nSearch stopped, using best point found so far.");
     }
     catch (Exception e) {
+      cancelPending(pending.keySet());
       System.err.println("Thread-based execution of evaluation tasks failed!");
       e.printStackTrace();
       throw new IllegalStateException("Thread-based execution of evaluation tasks failed!", e);
     }
 
     // sort list
+    if (!removeFailedPerformances(folds))
+      throw new IllegalStateException("Search stopped before any setup got evaluated!");
     Collections.sort(m_Performances,
       new PerformanceComparator(m_Owner.getEvaluation()
 	.getSelectedTag().getID(), m_Owner.getMetrics()));
@@ -552,6 +724,7 @@ public class RandomSearch
       resample.setSampleSizePercent(getSampleSizePercent());
       resample.setInputFormat(inst);
       sample = Filter.useFilter(inst, resample);
+      addFingerprint("sample", sample);
     }
 
     m_UniformPerformance = false;
@@ -563,7 +736,7 @@ public class RandomSearch
     log("\nResult: " + result + "\n");
     log("=== Search space - End ===\n");
 
-    evals = m_Owner.getGenerator().evaluate(result.getValues());
+    evals = m_Owner.getGenerator().evaluate(result.getPoint());
     cls = (Classifier) m_Owner.getGenerator().setup(
       (Serializable) m_Owner.getClassifier(), evals);
     log("Classifier: " + getCommandline(cls));
@@ -595,6 +768,7 @@ public class RandomSearch
 	    + msg);
       }
       m_SearchSpaceTestInst.deleteWithMissingClass();
+      addFingerprint("test-set", m_SearchSpaceTestInst);
       log("Using test set for search space: " + m_SearchSpaceTestSet);
     }
   }
@@ -614,8 +788,8 @@ public class RandomSearch
 
     loadTestData(data);
 
-    performance = findBest(new Instances(data));
-    evals = m_Owner.getGenerator().evaluate(performance.getValues());
+    performance = findBest(data);
+    evals = m_Owner.getGenerator().evaluate(performance.getPoint());
     result = new SearchResult();
     result.classifier = (Classifier) m_Owner.getGenerator().setup(
       (Serializable) m_Owner.getClassifier(), evals);
@@ -0,0 +1,452 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SharedEvaluationScheduler.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide scheduler for evaluation tasks, shared by all the searches
+ * in the JVM. A fixed number of (daemon) worker threads, by default the
+ * number of available processors, executes the tasks of all searches, so
+ * that the total concurrency stays bounded regardless of how many searches
+ * run at the same time (eg in outer cross-validation loops or in the
+ * Experimenter).
+ * <br>
+ * Each search obtains its own executor via {@link #newExecutor(int)}, with
+ * its own queue. The workers serve these queues in a round-robin fashion
+ * (fair queuing), skipping executors that already run as many tasks as
+ * their concurrency limit allows. Shutting down an executor only affects
+ * the tasks of that executor, the worker threads keep running.
+ * <br>
+ * Tasks submitted from one of the worker threads (eg by a search nested
+ * in the classifier that a task evaluates) do not get queued, but run
+ * right away in the submitting thread. Otherwise all the workers could end
+ * up waiting for queued tasks that no worker is left to execute. Nested
+ * searches using the scheduler therefore evaluate their setups one after
+ * the other within the task of the enclosing search.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SharedEvaluationScheduler {
+
+  /**
+   * The executor of a single search, queuing its tasks with the scheduler.
+   */
+  public static class Executor
+    extends AbstractExecutorService {
+
+    /** the owning scheduler. */
+    protected SharedEvaluationScheduler m_Owner;
+
+    /** the maximum number of tasks to run at the same time. */
+    protected int m_MaxConcurrency;
+
+    /** the queued tasks. */
+    protected LinkedList<Runnable> m_Queue;
+
+    /** the threads currently running tasks of this executor. */
+    protected Set<Thread> m_Running;
+
+    /** whether the executor has been shut down. */
+    protected boolean m_Shutdown;
+
+    /**
+     * Initializes the executor.
+     *
+     * @param owner		the owning scheduler
+     * @param maxConcurrency	the maximum number of tasks to run at the same time
+     */
+    protected Executor(SharedEvaluationScheduler owner, int maxConcurrency) {
+      super();
+
+      m_Owner          = owner;
+      m_MaxConcurrency = maxConcurrency;
+      m_Queue          = new LinkedList<Runnable>();
+      m_Running        = new HashSet<Thread>();
+      m_Shutdown       = false;
+    }
+
+    /**
+     * Returns the maximum number of tasks to run at the same time.
+     *
+     * @return		the maximum
+     */
+    public int getMaxConcurrency() {
+      return m_MaxConcurrency;
+    }
+
+    /**
+     * Returns whether a task can be started, ie whether tasks are queued
+     * and the concurrency limit has not been reached. Must be called while
+     * holding the lock of the scheduler.
+     *
+     * @return		true if a task can be started
+     */
+    protected boolean canStart() {
+      return !m_Queue.isEmpty() && (m_Running.size() < m_MaxConcurrency);
+    }
+
+    /**
+     * Queues the task. Runs it right away if the current thread is one of
+     * the worker threads of the scheduler.
+     *
+     * @param command	the task to queue
+     * @throws RejectedExecutionException	if the executor has been shut down
+     */
+    @Override
+    public void execute(Runnable command) {
+      if (command == null)
+	throw new NullPointerException();
+      if (m_Owner.isWorker(Thread.currentThread()))
+	m_Owner.runInline(this, command);
+      else
+	m_Owner.enqueue(this, command);
+    }
+
+    /**
+     * Initiates an orderly shutdown, the queued tasks still get executed.
+     */
+    @Override
+    public void shutdown() {
+      synchronized(m_Owner) {
+	m_Shutdown = true;
+	m_Owner.notifyAll();
+      }
+    }
+
+    /**
+     * Removes all the queued tasks and interrupts the running ones.
+     *
+     * @return		the tasks that were queued
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+      List<Runnable>	result;
+      Iterator<Thread>	iter;
+
+      synchronized(m_Owner) {
+	m_Shutdown = true;
+	result     = new ArrayList<Runnable>(m_Queue);
+	m_Queue.clear();
+	iter = m_Running.iterator();
+	while (iter.hasNext())
+	  iter.next().interrupt();
+	if (m_Running.isEmpty())
+	  m_Owner.m_Executors.remove(this);
+	m_Owner.notifyAll();
+      }
+
+      return result;
+    }
+
+    /**
+     * Returns whether the executor has been shut down.
+     *
+     * @return		true if shut down
+     */
+    @Override
+    public boolean isShutdown() {
+      synchronized(m_Owner) {
+	return m_Shutdown;
+      }
+    }
+
+    /**
+     * Returns whether all tasks have completed after a shut down.
+     *
+     * @return		true if terminated
+     */
+    @Override
+    public boolean isTerminated() {
+      synchronized(m_Owner) {
+	return m_Shutdown && m_Queue.isEmpty() && m_Running.isEmpty();
+      }
+    }
+
+    /**
+     * Waits for all tasks to complete after a shut down.
+     *
+     * @param timeout	the maximum time to wait
+     * @param unit	the unit of the timeout
+     * @return		true if terminated, false if the timeout elapsed
+     * @throws InterruptedException	if interrupted while waiting
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      long	end;
+      long	wait;
+
+      end = System.currentTimeMillis() + unit.toMillis(timeout);
+      synchronized(m_Owner) {
+	while (!isTerminated()) {
+	  wait = end - System.currentTimeMillis();
+	  if (wait <= 0)
+	    return false;
+	  m_Owner.wait(wait);
+	}
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * A task taken from the queue of an executor.
+   */
+  protected static class Assignment {
+
+    /** the executor the task belongs to. */
+    protected Executor m_Executor;
+
+    /** the task. */
+    protected Runnable m_Task;
+
+    /**
+     * Initializes the assignment.
+     *
+     * @param executor	the executor the task belongs to
+     * @param task	the task
+     */
+    protected Assignment(Executor executor, Runnable task) {
+      m_Executor = executor;
+      m_Task     = task;
+    }
+  }
+
+  /** the singleton. */
+  protected static SharedEvaluationScheduler m_Singleton;
+
+  /** the number of worker threads. */
+  protected int m_NumThreads;
+
+  /** the worker threads, started on demand. */
+  protected List<Thread> m_Threads;
+
+  /** the executors with queued or running tasks, in round-robin order. */
+  protected List<Executor> m_Executors;
+
+  /** the position of the next executor to serve. */
+  protected int m_Next;
+
+  /**
+   * Initializes the scheduler.
+   *
+   * @param numThreads	the number of worker threads
+   */
+  public SharedEvaluationScheduler(int numThreads) {
+    super();
+
+    if (numThreads < 1)
+      throw new IllegalArgumentException("At least one thread required, provided: " + numThreads);
+
+    m_NumThreads = numThreads;
+    m_Threads    = new ArrayList<Thread>();
+    m_Executors  = new ArrayList<Executor>();
+    m_Next       = 0;
+  }
+
+  /**
+   * Returns the number of worker threads.
+   *
+   * @return		the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Returns a new executor for a search.
+   *
+   * @param maxConcurrency	the maximum number of tasks of the executor to
+   * 				run at the same time
+   * @return			the executor
+   */
+  public synchronized ExecutorService newExecutor(int maxConcurrency) {
+    if (m_Threads.isEmpty())
+      startThreads();
+    return new Executor(this, Math.max(1, maxConcurrency));
+  }
+
+  /**
+   * Starts the worker threads.
+   */
+  protected void startThreads() {
+    Thread	thread;
+    int		i;
+
+    for (i = 0; i < m_NumThreads; i++) {
+      thread = new Thread(new Runnable() {
+	@Override
+	public void run() {
+	  work();
+	}
+      }, getClass().getSimpleName() + "-" + (i + 1));
+      thread.setDaemon(true);
+      thread.start();
+      m_Threads.add(thread);
+    }
+  }
+
+  /**
+   * Returns whether the thread is one of the worker threads.
+   *
+   * @param thread	the thread to check
+   * @return		true if a worker thread
+   */
+  protected synchronized boolean isWorker(Thread thread) {
+    return m_Threads.contains(thread);
+  }
+
+  /**
+   * Runs the task of the executor in the current worker thread instead of
+   * queuing it, as the worker would otherwise wait for a task that might
+   * never get a free worker.
+   *
+   * @param executor	the executor the task belongs to
+   * @param command	the task
+   * @throws RejectedExecutionException	if the executor has been shut down
+   */
+  protected void runInline(Executor executor, Runnable command) {
+    Thread	current;
+    boolean	registered;
+
+    current = Thread.currentThread();
+    synchronized(this) {
+      if (executor.m_Shutdown)
+	throw new RejectedExecutionException("Executor has been shut down!");
+      registered = executor.m_Running.add(current);
+    }
+    try {
+      command.run();
+    }
+    finally {
+      synchronized(this) {
+	if (registered)
+	  executor.m_Running.remove(current);
+	notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Queues the task of the executor.
+   *
+   * @param executor	the executor the task belongs to
+   * @param command	the task
+   * @throws RejectedExecutionException	if the executor has been shut down
+   */
+  protected synchronized void enqueue(Executor executor, Runnable command) {
+    if (executor.m_Shutdown)
+      throw new RejectedExecutionException("Executor has been shut down!");
+    executor.m_Queue.add(command);
+    if (!m_Executors.contains(executor))
+      m_Executors.add(executor);
+    notifyAll();
+  }
+
+  /**
+   * Waits for the next task, serving the executors in round-robin order.
+   * Registers the current thread with the executor of the task.
+   *
+   * @return		the executor and the task
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  protected synchronized Assignment take() throws InterruptedException {
+    Executor	executor;
+    int		i;
+    int		index;
+
+    while (true) {
+      for (i = 0; i < m_Executors.size(); i++) {
+	index    = (m_Next + i) % m_Executors.size();
+	executor = m_Executors.get(index);
+	if (executor.canStart()) {
+	  m_Next = index + 1;
+	  executor.m_Running.add(Thread.currentThread());
+	  return new Assignment(executor, executor.m_Queue.removeFirst());
+	}
+      }
+      wait();
+    }
+  }
+
+  /**
+   * Deregisters the current thread from the executor once its task has
+   * finished.
+   *
+   * @param executor	the executor of the finished task
+   */
+  protected synchronized void finished(Executor executor) {
+    executor.m_Running.remove(Thread.currentThread());
+    if (executor.m_Queue.isEmpty() && executor.m_Running.isEmpty())
+      m_Executors.remove(executor);
+    notifyAll();
+  }
+
+  /**
+   * The loop of the worker threads.
+   */
+  protected void work() {
+    Assignment	next;
+
+    while (true) {
+      try {
+	next = take();
+      }
+      catch (InterruptedException e) {
+	continue;
+      }
+      try {
+	next.m_Task.run();
+      }
+      catch (Throwable t) {
+	System.err.println("Failed to execute task of shared scheduler:");
+	t.printStackTrace();
+      }
+      finally {
+	finished(next.m_Executor);
+	// clear interrupts from shutdownNow, the thread is no longer registered
+	Thread.interrupted();
+      }
+    }
+  }
+
+  /**
+   * Returns the process-wide scheduler, using as many threads as there are
+   * processors available.
+   *
+   * @return		the scheduler
+   */
+  public static synchronized SharedEvaluationScheduler getSingleton() {
+    if (m_Singleton == null)
+      m_Singleton = new SharedEvaluationScheduler(Runtime.getRuntime().availableProcessors());
+    return m_Singleton;
+  }
+}
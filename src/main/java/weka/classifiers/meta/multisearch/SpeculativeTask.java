@@ -0,0 +1,253 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SpeculativeTask.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import weka.core.setupgenerator.GridPoint;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Wraps an evaluation task that gets executed speculatively, ie before it
+ * is known whether the search needs the point at all. The performance of
+ * the task gets held back (see {@link #offer(Performance)}) until the
+ * search adopts the task (see {@link #adopt()}), once the point is actually
+ * required.
+ * <br>
+ * Tasks that have not started yet can get cancelled, tasks that are
+ * already running get completed.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SpeculativeTask
+  implements Callable<Boolean> {
+
+  /** the point that gets evaluated. */
+  protected GridPoint m_Point;
+
+  /** the number of folds. */
+  protected int m_Folds;
+
+  /** the actual evaluation task. */
+  protected AbstractEvaluationTask m_Task;
+
+  /** whether the task has started. */
+  protected boolean m_Started;
+
+  /** whether the task got cancelled before starting. */
+  protected boolean m_Cancelled;
+
+  /** whether the task has finished. */
+  protected boolean m_Finished;
+
+  /** the result of the evaluation task, null if it failed with an exception. */
+  protected Boolean m_Result;
+
+  /** whether the search has adopted the task. */
+  protected boolean m_Adopted;
+
+  /** the held back performance, null if not available. */
+  protected Performance m_Performance;
+
+  /** the thread executing the task, null if not running. */
+  protected Thread m_Runner;
+
+  /**
+   * Initializes the task.
+   *
+   * @param point	the point that gets evaluated
+   * @param folds	the number of folds
+   * @param task	the actual evaluation task
+   */
+  public SpeculativeTask(GridPoint point, int folds, AbstractEvaluationTask task) {
+    super();
+
+    m_Point       = point;
+    m_Folds       = folds;
+    m_Task        = task;
+    m_Started     = false;
+    m_Cancelled   = false;
+    m_Finished    = false;
+    m_Result      = null;
+    m_Adopted     = false;
+    m_Performance = null;
+    m_Runner      = null;
+  }
+
+  /**
+   * Returns the point that gets evaluated.
+   *
+   * @return		the point
+   */
+  public GridPoint getPoint() {
+    return m_Point;
+  }
+
+  /**
+   * Returns the number of folds.
+   *
+   * @return		the folds
+   */
+  public int getFolds() {
+    return m_Folds;
+  }
+
+  /**
+   * Executes the evaluation task, unless cancelled.
+   *
+   * @return		the result of the evaluation task, false if cancelled
+   * @throws Exception	if the evaluation task fails
+   */
+  @Override
+  public Boolean call() throws Exception {
+    Boolean	result;
+
+    synchronized(this) {
+      if (m_Cancelled)
+	return false;
+      m_Started = true;
+      m_Runner  = Thread.currentThread();
+    }
+
+    result = null;
+    try {
+      result = m_Task.call();
+    }
+    finally {
+      synchronized(this) {
+	m_Result   = result;
+	m_Finished = true;
+	m_Runner   = null;
+	notifyAll();
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Cancels the task if it has not started yet.
+   *
+   * @return		true if cancelled, false if already running or finished
+   */
+  public synchronized boolean cancel() {
+    if (!m_Started)
+      m_Cancelled = true;
+    return m_Cancelled;
+  }
+
+  /**
+   * Interrupts the task if it is running, cancels it otherwise.
+   */
+  public synchronized void abort() {
+    if (!cancel() && (m_Runner != null))
+      m_Runner.interrupt();
+  }
+
+  /**
+   * Returns the time the evaluation started.
+   *
+   * @return		the time in msec, 0 if not started yet
+   */
+  public long getStartTime() {
+    return m_Task.getStartTime();
+  }
+
+  /**
+   * Returns whether the task got cancelled.
+   *
+   * @return		true if cancelled
+   */
+  public synchronized boolean isCancelled() {
+    return m_Cancelled;
+  }
+
+  /**
+   * Returns whether the task has finished.
+   *
+   * @return		true if finished
+   */
+  public synchronized boolean isFinished() {
+    return m_Finished;
+  }
+
+  /**
+   * Holds back the performance generated by the evaluation task, unless
+   * the search has adopted the task already.
+   *
+   * @param value	the performance
+   * @return		true if held back, false if the search has adopted the
+   * 			task and the performance must be added as usual
+   */
+  public synchronized boolean offer(Performance value) {
+    if (m_Adopted)
+      return false;
+    m_Performance = value;
+    return true;
+  }
+
+  /**
+   * Adopts the task, ie any performance generated from now on gets added
+   * to the search as usual.
+   *
+   * @return		the performance that has been held back so far, null
+   * 			if none
+   */
+  public synchronized Performance adopt() {
+    m_Adopted = true;
+    return m_Performance;
+  }
+
+  /**
+   * Waits for the task to finish.
+   *
+   * @return		the result of the evaluation task, null if it failed
+   * 			with an exception
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public synchronized Boolean waitFor() throws InterruptedException {
+    while (!m_Finished)
+      wait();
+    return m_Result;
+  }
+
+  /**
+   * Waits for the task to finish, at most for the specified time.
+   *
+   * @param timeout	the maximum time to wait in msec
+   * @return		true if finished
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  public synchronized boolean waitFor(long timeout) throws InterruptedException {
+    if (!m_Finished)
+      wait(timeout);
+    return m_Finished;
+  }
+
+  /**
+   * Outputs the state of the task and the wrapped task.
+   *
+   * @return		the state
+   */
+  @Override
+  public String toString() {
+    return "Speculative " + m_Point + " (" + m_Folds + " folds): " + m_Task;
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * VirtualThreadExecutor.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor that runs every task in its own virtual thread (JDK 21+), using
+ * a semaphore to limit the number of tasks running at the same time to the
+ * number of execution slots. Tasks waiting for a permit, or blocking while
+ * running, do not occupy a platform thread.
+ * <br>
+ * The virtual-thread-per-task executor gets created via reflection, so
+ * that older JVMs still work. Use {@link #isAvailable()} to check whether
+ * virtual threads are supported.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class VirtualThreadExecutor
+  extends AbstractExecutorService {
+
+  /** the name of the factory method for virtual-thread-per-task executors. */
+  public static final String FACTORY_METHOD = "newVirtualThreadPerTaskExecutor";
+
+  /** the underlying virtual-thread-per-task executor. */
+  protected ExecutorService m_Delegate;
+
+  /** the semaphore limiting the concurrency. */
+  protected Semaphore m_Slots;
+
+  /** the maximum number of tasks to run at the same time. */
+  protected int m_MaxConcurrency;
+
+  /**
+   * Initializes the executor.
+   *
+   * @param delegate		the virtual-thread-per-task executor to use
+   * @param maxConcurrency	the maximum number of tasks to run at the same time
+   */
+  public VirtualThreadExecutor(ExecutorService delegate, int maxConcurrency) {
+    super();
+
+    if (delegate == null)
+      throw new IllegalArgumentException("No executor provided!");
+
+    m_Delegate       = delegate;
+    m_MaxConcurrency = Math.max(1, maxConcurrency);
+    m_Slots          = new Semaphore(m_MaxConcurrency, true);
+  }
+
+  /**
+   * Returns the maximum number of tasks to run at the same time.
+   *
+   * @return		the maximum
+   */
+  public int getMaxConcurrency() {
+    return m_MaxConcurrency;
+  }
+
+  /**
+   * Runs the task in a new virtual thread, once a slot is available.
+   * Tasks that get interrupted while waiting for a slot are not executed;
+   * futures get cancelled in that case.
+   *
+   * @param command	the task to execute
+   */
+  @Override
+  public void execute(final Runnable command) {
+    if (command == null)
+      throw new NullPointerException();
+
+    m_Delegate.execute(new Runnable() {
+      @Override
+      public void run() {
+	try {
+	  m_Slots.acquire();
+	}
+	catch (InterruptedException e) {
+	  if (command instanceof Future)
+	    ((Future) command).cancel(false);
+	  return;
+	}
+	try {
+	  command.run();
+	}
+	finally {
+	  m_Slots.release();
+	}
+      }
+    });
+  }
+
+  /**
+   * Initiates an orderly shutdown, the submitted tasks still get executed.
+   */
+  @Override
+  public void shutdown() {
+    m_Delegate.shutdown();
+  }
+
+  /**
+   * Interrupts all the threads, running or waiting for a slot.
+   *
+   * @return		the tasks that never started (always empty, since
+   * 			every task gets its own thread immediately)
+   */
+  @Override
+  public List<Runnable> shutdownNow() {
+    return m_Delegate.shutdownNow();
+  }
+
+  /**
+   * Returns whether the executor has been shut down.
+   *
+   * @return		true if shut down
+   */
+  @Override
+  public boolean isShutdown() {
+    return m_Delegate.isShutdown();
+  }
+
+  /**
+   * Returns whether all tasks have completed after a shut down.
+   *
+   * @return		true if terminated
+   */
+  @Override
+  public boolean isTerminated() {
+    return m_Delegate.isTerminated();
+  }
+
+  /**
+   * Waits for all tasks to complete after a shut down.
+   *
+   * @param timeout	the maximum time to wait
+   * @param unit	the unit of the timeout
+   * @return		true if terminated, false if the timeout elapsed
+   * @throws InterruptedException	if interrupted while waiting
+   */
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return m_Delegate.awaitTermination(timeout, unit);
+  }
+
+  /**
+   * Returns the factory method for virtual-thread-per-task executors.
+   *
+   * @return		the method, null if not available (JDK < 21)
+   */
+  protected static Method getFactoryMethod() {
+    try {
+      return java.util.concurrent.Executors.class.getMethod(FACTORY_METHOD);
+    }
+    catch (Exception e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns whether the JVM supports virtual threads.
+   *
+   * @return		true if supported
+   */
+  public static boolean isAvailable() {
+    return (getFactoryMethod() != null);
+  }
+
+  /**
+   * Creates a new executor that runs each task in its own virtual thread.
+   *
+   * @param maxConcurrency	the maximum number of tasks to run at the same time
+   * @return			the executor, null if virtual threads are not
+   * 				supported by the JVM
+   */
+  public static ExecutorService newExecutor(int maxConcurrency) {
+    Method	method;
+
+    method = getFactoryMethod();
+    if (method == null)
+      return null;
+
+    try {
+      return new VirtualThreadExecutor((ExecutorService) method.invoke(null), maxConcurrency);
+    }
+    catch (Exception e) {
+      System.err.println("Failed to create virtual-thread-per-task executor:");
+      e.printStackTrace();
+      return null;
+    }
+  }
+}
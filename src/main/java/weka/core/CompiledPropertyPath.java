@@ -0,0 +1,370 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompiledPropertyPath.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import weka.core.PropertyPath.Path;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A property path that got resolved against the classes of a specific
+ * object, using method handles for the getters along the path and the
+ * final setter. The conversion of the value to the type of the property is
+ * determined at compile time as well.
+ * <br>
+ * Before setting a value, the classes of the objects along the path and
+ * the class of the value get compared against the ones the path was
+ * compiled for. If they differ, the value does not get set and the caller
+ * has to fall back on {@link SetupGenerator#setValue(Object, String, Object)}.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ * @see PropertyPath
+ */
+public class CompiledPropertyPath {
+
+  /** conversion: unsupported. */
+  public final static int CONVERT_NONE = 0;
+
+  /** conversion: float. */
+  public final static int CONVERT_FLOAT = 1;
+
+  /** conversion: double. */
+  public final static int CONVERT_DOUBLE = 2;
+
+  /** conversion: char. */
+  public final static int CONVERT_CHAR = 3;
+
+  /** conversion: int. */
+  public final static int CONVERT_INT = 4;
+
+  /** conversion: long. */
+  public final static int CONVERT_LONG = 5;
+
+  /** conversion: boolean. */
+  public final static int CONVERT_BOOLEAN = 6;
+
+  /** conversion: string. */
+  public final static int CONVERT_STRING = 7;
+
+  /** conversion: selected tag. */
+  public final static int CONVERT_SELECTEDTAG = 8;
+
+  /** conversion: classname (with options). */
+  public final static int CONVERT_CLASSNAME = 9;
+
+  /** the property path. */
+  protected String m_Path;
+
+  /** the expected classes of the objects along the path (0 = root object). */
+  protected Class<?>[] m_Classes;
+
+  /** the getters of the properties along the path. */
+  protected MethodHandle[] m_Getters;
+
+  /** the array indices of the properties along the path, -1 if none. */
+  protected int[] m_Indices;
+
+  /** the setter of the final property. */
+  protected MethodHandle m_Setter;
+
+  /** the class of the value that the conversion was determined for. */
+  protected Class<?> m_ValueClass;
+
+  /** the type of conversion to apply. */
+  protected int m_Conversion;
+
+  /** the parsed classnames with options (value -&gt; classname and options). */
+  protected ConcurrentHashMap<String,String[]> m_Options;
+
+  /**
+   * Initializes the path, but does not compile it.
+   *
+   * @param path	the property path
+   */
+  protected CompiledPropertyPath(String path) {
+    super();
+
+    m_Path       = path;
+    m_Conversion = CONVERT_NONE;
+    m_Options    = new ConcurrentHashMap<String,String[]>();
+  }
+
+  /**
+   * Returns the property path.
+   *
+   * @return		the path
+   */
+  public String getPath() {
+    return m_Path;
+  }
+
+  /**
+   * Returns whether the path could be compiled.
+   *
+   * @return		true if compiled
+   */
+  public boolean isValid() {
+    return (m_Conversion != CONVERT_NONE);
+  }
+
+  /**
+   * Determines the conversion for the property type and the value.
+   *
+   * @param type	the type of the property
+   * @param value	the value that will get set
+   * @return		the conversion, {@link #CONVERT_NONE} if not supported
+   */
+  protected static int determineConversion(Class<?> type, Object value) {
+    if ((type == Float.class) || (type == Float.TYPE))
+      return CONVERT_FLOAT;
+    else if ((type == Double.class) || (type == Double.TYPE))
+      return CONVERT_DOUBLE;
+    else if ((type == Character.class) || (type == Character.TYPE))
+      return CONVERT_CHAR;
+    else if ((type == Integer.class) || (type == Integer.TYPE))
+      return CONVERT_INT;
+    else if ((type == Long.class) || (type == Long.TYPE))
+      return CONVERT_LONG;
+    else if ((type == Boolean.class) || (type == Boolean.TYPE))
+      return CONVERT_BOOLEAN;
+    else if (value instanceof Double)
+      return CONVERT_NONE;
+    else if (type == String.class)
+      return CONVERT_STRING;
+    else if (type == SelectedTag.class)
+      return CONVERT_SELECTEDTAG;
+    else if (((String) value).indexOf(".") > 0)
+      return CONVERT_CLASSNAME;
+    else
+      return CONVERT_NONE;
+  }
+
+  /**
+   * Compiles the property path against the classes of the given object.
+   * Never fails, use {@link #isValid()} to check whether the path can be
+   * used.
+   *
+   * @param o		the object to compile the path for
+   * @param path	the property path
+   * @param value	a sample value (Double or String)
+   * @return		the compiled path
+   */
+  public static CompiledPropertyPath compile(Object o, String path, Object value) {
+    CompiledPropertyPath	result;
+    Path			p;
+    PropertyDescriptor		desc;
+    MethodHandles.Lookup	lookup;
+    MethodType			getterType;
+    Object			current;
+    int				i;
+
+    result = new CompiledPropertyPath(path);
+    if ((o == null) || !((value instanceof Double) || (value instanceof String)))
+      return result;
+
+    try {
+      p                 = new Path(path);
+      lookup            = MethodHandles.publicLookup();
+      getterType        = MethodType.methodType(Object.class, Object.class);
+      result.m_Classes  = new Class<?>[p.size()];
+      result.m_Getters  = new MethodHandle[p.size()];
+      result.m_Indices  = new int[p.size()];
+      current           = o;
+      desc              = null;
+      for (i = 0; i < p.size(); i++) {
+	if (current == null)
+	  return result;
+	result.m_Classes[i] = current.getClass();
+	result.m_Indices[i] = p.get(i).hasIndex() ? p.get(i).getIndex() : -1;
+	desc                = PropertyPath.getPropertyDescriptor(current, p.get(i).getName());
+	result.m_Getters[i] = lookup.unreflect(desc.getReadMethod()).asType(getterType);
+	if (i < p.size() - 1) {
+	  current = desc.getReadMethod().invoke(current, (Object[]) null);
+	  if ((current != null) && (result.m_Indices[i] > -1))
+	    current = Array.get(current, result.m_Indices[i]);
+	}
+      }
+
+      result.m_Setter = lookup.unreflect(desc.getWriteMethod()).asType(
+	MethodType.methodType(void.class, Object.class, Object.class));
+      result.m_ValueClass = value.getClass();
+      if (result.m_Indices[p.size() - 1] > -1)
+	result.m_Conversion = determineConversion(desc.getPropertyType().getComponentType(), value);
+      else
+	result.m_Conversion = determineConversion(desc.getPropertyType(), value);
+    }
+    catch (Throwable t) {
+      result.m_Conversion = CONVERT_NONE;
+    }
+
+    return result;
+  }
+
+  /**
+   * Converts the value according to the conversion determined at compile
+   * time.
+   *
+   * @param container	the object containing the final property
+   * @param value	the value to convert
+   * @return		the converted value, null if the value cannot be set
+   * @throws Throwable	if conversion fails
+   */
+  protected Object convert(Object container, Object value) throws Throwable {
+    double		valDouble;
+    String		valString;
+    SelectedTag		selTag;
+    Tag[]		tags;
+    String[]		options;
+    String		classname;
+    int			i;
+
+    if (value instanceof Double) {
+      valDouble = (Double) value;
+      switch (m_Conversion) {
+	case CONVERT_FLOAT:
+	  return (float) valDouble;
+	case CONVERT_DOUBLE:
+	  return valDouble;
+	case CONVERT_CHAR:
+	  return (char) valDouble;
+	case CONVERT_INT:
+	  return (int) valDouble;
+	case CONVERT_LONG:
+	  return (long) valDouble;
+	case CONVERT_BOOLEAN:
+	  return (valDouble != 0);
+	default:
+	  return null;
+      }
+    }
+
+    valString = (String) value;
+    switch (m_Conversion) {
+      case CONVERT_FLOAT:
+	return Float.parseFloat(valString);
+      case CONVERT_DOUBLE:
+	return Double.parseDouble(valString);
+      case CONVERT_CHAR:
+	return valString.charAt(0);
+      case CONVERT_INT:
+	return Integer.parseInt(valString);
+      case CONVERT_LONG:
+	return Long.parseLong(valString);
+      case CONVERT_BOOLEAN:
+	return Boolean.parseBoolean(valString);
+      case CONVERT_STRING:
+	return valString;
+      case CONVERT_SELECTEDTAG:
+	selTag = (SelectedTag) (Object) m_Getters[m_Getters.length - 1].invokeExact(container);
+	tags   = selTag.getTags();
+	for (i = 0; i < tags.length; i++) {
+	  if (tags[i].getIDStr().equals(valString))
+	    return new SelectedTag(tags[i].getID(), tags);
+	}
+	for (i = 0; i < tags.length; i++) {
+	  if (tags[i].getReadable().equals(valString))
+	    return new SelectedTag(tags[i].getID(), tags);
+	}
+	return null;
+      case CONVERT_CLASSNAME:
+	try {
+	  options = m_Options.get(valString);
+	  if (options == null) {
+	    options = Utils.splitOptions(valString);
+	    m_Options.put(valString, options);
+	  }
+	  options    = options.clone();
+	  classname  = options[0];
+	  options[0] = "";
+	  return Utils.forName(Object.class, classname, options);
+	}
+	catch (Exception e) {
+	  e.printStackTrace();
+	  throw new Exception(
+	    "Failed to instantiate object from  '" + valString + "' for '" + m_Path + "'!");
+	}
+      default:
+	return null;
+    }
+  }
+
+  /**
+   * Sets the value in the object, if the classes match the ones that the
+   * path was compiled for.
+   *
+   * @param o		the object to modify
+   * @param value	the value to set
+   * @return		true if the path could be applied, false if the
+   * 			caller needs to fall back on the reflective path
+   * @throws Exception	if setting the value fails
+   */
+  public boolean setValue(Object o, Object value) throws Exception {
+    Object	current;
+    Object	array;
+    Object	converted;
+    int		last;
+    int		i;
+
+    if (!isValid() || (value == null) || (value.getClass() != m_ValueClass))
+      return false;
+
+    try {
+      // navigate to the object containing the final property
+      current = o;
+      last    = m_Classes.length - 1;
+      for (i = 0; i < last; i++) {
+	if ((current == null) || (current.getClass() != m_Classes[i]))
+	  return false;
+	current = (Object) m_Getters[i].invokeExact(current);
+	if ((current != null) && (m_Indices[i] > -1))
+	  current = Array.get(current, m_Indices[i]);
+      }
+      if ((current == null) || (current.getClass() != m_Classes[last]))
+	return false;
+
+      // set the value
+      converted = convert(current, value);
+      if (converted == null)
+	return true;
+      if (m_Indices[last] > -1) {
+	array = (Object) m_Getters[last].invokeExact(current);
+	Array.set(array, m_Indices[last], converted);
+	m_Setter.invokeExact(current, array);
+      }
+      else {
+	m_Setter.invokeExact(current, converted);
+      }
+    }
+    catch (Exception e) {
+      throw e;
+    }
+    catch (Throwable t) {
+      throw new Exception("Failed to set value '" + value + "' for '" + m_Path + "'!", t);
+    }
+
+    return true;
+  }
+}
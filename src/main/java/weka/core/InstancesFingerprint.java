@@ -0,0 +1,308 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstancesFingerprint.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+/**
+ * Computes a 64-bit content hash of a dataset, covering the header
+ * (relation name, attributes, class index), the attribute values and the
+ * weights of the instances. The data is hashed in a single pass without
+ * creating any intermediate objects.
+ * <br>
+ * Only non-zero numeric and nominal values get hashed (together with their
+ * attribute index), the cost for sparse instances is therefore proportional
+ * to the number of stored values plus the number of string and relational
+ * attributes. The text or relation of string and relational values always
+ * gets hashed, as their values are merely indices into the attribute. As a
+ * consequence, the sparse and the dense representation of the same data
+ * result in the same fingerprint.
+ * <br>
+ * The fingerprint is not a cryptographic hash, it is only meant for
+ * detecting whether results were computed on the same data.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesFingerprint {
+
+  /** the seed of the hash. */
+  protected final static long SEED = 0x9E3779B97F4A7C15L;
+
+  /** the multiplier for combining values. */
+  protected final static long PRIME = 0xC2B2AE3D27D4EB4FL;
+
+  /** the current hash. */
+  protected long m_Hash;
+
+  /** the number of values that were hashed. */
+  protected long m_Count;
+
+  /** the header that the string/relational indices were determined for. */
+  protected Instances m_Header;
+
+  /** the indices of the string and relational attributes of the header. */
+  protected int[] m_TextIndices;
+
+  /**
+   * Initializes the fingerprint.
+   */
+  public InstancesFingerprint() {
+    super();
+
+    m_Hash  = SEED;
+    m_Count = 0;
+  }
+
+  /**
+   * Scrambles the bits of the value (finalizer of MurmurHash3).
+   *
+   * @param value	the value to scramble
+   * @return		the scrambled value
+   */
+  protected static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xFF51AFD7ED558CCDL;
+    value ^= value >>> 33;
+    value *= 0xC4CEB9FE1A85EC53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  /**
+   * Adds the value to the hash.
+   *
+   * @param value	the value to add
+   * @return		itself
+   */
+  public InstancesFingerprint update(long value) {
+    m_Hash = Long.rotateLeft(m_Hash ^ mix(value + PRIME * m_Count), 31) * PRIME;
+    m_Count++;
+    return this;
+  }
+
+  /**
+   * Adds the value to the hash. All NaNs are treated the same and -0
+   * equals 0.
+   *
+   * @param value	the value to add
+   * @return		itself
+   */
+  public InstancesFingerprint update(double value) {
+    if (value == 0)
+      return update(0L);
+    else
+      return update(Double.doubleToLongBits(value));
+  }
+
+  /**
+   * Adds the string to the hash, null is treated differently from an empty
+   * string.
+   *
+   * @param value	the string to add
+   * @return		itself
+   */
+  public InstancesFingerprint update(String value) {
+    int		i;
+
+    if (value == null)
+      return update(-1L);
+
+    update((long) value.length());
+    for (i = 0; i < value.length(); i++)
+      update((long) value.charAt(i));
+
+    return this;
+  }
+
+  /**
+   * Adds the header of the dataset to the hash.
+   *
+   * @param data	the dataset to add the header of
+   * @return		itself
+   */
+  public InstancesFingerprint updateHeader(Instances data) {
+    Attribute	att;
+    int		i;
+    int		n;
+
+    update(data.relationName());
+    update((long) data.numAttributes());
+    update((long) data.classIndex());
+    for (i = 0; i < data.numAttributes(); i++) {
+      att = data.attribute(i);
+      update(att.name());
+      update((long) att.type());
+      update(att.weight());
+      if (att.isNominal()) {
+	update((long) att.numValues());
+	for (n = 0; n < att.numValues(); n++)
+	  update(att.value(n));
+      }
+      else if (att.isDate()) {
+	update(att.getDateFormat());
+      }
+      else if (att.isRelationValued()) {
+	updateHeader(att.relation());
+      }
+    }
+
+    return this;
+  }
+
+  /**
+   * Returns the indices of the string and relational attributes of the
+   * instance's dataset, determining them only once per header.
+   *
+   * @param inst	the instance to get the indices for
+   * @return		the indices
+   */
+  protected int[] textIndices(Instance inst) {
+    Instances	header;
+    int		count;
+    int		i;
+
+    header = inst.dataset();
+    if ((m_TextIndices == null) || (header != m_Header)) {
+      count = 0;
+      for (i = 0; i < inst.numAttributes(); i++) {
+	if (inst.attribute(i).isString() || inst.attribute(i).isRelationValued())
+	  count++;
+      }
+      m_TextIndices = new int[count];
+      count         = 0;
+      for (i = 0; i < inst.numAttributes(); i++) {
+	if (inst.attribute(i).isString() || inst.attribute(i).isRelationValued())
+	  m_TextIndices[count++] = i;
+      }
+      m_Header = header;
+    }
+
+    return m_TextIndices;
+  }
+
+  /**
+   * Adds the values and the weight of the instance to the hash.
+   *
+   * @param inst	the instance to add
+   * @return		itself
+   */
+  public InstancesFingerprint update(Instance inst) {
+    Attribute	att;
+    double	value;
+    int[]	indices;
+    int		index;
+    int		i;
+
+    // numeric and nominal values, zeros are skipped
+    for (i = 0; i < inst.numValues(); i++) {
+      value = inst.valueSparse(i);
+      if (value == 0)
+	continue;
+      att = inst.attributeSparse(i);
+      if (att.isString() || att.isRelationValued())
+	continue;
+      update((long) inst.index(i));
+      if (Utils.isMissingValue(value))
+	update(Double.NaN);
+      else
+	update(value);
+    }
+
+    // string and relational values, value 0 is an index as well
+    indices = textIndices(inst);
+    for (i = 0; i < indices.length; i++) {
+      index = indices[i];
+      value = inst.value(index);
+      att   = inst.attribute(index);
+      update((long) index);
+      if (Utils.isMissingValue(value))
+	update(Double.NaN);
+      else if (att.isString())
+	update(att.value((int) value));
+      else
+	update(att.relation((int) value));
+    }
+    update(-1L);
+    update(inst.weight());
+
+    return this;
+  }
+
+  /**
+   * Adds the header and all the instances of the dataset to the hash.
+   *
+   * @param data	the dataset to add
+   * @return		itself
+   */
+  public InstancesFingerprint update(Instances data) {
+    int		i;
+
+    updateHeader(data);
+    update((long) data.numInstances());
+    for (i = 0; i < data.numInstances(); i++)
+      update(data.instance(i));
+
+    return this;
+  }
+
+  /**
+   * Returns the current hash.
+   *
+   * @return		the hash
+   */
+  public long getValue() {
+    return mix(m_Hash ^ m_Count);
+  }
+
+  /**
+   * Returns the hash as fixed-length hexadecimal string.
+   *
+   * @return		the hash
+   */
+  @Override
+  public String toString() {
+    return toHex(getValue());
+  }
+
+  /**
+   * Computes the fingerprint of the dataset.
+   *
+   * @param data	the dataset to compute the fingerprint for
+   * @return		the fingerprint
+   */
+  public static long compute(Instances data) {
+    return new InstancesFingerprint().update(data).getValue();
+  }
+
+  /**
+   * Turns the fingerprint into a fixed-length hexadecimal string.
+   *
+   * @param fingerprint	the fingerprint to convert
+   * @return		the string
+   */
+  public static String toHex(long fingerprint) {
+    String	result;
+
+    result = Long.toHexString(fingerprint);
+    while (result.length() < 16)
+      result = "0" + result;
+
+    return result;
+  }
+}
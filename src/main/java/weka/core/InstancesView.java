@@ -0,0 +1,404 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstancesView.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Read-only view on a subset of the rows of a dataset. Unlike the
+ * constructors of {@link Instances}, the view does not copy the
+ * {@link Instance} objects but shares them with the underlying dataset,
+ * the only memory required is for the references.
+ * <br>
+ * Since views get shared, eg by the evaluation tasks of a search, all the
+ * methods that would modify the view or the shared instances throw an
+ * {@link UnsupportedOperationException}. Use {@link Instances#Instances(Instances)}
+ * to obtain a modifiable copy.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesView
+  extends Instances {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -2914722867839417013L;
+
+  /**
+   * Initializes the view with all the rows of the dataset.
+   *
+   * @param data	the underlying dataset
+   */
+  public InstancesView(Instances data) {
+    this(data, null);
+  }
+
+  /**
+   * Initializes the view with the specified rows of the dataset.
+   *
+   * @param data	the underlying dataset
+   * @param rows	the indices of the rows (in order), null for all rows
+   */
+  public InstancesView(Instances data, int[] rows) {
+    super(data, 0);
+
+    int		i;
+
+    if (rows == null) {
+      m_Instances = new ArrayList<Instance>(data.numInstances());
+      for (i = 0; i < data.numInstances(); i++)
+	m_Instances.add(data.instance(i));
+    }
+    else {
+      m_Instances = new ArrayList<Instance>(rows.length);
+      for (i = 0; i < rows.length; i++)
+	m_Instances.add(data.instance(rows[i]));
+    }
+  }
+
+  /**
+   * Returns the exception to throw for modifying operations.
+   *
+   * @return		the exception
+   */
+  protected UnsupportedOperationException readOnly() {
+    return new UnsupportedOperationException(getClass().getSimpleName() + " is read-only!");
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param instance	ignored
+   * @return		never
+   */
+  @Override
+  public boolean add(Instance instance) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param index	ignored
+   * @param instance	ignored
+   */
+  @Override
+  public void add(int index, Instance instance) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param index	ignored
+   * @param instance	ignored
+   * @return		never
+   */
+  @Override
+  public Instance set(int index, Instance instance) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param index	ignored
+   * @return		never
+   */
+  @Override
+  public Instance remove(int index) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void compactify() {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void delete() {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param index	ignored
+   */
+  @Override
+  public void delete(int index) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param position	ignored
+   */
+  @Override
+  public void deleteAttributeAt(int position) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param attType	ignored
+   */
+  @Override
+  public void deleteAttributeType(int attType) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void deleteStringAttributes() {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param attIndex	ignored
+   */
+  @Override
+  public void deleteWithMissing(int attIndex) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   */
+  @Override
+  public void deleteWithMissing(Attribute att) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   */
+  @Override
+  public void deleteWithMissingClass() {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param position	ignored
+   */
+  @Override
+  public void insertAttributeAt(Attribute att, int position) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param position	ignored
+   */
+  @Override
+  public void replaceAttributeAt(Attribute att, int position) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param random	ignored
+   */
+  @Override
+  public void randomize(Random random) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param name	ignored
+   */
+  @Override
+  public void renameAttribute(Attribute att, String name) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param name	ignored
+   */
+  @Override
+  public void renameAttribute(int att, String name) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param val		ignored
+   * @param name	ignored
+   */
+  @Override
+  public void renameAttributeValue(Attribute att, String val, String name) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param val		ignored
+   * @param name	ignored
+   */
+  @Override
+  public void renameAttributeValue(int att, int val, String name) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param value	ignored
+   */
+  @Override
+  public void setAttributeWeight(Attribute att, double value) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   * @param value	ignored
+   */
+  @Override
+  public void setAttributeWeight(int att, double value) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   */
+  @Override
+  public void setClass(Attribute att) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported, unless the class index stays the same.
+   *
+   * @param classIndex	the class index
+   */
+  @Override
+  public void setClassIndex(int classIndex) {
+    if (classIndex != classIndex())
+      throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param newName	ignored
+   */
+  @Override
+  public void setRelationName(String newName) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param attIndex	ignored
+   */
+  @Override
+  public void sort(int attIndex) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   */
+  @Override
+  public void sort(Attribute att) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param attIndex	ignored
+   */
+  @Override
+  public void stableSort(int attIndex) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param att		ignored
+   */
+  @Override
+  public void stableSort(Attribute att) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param numFolds	ignored
+   */
+  @Override
+  public void stratify(int numFolds) {
+    throw readOnly();
+  }
+
+  /**
+   * Not supported.
+   *
+   * @param i		ignored
+   * @param j		ignored
+   */
+  @Override
+  public void swap(int i, int j) {
+    throw readOnly();
+  }
+}
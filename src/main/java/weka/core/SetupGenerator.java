@@ -24,6 +24,7 @@ import weka.core.PropertyPath.Path;
 import weka.core.PropertyPath.PropertyContainer;
 import weka.core.setupgenerator.AbstractParameter;
 import weka.core.setupgenerator.AbstractPropertyParameter;
+import weka.core.setupgenerator.GridPoint;
 import weka.core.setupgenerator.ListParameter;
 import weka.core.setupgenerator.MathParameter;
 import weka.core.setupgenerator.Point;
@@ -63,6 +64,15 @@ public class SetupGenerator
   /** the parameter space to use for obtaining the setups from. */
   protected Space m_Space;
 
+  /** the object that the template was generated from. */
+  protected transient Serializable m_TemplateSource;
+
+  /** the serialized template object to create the setups from. */
+  protected transient SerializedObject m_Template;
+
+  /** the compiled property paths of the parameters. */
+  protected transient CompiledPropertyPath[] m_Setters;
+
   /**
    * Default constructor.
    */
@@ -272,6 +282,53 @@ public class SetupGenerator
   public void reset() {
     m_Initialized = false;
     m_Space       = null;
+    clearTemplate();
+  }
+
+  /**
+   * Discards the serialized template object.
+   */
+  protected synchronized void clearTemplate() {
+    m_TemplateSource = null;
+    m_Template       = null;
+    m_Setters        = null;
+  }
+
+  /**
+   * Returns the compiled property path for the specified parameter,
+   * compiling it against the object if necessary.
+   *
+   * @param index	the index of the parameter
+   * @param o		the object to compile the path for
+   * @param value	the value to set
+   * @return		the compiled path
+   */
+  protected synchronized CompiledPropertyPath getSetter(int index, Object o, Object value) {
+    if (m_Setters == null)
+      m_Setters = new CompiledPropertyPath[m_Parameters.length];
+    if (m_Setters[index] == null)
+      m_Setters[index] = CompiledPropertyPath.compile(
+	o, ((AbstractPropertyParameter) m_Parameters[index]).getProperty(), value);
+
+    return m_Setters[index];
+  }
+
+  /**
+   * Returns the serialized form of the object, which is only generated
+   * once per object (compared by identity) until the generator gets reset.
+   * The object must therefore not be modified in the meantime.
+   *
+   * @param original	the object to get the template for
+   * @return		the serialized object
+   * @throws Exception	if serialization fails
+   */
+  protected synchronized SerializedObject getTemplate(Serializable original) throws Exception {
+    if ((m_Template == null) || (m_TemplateSource != original)) {
+      m_Template       = new SerializedObject(original);
+      m_TemplateSource = original;
+    }
+
+    return m_Template;
   }
 
   /**
@@ -348,6 +405,24 @@ public class SetupGenerator
     return new Point<Object>(evaluated);
   }
 
+  /**
+   * evalutes the expression for the given point in the space.
+   *
+   * @param point	the point in the space
+   * @return		the generated value, NaN if the evaluation fails
+   */
+  public Point<Object> evaluate(GridPoint point) {
+    int				i;
+    Object[]			evaluated;
+
+    evaluated = new Object[point.dimensions()];
+
+    for (i = 0; i < point.dimensions(); i++)
+      evaluated[i] = m_Parameters[i].evaluate(point.getSpace().getDimension(i), point.getLocation(i));
+
+    return new Point<Object>(evaluated);
+  }
+
   /**
    * tries to set the value as double, integer (just casts it to int!) or
    * boolean (false if 0, otherwise true) in the object according to the
@@ -386,7 +461,7 @@ public class SetupGenerator
 	PropertyPath.setValue(o, path, new Double(valDouble));
       // char
       else if ((c == Character.class) || (c == Character.TYPE))
-	PropertyPath.setValue(o, path, new Integer((char) valDouble));
+	PropertyPath.setValue(o, path, Character.valueOf((char) valDouble));
       // int
       else if ((c == Integer.class) || (c == Integer.TYPE))
 	PropertyPath.setValue(o, path, new Integer((int) valDouble));
@@ -482,6 +557,10 @@ public class SetupGenerator
 
   /**
    * returns a fully configures object (a copy of the provided one).
+   * The copy gets deserialized from a template that is only serialized
+   * once for the original object. The parameters get set via compiled
+   * property paths, falling back on {@link #setValue(Object, String, Object)}
+   * if the classes along a path differ from the ones it was compiled for.
    *
    * @param original	the object to create a copy from and set the parameters
    * @param values	the current iteration values in all dimensions
@@ -493,9 +572,11 @@ public class SetupGenerator
     int			i;
     PropertyContainer	cnt;
 
-    result = (Serializable) new SerializedObject(original).getObject();
+    result = (Serializable) getTemplate(original).getObject();
 
     for (i = 0; i < values.dimensions(); i++) {
+      if (getSetter(i, result, values.getValue(i)).setValue(result, values.getValue(i)))
+	continue;
       cnt = PropertyPath.find(result, new Path(((AbstractPropertyParameter) m_Parameters[i]).getProperty()));
       if (cnt != null)
 	setValue(
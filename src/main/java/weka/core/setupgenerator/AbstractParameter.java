@@ -117,6 +117,19 @@ public abstract class AbstractParameter
    */
   public abstract Object evaluate(Object point);
 
+  /**
+   * Returns the evaluated value for the given location in the dimension.
+   * Derived classes can override this method to avoid converting the
+   * location into a value first.
+   *
+   * @param dimension	the dimension the location refers to
+   * @param location	the location in the dimension
+   * @return		the evaluated value
+   */
+  public Object evaluate(SpaceDimension dimension, int location) {
+    return evaluate(dimension.getValue(location));
+  }
+
   /**
    * Returns a string representation of the search parameter.
    *
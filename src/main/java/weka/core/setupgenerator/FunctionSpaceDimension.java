@@ -117,22 +117,28 @@ public class FunctionSpaceDimension
    * @return		the closest index in the dimension
    */
   public int getLocation(Object value) {
+    return getLocation(((Number) value).doubleValue());
+  }
+
+  /**
+   * returns the closest index for the given value in the dimension.
+   * Computed arithmetically, with ties going to the smaller index. Values
+   * that are at least one step away from all points on the axis map to 0.
+   *
+   * @param value	the value to get the index for
+   * @return		the closest index in the dimension
+   */
+  public int getLocation(double value) {
     int		result;
-    double	distance;
-    double	currDistance;
-    int		i;
 
-    result = 0;
-
-    // determine x
-    distance = m_Step;
-    for (i = 0; i < width(); i++) {
-      currDistance = StrictMath.abs(((Double) value) - ((Double) getValue(i)));
-      if (Utils.sm(currDistance, distance)) {
-	distance = currDistance;
-	result   = i;
-      }
-    }
+    result = (int) StrictMath.ceil((value - m_Min) / m_Step - 0.5);
+    if (result < 0)
+      result = 0;
+    else if (result >= width())
+      result = width() - 1;
+
+    if (!Utils.sm(StrictMath.abs(value - (m_Min + m_Step*result)), m_Step))
+      result = 0;
 
     return result;
   }
@@ -0,0 +1,248 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GridPoint.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.setupgenerator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A compact point in a space, storing only the locations in the various
+ * dimensions of the root space (ie the space that sub-spaces got derived
+ * from). The actual values get resolved lazily via the space.
+ * <br>
+ * Hash code is precomputed, comparisons do not allocate any objects.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ * @see Space#gridPoints()
+ */
+public class GridPoint
+  implements Serializable, Comparable<GridPoint> {
+
+  /** for serialization. */
+  private static final long serialVersionUID = -2402917040617316853L;
+
+  /** the (root) space the locations refer to. */
+  protected Space m_Space;
+
+  /** the locations in the various dimensions. */
+  protected int[] m_Locations;
+
+  /** the precomputed hash code. */
+  protected int m_HashCode;
+
+  /** the lazily resolved values. */
+  protected transient Point<Object> m_Values;
+
+  /** the lazily computed index in the space, -1 if not yet computed. */
+  protected long m_Index;
+
+  /**
+   * Initializes the point.
+   *
+   * @param space	the (root) space the locations refer to
+   * @param locations	the locations in the various dimensions, gets used
+   * 			as is (ie not copied)
+   */
+  protected GridPoint(Space space, int[] locations) {
+    super();
+
+    if (locations.length != space.dimensions())
+      throw new IllegalArgumentException(
+        "Dimension mismatch: space=" + space.dimensions()
+          + ", locations=" + locations.length);
+
+    m_Space     = space;
+    m_Locations = locations;
+    m_HashCode  = Arrays.hashCode(locations);
+    m_Values    = null;
+    m_Index     = -1;
+  }
+
+  /**
+   * Returns the space the locations refer to.
+   *
+   * @return		the space
+   */
+  public Space getSpace() {
+    return m_Space;
+  }
+
+  /**
+   * Returns the number of dimensions this points uses.
+   *
+   * @return		the number of dimensions
+   */
+  public int dimensions() {
+    return m_Locations.length;
+  }
+
+  /**
+   * Returns the location in the specified dimension.
+   *
+   * @param dimension	the dimension to get the location for
+   * @return		the location
+   */
+  public int getLocation(int dimension) {
+    return m_Locations[dimension];
+  }
+
+  /**
+   * Returns a copy of the locations.
+   *
+   * @return		the locations
+   */
+  public int[] getLocations() {
+    return m_Locations.clone();
+  }
+
+  /**
+   * Returns the index of this point in the (root) space, ie the position in
+   * the enumeration of all the points of the space.
+   *
+   * @return		the index
+   * @see Space#gridPointAt(long)
+   */
+  public long getIndex() {
+    long	result;
+    int		i;
+
+    if (m_Index == -1) {
+      m_Space.size();  // checks for overflow
+      result = 0;
+      for (i = m_Locations.length - 1; i >= 0; i--)
+	result = result * m_Space.getDimension(i).width() + m_Locations[i];
+      m_Index = result;
+    }
+
+    return m_Index;
+  }
+
+  /**
+   * Returns the value in the specified dimension.
+   *
+   * @param dimension	the dimension to get the value for
+   * @return		the value
+   */
+  public Object getValue(int dimension) {
+    return m_Space.getDimension(dimension).getValue(m_Locations[dimension]);
+  }
+
+  /**
+   * Returns the values (double values or list values) of this point.
+   *
+   * @return		the values
+   */
+  public Point<Object> getValues() {
+    Object[]	values;
+    int		i;
+
+    if (m_Values == null) {
+      values = new Object[m_Locations.length];
+      for (i = 0; i < values.length; i++)
+	values[i] = getValue(i);
+      m_Values = new Point<Object>(values);
+    }
+
+    return m_Values;
+  }
+
+  /**
+   * Returns the locations as point.
+   *
+   * @return		the locations
+   */
+  public Point<Integer> toPoint() {
+    Integer[]	locations;
+    int		i;
+
+    locations = new Integer[m_Locations.length];
+    for (i = 0; i < locations.length; i++)
+      locations[i] = m_Locations[i];
+
+    return new Point<Integer>(locations);
+  }
+
+  /**
+   * Returns the hash code.
+   *
+   * @return		the hash code
+   */
+  @Override
+  public int hashCode() {
+    return m_HashCode;
+  }
+
+  /**
+   * Determines whether or not two points are equal.
+   *
+   * @param obj		an object to be compared with this point
+   * @return		true if the object has the same locations
+   */
+  @Override
+  public boolean equals(Object obj) {
+    GridPoint	other;
+
+    if (obj == this)
+      return true;
+    if (!(obj instanceof GridPoint))
+      return false;
+
+    other = (GridPoint) obj;
+    if (other.m_HashCode != m_HashCode)
+      return false;
+
+    return Arrays.equals(m_Locations, other.m_Locations);
+  }
+
+  /**
+   * Compares the given point with this point, location by location.
+   *
+   * @param o		the point to compare with
+   * @return		-1, 0, +1, in a manner consistent with equals
+   */
+  public int compareTo(GridPoint o) {
+    int		i;
+
+    if (o == null)
+      return -1;
+    if (m_Locations.length != o.m_Locations.length)
+      return (m_Locations.length < o.m_Locations.length) ? -1 : 1;
+
+    for (i = 0; i < m_Locations.length; i++) {
+      if (m_Locations[i] < o.m_Locations[i])
+	return -1;
+      else if (m_Locations[i] > o.m_Locations[i])
+	return 1;
+    }
+
+    return 0;
+  }
+
+  /**
+   * Returns a string representation of the values of the point.
+   *
+   * @return		the point as string
+   */
+  @Override
+  public String toString() {
+    return getValues().toString();
+  }
+}
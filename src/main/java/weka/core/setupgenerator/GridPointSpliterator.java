@@ -0,0 +1,157 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * GridPointSpliterator.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.setupgenerator;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the grid points of a space, covering a range of point
+ * indices (same order as {@link Space#gridPointAt(long)}). Splitting halves
+ * the index range, so the sizes of both halves are always known exactly.
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ * @see Space#spliterator()
+ */
+public class GridPointSpliterator
+  implements Spliterator<GridPoint> {
+
+  /** the space to traverse. */
+  protected Space m_Space;
+
+  /** the widths of the dimensions. */
+  protected int[] m_Max;
+
+  /** the index of the next point. */
+  protected long m_Index;
+
+  /** the index after the last point (exclusive). */
+  protected long m_Fence;
+
+  /** the locations of the last point, null if not yet determined. */
+  protected int[] m_Next;
+
+  /**
+   * Initializes the spliterator for the given index range.
+   *
+   * @param space	the space to traverse
+   * @param index	the index of the first point (inclusive)
+   * @param fence	the index after the last point (exclusive)
+   */
+  protected GridPointSpliterator(Space space, long index, long fence) {
+    super();
+
+    m_Space = space;
+    m_Max   = space.widths();
+    m_Index = index;
+    m_Fence = fence;
+    m_Next  = null;
+  }
+
+  /**
+   * Returns the locations (relative to the space) of the point with the
+   * given index.
+   *
+   * @param index	the index of the point
+   * @return		the locations
+   */
+  protected int[] locationsAt(long index) {
+    int[]	result;
+    int		i;
+
+    result = new int[m_Max.length];
+    for (i = 0; i < result.length; i++) {
+      result[i] = (int) (index % m_Max[i]);
+      index    /= m_Max[i];
+    }
+
+    return result;
+  }
+
+  /**
+   * Performs the action on the next point, if any.
+   *
+   * @param action	the action to perform
+   * @return		false if no points were remaining
+   */
+  public boolean tryAdvance(Consumer<? super GridPoint> action) {
+    if (m_Index >= m_Fence)
+      return false;
+
+    if (m_Next == null)
+      m_Next = locationsAt(m_Index);
+    else
+      m_Space.inc(m_Next, m_Max);
+    m_Index++;
+    action.accept(m_Space.newGridPoint(m_Next));
+
+    return true;
+  }
+
+  /**
+   * Performs the action on all remaining points.
+   *
+   * @param action	the action to perform
+   */
+  @Override
+  public void forEachRemaining(Consumer<? super GridPoint> action) {
+    while (tryAdvance(action));
+  }
+
+  /**
+   * Splits off the first half of the remaining index range.
+   *
+   * @return		the spliterator for the first half, null if too
+   * 			small to split
+   */
+  public Spliterator<GridPoint> trySplit() {
+    GridPointSpliterator	result;
+    long			mid;
+
+    mid = m_Index + (m_Fence - m_Index) / 2;
+    if (mid <= m_Index)
+      return null;
+
+    result  = new GridPointSpliterator(m_Space, m_Index, mid);
+    m_Index = mid;
+    m_Next  = null;
+
+    return result;
+  }
+
+  /**
+   * Returns the exact number of remaining points.
+   *
+   * @return		the number of points
+   */
+  public long estimateSize() {
+    return m_Fence - m_Index;
+  }
+
+  /**
+   * Returns the characteristics of this spliterator.
+   *
+   * @return		the characteristics
+   */
+  public int characteristics() {
+    return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+  }
+}
@@ -20,6 +20,8 @@
 
 package weka.core.setupgenerator;
 
+import java.util.HashMap;
+
 import weka.core.Utils;
 
 /**
@@ -37,6 +39,9 @@ public class ListSpaceDimension
   /** the underlying list of values. */
   protected String[] m_List;
 
+  /** the lookup for value to index (relative to min). */
+  protected HashMap<String,Integer> m_Indices;
+
   /**
    * initializes the dimension (for list values).
    *
@@ -67,6 +72,12 @@ public class ListSpaceDimension
     if (m_Min > m_Max)
       throw new IllegalArgumentException(
         "Min must be at most Max (min=" + min + ", max=" + max + ")!");
+
+    m_Indices = new HashMap<String,Integer>();
+    for (int i = 0; i < m_Width; i++) {
+      if (!m_Indices.containsKey(m_List[min + i]))
+	m_Indices.put(m_List[min + i], i);
+    }
   }
 
   /**
@@ -127,21 +138,13 @@ public class ListSpaceDimension
    * @return		the closest index in the dimension
    */
   public int getLocation(Object value) {
-    int		result;
-    int		i;
-    String	valueStr;
-
-    result = 0;
-
-    valueStr = value.toString();
-    for (i = 0; i < width(); i++) {
-      if ((getValue(i)).equals(valueStr)) {
-	result = ((int) m_Min) + i;
-	break;
-      }
-    }
+    Integer	result;
 
-    return result;
+    result = m_Indices.get(value.toString());
+    if (result == null)
+      return 0;
+    else
+      return result;
   }
 
   /**
@@ -152,7 +155,7 @@ public class ListSpaceDimension
    * @return 		the sub-dimension
    */
   public ListSpaceDimension subdimension(int left, int right) {
-    return new ListSpaceDimension(left, right, getList(), getLabel());
+    return new ListSpaceDimension((int) m_Min + left, (int) m_Min + right, getList(), getLabel());
   }
 
   /**
@@ -78,6 +78,26 @@ public class MathParameter
    */
   protected String m_Expression = "pow(BASE,I)";
 
+  /** the compiled expression, null if not yet compiled. */
+  protected transient CompiledExpression m_Compiled;
+
+  /** the evaluated values per location in the dimension, null if not yet computed. */
+  protected transient volatile double[] m_Table;
+
+  /**
+   * Container for the parsed expression and the variables it uses.
+   * Evaluation has to be synchronized on the container, as the variables
+   * are shared.
+   */
+  protected static class CompiledExpression {
+
+    /** the parsed expression. */
+    protected DoubleExpression expression;
+
+    /** the variables of the expression. */
+    protected VariableInitializer variables;
+  }
+
   /**
    * Returns a string describing the object.
    *
@@ -254,6 +274,7 @@ public class MathParameter
    */
   public void setMin(double value) {
     m_Min = value;
+    invalidate();
   }
 
   /**
@@ -282,6 +303,7 @@ public class MathParameter
    */
   public void setMax(double value) {
     m_Max = value;
+    invalidate();
   }
 
   /**
@@ -310,6 +332,7 @@ public class MathParameter
    */
   public void setStep(double value) {
     m_Step = value;
+    invalidate();
   }
 
   /**
@@ -338,6 +361,7 @@ public class MathParameter
    */
   public void setBase(double value) {
     m_Base = value;
+    invalidate();
   }
 
   /**
@@ -366,6 +390,15 @@ public class MathParameter
    */
   public void setExpression(String value) {
     m_Expression = value;
+    invalidate();
+  }
+
+  /**
+   * Discards the compiled expression and the precomputed values.
+   */
+  protected synchronized void invalidate() {
+    m_Compiled = null;
+    m_Table    = null;
   }
 
   /**
@@ -379,58 +412,113 @@ public class MathParameter
   }
 
   /**
-   * Returns the evaluated value.
+   * Parses the expression and sets the constant variables, if necessary.
    *
-   * @param point	the point to evaluate
-   * @return		the evaluated value
+   * @return		the compiled expression
+   * @throws Exception	if parsing fails
    */
-  public Object evaluate(Object point) {
+  protected synchronized CompiledExpression compile() throws Exception {
     SimpleVariableDeclarations	vars;
     Node 			node;
     VariableInitializer 	curVars;
-    DoubleExpression 		compiled;
+    CompiledExpression		result;
+
+    if (m_Compiled != null)
+      return m_Compiled;
+
+    vars = new SimpleVariableDeclarations();
+    vars.addDouble("BASE");
+    vars.addDouble("FROM");
+    vars.addDouble("TO");
+    vars.addDouble("STEP");
+    vars.addDouble("I");
+
+    node = Parser.parse(
+      // expression
+      getExpression(),
+      // variables
+      new VariableDeclarationsCompositor(
+	vars
+      ),
+      // macros
+      new MacroDeclarationsCompositor(
+	new MathFunctions(),
+	new IfElseMacro(),
+	new JavaMacro()
+      )
+    );
+
+    if (!(node instanceof DoubleExpression))
+      throw new Exception("Expression must be of type double!");
+
+    curVars = vars.getInitializer();
+    if (curVars.hasVariable("BASE"))
+      curVars.setDouble("BASE", getBase());
+    if (curVars.hasVariable("FROM"))
+      curVars.setDouble("FROM", getMin());
+    if (curVars.hasVariable("TO"))
+      curVars.setDouble("TO", getMax());
+    if (curVars.hasVariable("STEP"))
+      curVars.setDouble("STEP", getStep());
+
+    result            = new CompiledExpression();
+    result.expression = (DoubleExpression) node;
+    result.variables  = curVars;
+    m_Compiled        = result;
+
+    return result;
+  }
+
+  /**
+   * Evaluates the compiled expression for the given value.
+   *
+   * @param compiled	the compiled expression
+   * @param value	the value for I
+   * @return		the evaluated value
+   */
+  protected double evaluate(CompiledExpression compiled, double value) {
+    synchronized(compiled) {
+      if (compiled.variables.hasVariable("I"))
+	compiled.variables.setDouble("I", value);
+      return compiled.expression.evaluate();
+    }
+  }
 
+  /**
+   * Returns the evaluated values for all the locations of the dimension,
+   * computing them if necessary.
+   *
+   * @return		the values
+   * @throws Exception	if setting up the dimension or parsing fails
+   */
+  protected synchronized double[] table() throws Exception {
+    CompiledExpression	compiled;
+    SpaceDimension	dimension;
+    double[]		result;
+    int			i;
+
+    if (m_Table != null)
+      return m_Table;
+
+    compiled  = compile();
+    dimension = spaceDimension();
+    result    = new double[dimension.width()];
+    for (i = 0; i < result.length; i++)
+      result[i] = evaluate(compiled, (Double) dimension.getValue(i));
+    m_Table = result;
+
+    return result;
+  }
+
+  /**
+   * Returns the evaluated value.
+   *
+   * @param point	the point to evaluate
+   * @return		the evaluated value
+   */
+  public Object evaluate(Object point) {
     try {
-      vars = new SimpleVariableDeclarations();
-      vars.addDouble("BASE");
-      vars.addDouble("FROM");
-      vars.addDouble("TO");
-      vars.addDouble("STEP");
-      vars.addDouble("I");
-
-      node = Parser.parse(
-	// expression
-	getExpression(),
-	// variables
-	new VariableDeclarationsCompositor(
-	  vars
-	),
-	// macros
-	new MacroDeclarationsCompositor(
-	  new MathFunctions(),
-	  new IfElseMacro(),
-	  new JavaMacro()
-	)
-      );
-
-      if (!(node instanceof DoubleExpression))
-	throw new Exception("Expression must be of type double!");
-
-      curVars = vars.getInitializer();
-      if (curVars.hasVariable("BASE"))
-	curVars.setDouble("BASE", getBase());
-      if (curVars.hasVariable("FROM"))
-	curVars.setDouble("FROM", getMin());
-      if (curVars.hasVariable("TO"))
-	curVars.setDouble("TO", getMax());
-      if (curVars.hasVariable("STEP"))
-	curVars.setDouble("STEP", getStep());
-      if (curVars.hasVariable("I"))
-	curVars.setDouble("I", (Double) point);
-
-      compiled = (DoubleExpression) node;
-
-      return compiled.evaluate();
+      return evaluate(compile(), (Double) point);
     }
     catch (Exception e) {
       System.err.println("Failed to evaluate '" + getExpression() + "' using "
@@ -441,6 +529,37 @@ public class MathParameter
     }
   }
 
+  /**
+   * Returns the evaluated value for the given location in the dimension.
+   * Uses the precomputed values if the dimension matches the one of this
+   * parameter.
+   *
+   * @param dimension	the dimension the location refers to
+   * @param location	the location in the dimension
+   * @return		the evaluated value
+   */
+  @Override
+  public Object evaluate(SpaceDimension dimension, int location) {
+    double[]	table;
+
+    if ((dimension instanceof FunctionSpaceDimension)
+      && (dimension.getMin() == getMin()) && (dimension.getStep() == getStep())) {
+      table = m_Table;
+      if (table == null) {
+	try {
+	  table = table();
+	}
+	catch (Exception e) {
+	  table = null;
+	}
+      }
+      if ((table != null) && (location >= 0) && (location < table.length))
+	return table[location];
+    }
+
+    return super.evaluate(dimension, location);
+  }
+
   /**
    * Returns a string representation of the search parameter.
    *
@@ -21,8 +21,13 @@
 package weka.core.setupgenerator;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Vector;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents a multidimensional value space.
@@ -39,15 +44,62 @@ public class Space
   /** the dimensions. */
   protected SpaceDimension[] m_Dimensions;
 
+  /** the root space this space was derived from, null if this is the root. */
+  protected Space m_Root;
+
+  /** the offsets of the locations of this space in the root space. */
+  protected int[] m_Offsets;
+
   /**
    * Initializes the space.
    *
    * @param dimensions	the dimensions of the space
    */
   public Space(SpaceDimension[] dimensions) {
+    this(dimensions, null, null);
+  }
+
+  /**
+   * Initializes the (sub-)space.
+   *
+   * @param dimensions	the dimensions of the space
+   * @param root	the root space, null if this is the root space
+   * @param offsets	the offsets of the locations in the root space,
+   * 			null if this is the root space
+   */
+  protected Space(SpaceDimension[] dimensions, Space root, int[] offsets) {
     super();
 
     m_Dimensions = dimensions.clone();
+    m_Root       = root;
+    if (offsets == null)
+      m_Offsets = new int[m_Dimensions.length];
+    else
+      m_Offsets = offsets.clone();
+  }
+
+  /**
+   * Returns the root space, i.e., the space this one was derived from
+   * via {@link #subspace(GridPoint)}.
+   *
+   * @return		the root space, itself if this is the root space
+   */
+  public Space getRoot() {
+    if (m_Root == null)
+      return this;
+    else
+      return m_Root;
+  }
+
+  /**
+   * Returns the offset of the locations of this space in the root space for
+   * the specified dimension.
+   *
+   * @param dimension	the dimension index
+   * @return		the offset
+   */
+  public int getOffset(int dimension) {
+    return m_Offsets[dimension];
   }
 
   /**
@@ -120,6 +172,83 @@ public class Space
     return result;
   }
 
+  /**
+   * Resolves the locations for all the given values at once, dimension by
+   * dimension.
+   *
+   * @param values		the double values (or list values) to get the
+   * 				locations for
+   * @return			the locations, one array per point
+   */
+  protected int[][] locate(List<Point<Object>> values) {
+    int[][]		result;
+    SpaceDimension	dimension;
+    int			i;
+    int			n;
+
+    result = new int[values.size()][dimensions()];
+    for (n = 0; n < values.size(); n++) {
+      if (values.get(n).dimensions() != dimensions())
+	throw new IllegalArgumentException(
+	  "Dimension mismatch: space=" + dimensions()
+	    + ", values=" + values.get(n).dimensions() + " (#" + n + ")");
+    }
+
+    for (i = 0; i < dimensions(); i++) {
+      dimension = getDimension(i);
+      for (n = 0; n < result.length; n++)
+	result[n][i] = dimension.getLocation(values.get(n).getValue(i));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the locations for all the given values in the various dimensions.
+   *
+   * @param values		the double values (or list values) to get the
+   * 				locations for
+   * @return			the locations, same order as the values
+   */
+  public List<Point<Integer>> getLocations(List<Point<Object>> values) {
+    List<Point<Integer>>	result;
+    int[][]			locations;
+    Integer[]			point;
+    int				i;
+    int				n;
+
+    locations = locate(values);
+    result    = new ArrayList<Point<Integer>>(locations.length);
+    for (n = 0; n < locations.length; n++) {
+      point = new Integer[locations[n].length];
+      for (i = 0; i < point.length; i++)
+	point[i] = locations[n][i];
+      result.add(new Point<Integer>(point));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the grid points for all the given values.
+   *
+   * @param values		the double values (or list values) to get the
+   * 				grid points for
+   * @return			the grid points, same order as the values
+   */
+  public List<GridPoint> toGridPoints(List<Point<Object>> values) {
+    List<GridPoint>	result;
+    int[][]		locations;
+    int			n;
+
+    locations = locate(values);
+    result    = new ArrayList<GridPoint>(locations.length);
+    for (n = 0; n < locations.length; n++)
+      result.add(newGridPoint(locations[n]));
+
+    return result;
+  }
+
   /**
    * checks whether the given locations/values are on the border of the space.
    *
@@ -162,91 +291,355 @@ public class Space
   public Space subspace(Point<Integer> center) {
     Space		result;
     SpaceDimension[]	dimensions;
+    int[]		offsets;
     int		i;
 
     dimensions = new SpaceDimension[dimensions()];
-    for (i = 0; i < dimensions.length; i++)
+    offsets    = new int[dimensions()];
+    for (i = 0; i < dimensions.length; i++) {
       dimensions[i] = getDimension(i).subdimension(
         center.getValue(i) - 1, center.getValue(i) + 1);
+      offsets[i]    = m_Offsets[i] + center.getValue(i) - 1;
+    }
 
-    result = new Space(dimensions);
+    result = new Space(dimensions, getRoot(), offsets);
 
     return result;
   }
 
   /**
-   * Increments the location array by 1.
+   * Returns a subspace around the given point, with just one more
+   * neighbor left and right on each dimension.
+   *
+   * @param center	the center of the new "universe" ;-)
+   * @return		the new space
+   */
+  public Space subspace(GridPoint center) {
+    return subspace(toLocal(center));
+  }
+
+  /**
+   * Turns the locations relative to this space into a grid point.
+   *
+   * @param locations	the locations in this space
+   * @return		the grid point
+   */
+  protected GridPoint newGridPoint(int[] locations) {
+    int[]	root;
+    int		i;
+
+    root = new int[locations.length];
+    for (i = 0; i < locations.length; i++)
+      root[i] = locations[i] + m_Offsets[i];
+
+    return new GridPoint(getRoot(), root);
+  }
+
+  /**
+   * Turns the locations relative to this space into a grid point.
+   *
+   * @param locations	the locations in this space
+   * @return		the grid point
+   */
+  public GridPoint toGridPoint(Point<Integer> locations) {
+    int[]	locs;
+    int		i;
+
+    if (locations.dimensions() != dimensions())
+      throw new IllegalArgumentException(
+        "Dimension mismatch: space=" + dimensions()
+          + ", locations=" + locations.dimensions());
+
+    locs = new int[locations.dimensions()];
+    for (i = 0; i < locs.length; i++)
+      locs[i] = locations.getValue(i);
+
+    return newGridPoint(locs);
+  }
+
+  /**
+   * Turns the grid point into locations relative to this space.
+   *
+   * @param point	the grid point
+   * @return		the locations in this space
+   */
+  public Point<Integer> toLocal(GridPoint point) {
+    Integer[]	locations;
+    int		i;
+
+    if (point.dimensions() != dimensions())
+      throw new IllegalArgumentException(
+        "Dimension mismatch: space=" + dimensions()
+          + ", point=" + point.dimensions());
+
+    locations = new Integer[point.dimensions()];
+    for (i = 0; i < locations.length; i++)
+      locations[i] = point.getLocation(i) - m_Offsets[i];
+
+    return new Point<Integer>(locations);
+  }
+
+  /**
+   * Checks whether the grid point lies within this space.
+   *
+   * @param point	the point to check
+   * @return		true if within this space
+   */
+  public boolean contains(GridPoint point) {
+    int		location;
+    int		i;
+
+    if (point.dimensions() != dimensions())
+      return false;
+
+    for (i = 0; i < dimensions(); i++) {
+      location = point.getLocation(i) - m_Offsets[i];
+      if ((location < 0) || (location >= getDimension(i).width()))
+	return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * checks whether the given point is on the border of the space.
+   *
+   * @param point		the point to check
+   * @return			true if the the point is on the border
+   */
+  public boolean isOnBorder(GridPoint point) {
+    int		i;
+
+    if (point.dimensions() != dimensions())
+      throw new IllegalArgumentException(
+        "Dimension mismatch: space=" + dimensions()
+          + ", point=" + point.dimensions());
+
+    for (i = 0; i < dimensions(); i++) {
+      if (getDimension(i).isOnBorder(point.getLocation(i) - m_Offsets[i]))
+	return true;
+    }
+
+    return false;
+  }
+
+  /**
+   * Increments the location array by 1 (mixed-radix, first dimension is the
+   * least significant one).
    *
    * @param locations		the position in the space
    * @param max		the maxima
    * @return			true if locations could be incremented
    */
-  protected boolean inc(Integer[] locations, int[] max) {
-    boolean	result;
+  protected boolean inc(int[] locations, int[] max) {
     int	i;
 
-    result = true;
-
-    i = 0;
-    while (i < locations.length) {
+    for (i = 0; i < locations.length; i++) {
       if (locations[i] < max[i] - 1) {
         locations[i]++;
-        break;
-      }
-      else {
-        locations[i] = 0;
-        i++;
-        // adding was not possible!
-        if (i == locations.length)
-          result = false;
+        return true;
       }
+      locations[i] = 0;
     }
 
+    // adding was not possible!
+    return false;
+  }
+
+  /**
+   * Returns the widths of all the dimensions.
+   *
+   * @return			the widths
+   */
+  protected int[] widths() {
+    int[]	result;
+    int		i;
+
+    result = new int[dimensions()];
+    for (i = 0; i < result.length; i++)
+      result[i] = getDimension(i).width();
+
     return result;
   }
 
   /**
-   * returns a Vector with all points in the space.
+   * Returns the size of the space, i.e., the product of the widths of all
+   * the dimensions. A space without dimensions consists of a single empty
+   * point.
    *
-   * @return			a Vector with all points
+   * @return		the number of points in the space
+   * @throws IllegalStateException	if the size exceeds the range of a long
    */
-  protected Vector<Point<Integer>> listPoints() {
-    Vector<Point<Integer>>	result;
-    int			i;
-    int[]			max;
-    Integer[]			locations;
-    boolean			ok;
+  public long size() {
+    long	result;
+    int		width;
+    int		i;
 
-    result = new Vector<Point<Integer>>();
+    result = 1;
+    for (i = 0; i < dimensions(); i++) {
+      width = getDimension(i).width();
+      if (width <= 0)
+        return 0;
+      if (result > Long.MAX_VALUE / width)
+        throw new IllegalStateException(
+          "Size of space exceeds " + Long.MAX_VALUE + " points: " + this);
+      result *= width;
+    }
 
-    // determine maximum locations per dimension
-    max = new int[dimensions()];
-    for (i = 0; i < max.length; i++)
-      max[i] = getDimension(i).width();
+    return result;
+  }
+
+  /**
+   * Returns the point (ie locations) at the given index, using the widths of
+   * the dimensions as mixed radix (first dimension is the least significant
+   * one). Consistent with the order of {@link #points()}.
+   *
+   * @param index	the index of the point (0-based)
+   * @return		the point
+   * @see		#indexOf(Point)
+   */
+  public Point<Integer> pointAt(long index) {
+    Integer[]	locations;
+    int		width;
+    int		i;
+
+    if ((index < 0) || (index >= size()))
+      throw new IndexOutOfBoundsException("Invalid index: " + index + " (size: " + size() + ")");
 
-    // create first point
     locations = new Integer[dimensions()];
-    for (i = 0; i < locations.length; i++)
-      locations[i] = 0;
-    result.add(new Point<Integer>(locations));
+    for (i = 0; i < locations.length; i++) {
+      width        = getDimension(i).width();
+      locations[i] = (int) (index % width);
+      index       /= width;
+    }
+
+    return new Point<Integer>(locations);
+  }
 
-    ok = true;
-    while (ok) {
-      ok = inc(locations, max);
-      if (ok)
-        result.add(new Point<Integer>(locations));
+  /**
+   * Returns the index of the given point (ie locations).
+   *
+   * @param locations	the point to get the index for
+   * @return		the index (0-based)
+   * @see		#pointAt(long)
+   */
+  public long indexOf(Point<Integer> locations) {
+    long	result;
+    int		location;
+    int		i;
+
+    if (locations.dimensions() != dimensions())
+      throw new IllegalArgumentException(
+        "Dimension mismatch: space=" + dimensions()
+          + ", locations=" + locations.dimensions());
+
+    result = 0;
+    for (i = dimensions() - 1; i >= 0; i--) {
+      location = locations.getValue(i);
+      if ((location < 0) || (location >= getDimension(i).width()))
+        throw new IndexOutOfBoundsException(
+          "Location out of scope in dimension #" + (i+1) + ": " + location);
+      result = result * getDimension(i).width() + location;
     }
 
     return result;
   }
 
   /**
-   * Returns the size of the space.
+   * Returns the grid point at the given index.
    *
-   * @return		the number of points in the space
+   * @param index	the index of the point (0-based)
+   * @return		the point
+   * @see		#pointAt(long)
    */
-  public int size() {
-    return listPoints().size();
+  public GridPoint gridPointAt(long index) {
+    int[]	locations;
+    int		width;
+    int		i;
+
+    if ((index < 0) || (index >= size()))
+      throw new IndexOutOfBoundsException("Invalid index: " + index + " (size: " + size() + ")");
+
+    locations = new int[dimensions()];
+    for (i = 0; i < locations.length; i++) {
+      width        = getDimension(i).width();
+      locations[i] = (int) (index % width);
+      index       /= width;
+    }
+
+    return newGridPoint(locations);
+  }
+
+  /**
+   * Returns the index of the given grid point in this space.
+   *
+   * @param point	the point to get the index for
+   * @return		the index (0-based)
+   * @see		#gridPointAt(long)
+   */
+  public long indexOf(GridPoint point) {
+    return indexOf(toLocal(point));
+  }
+
+  /**
+   * Enumerates all the locations in the space without materializing them.
+   *
+   * @param <T>	the type of point to generate
+   */
+  protected abstract class LocationEnumeration<T>
+    implements Enumeration<T> {
+
+    /** the maximum locations per dimension. */
+    protected int[] m_Max;
+
+    /** the next location to return. */
+    protected int[] m_Next;
+
+    /** whether there are more points. */
+    protected boolean m_HasMore;
+
+    /**
+     * Initializes the enumeration.
+     */
+    public LocationEnumeration() {
+      m_Max     = widths();
+      m_Next    = new int[m_Max.length];
+      m_HasMore = (size() > 0);
+    }
+
+    /**
+     * Returns whether there are more points.
+     *
+     * @return		true if more points available
+     */
+    public boolean hasMoreElements() {
+      return m_HasMore;
+    }
+
+    /**
+     * Generates the point from the locations.
+     *
+     * @param locations	the current locations, must not be stored
+     * @return		the point
+     */
+    protected abstract T newPoint(int[] locations);
+
+    /**
+     * Returns the next point.
+     *
+     * @return		the next point
+     */
+    public T nextElement() {
+      T		result;
+
+      if (!m_HasMore)
+        throw new NoSuchElementException();
+
+      result    = newPoint(m_Next);
+      m_HasMore = inc(m_Next, m_Max);
+
+      return result;
+    }
   }
 
   /**
@@ -255,7 +648,60 @@ public class Space
    * @return			an Enumeration over all points
    */
   public Enumeration<Point<Integer>> points() {
-    return listPoints().elements();
+    return new LocationEnumeration<Point<Integer>>() {
+      @Override
+      protected Point<Integer> newPoint(int[] locations) {
+	Integer[]	locs;
+	int		i;
+
+	locs = new Integer[locations.length];
+	for (i = 0; i < locs.length; i++)
+	  locs[i] = locations[i];
+
+	return new Point<Integer>(locs);
+      }
+    };
+  }
+
+  /**
+   * returns an Enumeration over all points as grid points.
+   *
+   * @return			an Enumeration over all points
+   */
+  public Enumeration<GridPoint> gridPoints() {
+    return new LocationEnumeration<GridPoint>() {
+      @Override
+      protected GridPoint newPoint(int[] locations) {
+	return newGridPoint(locations);
+      }
+    };
+  }
+
+  /**
+   * Returns a spliterator over all grid points, which splits by index range.
+   *
+   * @return			the spliterator
+   */
+  public Spliterator<GridPoint> spliterator() {
+    return new GridPointSpliterator(this, 0, size());
+  }
+
+  /**
+   * Returns a sequential stream over all grid points.
+   *
+   * @return			the stream
+   */
+  public Stream<GridPoint> stream() {
+    return StreamSupport.stream(spliterator(), false);
+  }
+
+  /**
+   * Returns a parallel stream over all grid points.
+   *
+   * @return			the stream
+   */
+  public Stream<GridPoint> parallelStream() {
+    return StreamSupport.stream(spliterator(), true);
   }
 
   /**
@@ -264,17 +710,18 @@ public class Space
    * @return			an Enumeration over all values
    */
   public Enumeration<Point<Object>> values() {
-    Vector<Point<Object>>	result;
-    Vector<Point<Integer>>	points;
-    int			i;
+    final Enumeration<Point<Integer>>	points;
 
-    result = new Vector<Point<Object>>();
+    points = points();
 
-    points = listPoints();
-    for (i = 0; i < points.size(); i++)
-      result.add(getValues(points.get(i)));
-
-    return result.elements();
+    return new Enumeration<Point<Object>>() {
+      public boolean hasMoreElements() {
+	return points.hasMoreElements();
+      }
+      public Point<Object> nextElement() {
+	return getValues(points.nextElement());
+      }
+    };
   }
 
   /**
@@ -0,0 +1,193 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AdditionalMetricsTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.lazy.IBk;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.SelectedTag;
+import weka.core.Tag;
+import weka.core.TestData;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.MathParameter;
+
+import java.util.Arrays;
+
+/**
+ * Tests computing only the evaluation metric plus the configured
+ * additional metrics in {@link MultiSearch}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class AdditionalMetricsTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public AdditionalMetricsTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns the tag for the metric.
+   *
+   * @param id		the ID of the metric
+   * @return		the tag
+   */
+  protected SelectedTag getTag(int id) {
+    return new SelectedTag(id, new DefaultEvaluationMetrics().getTags());
+  }
+
+  /**
+   * Returns the MultiSearch setup, searching the number of neighbours.
+   *
+   * @param evaluation	the metric to evaluate with
+   * @param additional	the additional metrics
+   * @return		the setup
+   */
+  protected MultiSearch getSearch(int evaluation, String additional) {
+    MultiSearch		result;
+    MathParameter	param;
+
+    param = new MathParameter();
+    param.setProperty("KNN");
+    param.setMin(1);
+    param.setMax(5);
+    param.setStep(1);
+    param.setBase(10);
+    param.setExpression("I");
+
+    result = new MultiSearch();
+    result.setClassifier(new IBk());
+    result.setSearchParameters(new AbstractParameter[]{param});
+    result.setEvaluation(getTag(evaluation));
+    result.setAdditionalMetrics(additional);
+
+    return result;
+  }
+
+  /**
+   * Tests the IDs of the metrics to compute.
+   */
+  public void testMetricIDs() {
+    MultiSearch		multi;
+
+    multi = getSearch(DefaultEvaluationMetrics.EVALUATION_RMSE, "");
+    assertTrue(Arrays.equals(new int[]{DefaultEvaluationMetrics.EVALUATION_RMSE}, multi.getMetricIDs()));
+
+    // evaluation metric first, duplicates removed
+    multi.setAdditionalMetrics(" ACC, AUC,RMSE,ACC ");
+    assertEquals("ACC, AUC,RMSE,ACC", multi.getAdditionalMetrics());
+    assertTrue(Arrays.equals(
+      new int[]{DefaultEvaluationMetrics.EVALUATION_RMSE, DefaultEvaluationMetrics.EVALUATION_ACC, DefaultEvaluationMetrics.EVALUATION_AUC},
+      multi.getMetricIDs()));
+
+    // changing the evaluation metric updates the IDs
+    multi.setEvaluation(getTag(DefaultEvaluationMetrics.EVALUATION_KAPPA));
+    assertTrue(Arrays.equals(
+      new int[]{DefaultEvaluationMetrics.EVALUATION_KAPPA, DefaultEvaluationMetrics.EVALUATION_ACC, DefaultEvaluationMetrics.EVALUATION_AUC, DefaultEvaluationMetrics.EVALUATION_RMSE},
+      multi.getMetricIDs()));
+  }
+
+  /**
+   * Tests that unknown metrics get rejected and leave the setup unchanged.
+   */
+  public void testUnknownMetric() {
+    MultiSearch		multi;
+
+    multi = getSearch(DefaultEvaluationMetrics.EVALUATION_RMSE, "ACC");
+    try {
+      multi.setAdditionalMetrics("ACC,BLAH");
+      fail("unknown metric accepted");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+    assertEquals("ACC", multi.getAdditionalMetrics());
+  }
+
+  /**
+   * Tests the command-line option.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testOptions() throws Exception {
+    MultiSearch		multi;
+    MultiSearch		copy;
+
+    multi = getSearch(DefaultEvaluationMetrics.EVALUATION_RMSE, "ACC,AUC");
+    copy  = new MultiSearch();
+    copy.setOptions(multi.getOptions());
+    assertEquals("ACC,AUC", copy.getAdditionalMetrics());
+    assertTrue(Arrays.equals(multi.getMetricIDs(), copy.getMetricIDs()));
+
+    copy.setOptions(getSearch(DefaultEvaluationMetrics.EVALUATION_RMSE, "").getOptions());
+    assertEquals("", copy.getAdditionalMetrics());
+  }
+
+  /**
+   * Tests that the performances of a search contain values for the
+   * configured metrics only, also for metrics that need the predictions.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testPerformances() throws Exception {
+    MultiSearch		multi;
+    Performance		perf;
+    Tag[]		tags;
+    int			i;
+    int			n;
+    int			id;
+
+    multi = getSearch(DefaultEvaluationMetrics.EVALUATION_ACC, "AUC,RMSE");
+    multi.buildClassifier(TestData.nominal(60, false));
+    assertTrue(multi.getTraceSize() > 0);
+    tags = new DefaultEvaluationMetrics().getTags();
+    for (i = 0; i < multi.getTraceSize(); i++) {
+      perf = multi.getTrace().get(i).getValue();
+      assertEquals(multi.getTraceValue(i), perf.getPerformance(), 0.0);
+      assertTrue(perf.getPerformance() > 50.0);
+      assertTrue(perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_AUC) > 0.5);
+      assertTrue(perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_AUC) <= 1.0);
+      assertTrue(perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_RMSE) >= 0.0);
+      for (n = 0; n < tags.length; n++) {
+	id = tags[n].getID();
+	if ((id == DefaultEvaluationMetrics.EVALUATION_ACC) || (id == DefaultEvaluationMetrics.EVALUATION_AUC) || (id == DefaultEvaluationMetrics.EVALUATION_RMSE))
+	  continue;
+	assertTrue(tags[n].getIDStr(), Double.isNaN(perf.getPerformance(id)));
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(AdditionalMetricsTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,166 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CPUBudgetTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Utils;
+
+/**
+ * Tests how {@link AbstractMultiThreadedSearch} splits the CPU budget into
+ * concurrent tasks and threads per task.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CPUBudgetTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public CPUBudgetTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Checks the allocation.
+   *
+   * @param slots	the expected number of concurrent tasks
+   * @param threads	the expected number of threads per task
+   * @param actual	the allocation to check
+   */
+  protected void assertAllocation(int slots, int threads, int[] actual) {
+    assertEquals("slots", slots, actual[0]);
+    assertEquals("threads", threads, actual[1]);
+  }
+
+  /**
+   * Tests the split of the budget.
+   */
+  public void testAllocate() {
+    // plenty of setups: concurrent single-threaded tasks
+    assertAllocation(16, 1, AbstractMultiThreadedSearch.allocate(16, 0, true, 100));
+    // unknown number of setups
+    assertAllocation(8, 1, AbstractMultiThreadedSearch.allocate(8, 0, true, -1));
+    // single setup: all threads to the task
+    assertAllocation(1, 8, AbstractMultiThreadedSearch.allocate(8, 0, true, 1));
+    // fewer setups than threads
+    assertAllocation(5, 3, AbstractMultiThreadedSearch.allocate(16, 0, true, 9));
+    // threads per task cannot be set
+    assertAllocation(9, 1, AbstractMultiThreadedSearch.allocate(16, 0, false, 9));
+    // fixed demand per task
+    assertAllocation(4, 4, AbstractMultiThreadedSearch.allocate(16, 4, false, 100));
+    assertAllocation(1, 32, AbstractMultiThreadedSearch.allocate(16, 32, true, 100));
+  }
+
+  /**
+   * Tests setting the threads per task in the classifier.
+   *
+   * @throws Exception	if setting the property fails
+   */
+  public void testApplyTaskThreads() throws Exception {
+    MultiSearch		owner;
+    DefaultSearch	search;
+    RandomForest	rf;
+
+    owner = new MultiSearch();
+    owner.setClassifier(new RandomForest());
+    search = new DefaultSearch();
+    search.setOwner(owner);
+    search.setCPUBudget(4);
+
+    search.allocateCPUBudget(1);
+    assertEquals(1, search.getEffectiveNumExecutionSlots());
+    rf = new RandomForest();
+    search.applyTaskThreads(rf);
+    assertEquals(4, rf.getNumExecutionSlots());
+
+    search.allocateCPUBudget(100);
+    assertEquals(4, search.getEffectiveNumExecutionSlots());
+    search.applyTaskThreads(rf);
+    assertEquals(1, rf.getNumExecutionSlots());
+
+    // property not available
+    owner.setClassifier(new J48());
+    search.allocateCPUBudget(1);
+    assertEquals(1, search.getEffectiveNumExecutionSlots());
+    search.setTaskThreadsProperty("");
+    owner.setClassifier(new RandomForest());
+    search.allocateCPUBudget(1);
+    rf = new RandomForest();
+    search.applyTaskThreads(rf);
+    assertEquals(new RandomForest().getNumExecutionSlots(), rf.getNumExecutionSlots());
+  }
+
+  /**
+   * Tests that an empty task threads property survives the options.
+   *
+   * @throws Exception	if setting the options fails
+   */
+  public void testTaskThreadsPropertyOptions() throws Exception {
+    DefaultSearch	search;
+    DefaultSearch	copy;
+
+    search = new DefaultSearch();
+    search.setTaskThreadsProperty("");
+    copy = new DefaultSearch();
+    copy.setOptions(search.getOptions());
+    assertEquals("", copy.getTaskThreadsProperty());
+    copy = new DefaultSearch();
+    copy.setOptions(Utils.splitOptions(Utils.joinOptions(search.getOptions())));
+    assertEquals("", copy.getTaskThreadsProperty());
+    search.setTaskThreadsProperty(AbstractMultiThreadedSearch.NO_TASK_THREADS_PROPERTY);
+    assertEquals("", search.getTaskThreadsProperty());
+
+    search.setTaskThreadsProperty("classifier.numExecutionSlots");
+    copy.setOptions(search.getOptions());
+    assertEquals("classifier.numExecutionSlots", copy.getTaskThreadsProperty());
+    copy.setOptions(new String[0]);
+    assertEquals(AbstractMultiThreadedSearch.DEFAULT_TASK_THREADS_PROPERTY, copy.getTaskThreadsProperty());
+  }
+
+  /**
+   * Tests the number of execution slots without budget.
+   */
+  public void testNoBudget() {
+    DefaultSearch	search;
+
+    search = new DefaultSearch();
+    search.setOwner(new MultiSearch());
+    search.setNumExecutionSlots(3);
+    assertEquals(3, search.getEffectiveNumExecutionSlots());
+  }
+
+  public static Test suite() {
+    return new TestSuite(CPUBudgetTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CrossValidationFoldTaskTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.rules.ZeroR;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.REPTree;
+import weka.core.Instances;
+import weka.core.TestData;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the {@link CrossValidationFoldTask} class, ie whether evaluating
+ * the folds as fork/join subtasks yields the same statistics as the
+ * sequential cross-validation.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CrossValidationFoldTaskTest
+  extends TestCase {
+
+  /**
+   * Classifier that takes a long time to build, counting the builds that
+   * did not get interrupted.
+   */
+  public static class SlowClassifier
+    extends ZeroR {
+
+    private static final long serialVersionUID = -5394616251963413245L;
+
+    /** the number of completed builds. */
+    public static final AtomicInteger COMPLETED = new AtomicInteger();
+
+    /**
+     * Blocks for 2 seconds, then builds the classifier.
+     *
+     * @param instances	the training data
+     * @throws Exception	if interrupted or building fails
+     */
+    @Override
+    public void buildClassifier(Instances instances) throws Exception {
+      Thread.sleep(2000);
+      COMPLETED.incrementAndGet();
+      super.buildClassifier(instances);
+    }
+  }
+
+  /**
+   * Classifier that modifies its training data rather than a copy.
+   */
+  public static class ModifyingClassifier
+    extends ZeroR {
+
+    private static final long serialVersionUID = 6019237513458731254L;
+
+    /**
+     * Removes the instances without class value from the training data,
+     * then builds the classifier.
+     *
+     * @param instances	the training data
+     * @throws Exception	if building fails
+     */
+    @Override
+    public void buildClassifier(Instances instances) throws Exception {
+      instances.deleteWithMissingClass();
+      super.buildClassifier(instances);
+    }
+  }
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public CrossValidationFoldTaskTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a weighted dataset.
+   *
+   * @param nominal	whether to generate a nominal or numeric class
+   * @return		the dataset
+   */
+  protected Instances getData(boolean nominal) {
+    if (nominal)
+      return TestData.nominal(113, true);
+    else
+      return TestData.numeric(113, true);
+  }
+
+  /**
+   * Cross-validates the classifier via the plan, evaluating the folds as
+   * fork/join subtasks.
+   *
+   * @param data	the data to use
+   * @param classifier	the classifier to evaluate
+   * @return		the evaluation
+   * @throws Exception	if evaluation fails
+   */
+  protected Evaluation crossValidateParallel(final Instances data, final Classifier classifier) throws Exception {
+    ForkJoinPool	pool;
+
+    pool = new ForkJoinPool(4);
+    try {
+      return pool.submit(new Callable<Evaluation>() {
+	@Override
+	public Evaluation call() throws Exception {
+	  Evaluation result;
+	  assertTrue(ForkJoinTask.inForkJoinPool());
+	  result = new Evaluation(data);
+	  CrossValidationFoldTask.crossValidateModel(result, classifier, new FoldPlan(data, 10, 1));
+	  return result;
+	}
+      }).get();
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Cross-validates the classifier via the plan, sequentially.
+   *
+   * @param data	the data to use
+   * @param classifier	the classifier to evaluate
+   * @return		the evaluation
+   * @throws Exception	if evaluation fails
+   */
+  protected Evaluation crossValidateSequential(Instances data, Classifier classifier) throws Exception {
+    Evaluation	result;
+
+    assertFalse(ForkJoinTask.inForkJoinPool());
+    result = new Evaluation(data);
+    CrossValidationFoldTask.crossValidateModel(result, classifier, new FoldPlan(data, 10, 1));
+
+    return result;
+  }
+
+  /**
+   * Cross-validates the classifier with {@link Evaluation}.
+   *
+   * @param data	the data to use
+   * @param classifier	the classifier to evaluate
+   * @return		the evaluation
+   * @throws Exception	if evaluation fails
+   */
+  protected Evaluation crossValidateEvaluation(Instances data, Classifier classifier) throws Exception {
+    Evaluation	result;
+
+    result = new Evaluation(data);
+    result.crossValidateModel(classifier, data, 10, new Random(1));
+
+    return result;
+  }
+
+  /**
+   * Tests a nominal class.
+   *
+   * @throws Exception	if evaluation fails
+   */
+  public void testNominalClass() throws Exception {
+    Instances	data;
+    Evaluation	expected;
+    Evaluation	sequential;
+    Evaluation	parallel;
+
+    data       = getData(true);
+    expected   = crossValidateEvaluation(data, new J48());
+    sequential = crossValidateSequential(data, new J48());
+    parallel   = crossValidateParallel(data, new J48());
+    assertEquals(expected.toSummaryString(), sequential.toSummaryString());
+    assertEquals(expected.toSummaryString(), parallel.toSummaryString());
+    assertEquals(expected.toClassDetailsString(), parallel.toClassDetailsString());
+    assertEquals(expected.toMatrixString(), parallel.toMatrixString());
+    assertEquals(expected.weightedAreaUnderROC(), parallel.weightedAreaUnderROC());
+    assertEquals(expected.weightedAreaUnderPRC(), parallel.weightedAreaUnderPRC());
+  }
+
+  /**
+   * Tests a numeric class.
+   *
+   * @throws Exception	if evaluation fails
+   */
+  public void testNumericClass() throws Exception {
+    Instances		data;
+    Classifier[]	classifiers;
+    Evaluation		expected;
+    Evaluation		sequential;
+    Evaluation		parallel;
+    int			i;
+
+    data        = getData(false);
+    classifiers = new Classifier[]{new LinearRegression(), new REPTree()};
+    for (i = 0; i < classifiers.length; i++) {
+      expected   = crossValidateEvaluation(data, classifiers[i]);
+      sequential = crossValidateSequential(data, classifiers[i]);
+      parallel   = crossValidateParallel(data, classifiers[i]);
+      assertEquals(expected.toSummaryString(), sequential.toSummaryString());
+      assertEquals(expected.toSummaryString(), parallel.toSummaryString());
+      assertEquals(expected.correlationCoefficient(), parallel.correlationCoefficient());
+      assertEquals(expected.rootMeanSquaredError(), parallel.rootMeanSquaredError());
+      assertEquals(expected.relativeAbsoluteError(), parallel.relativeAbsoluteError());
+    }
+  }
+
+  /**
+   * Tests a classifier that modifies the read-only training data of the
+   * folds.
+   *
+   * @throws Exception	if evaluation fails
+   */
+  public void testModifyingClassifier() throws Exception {
+    Instances	data;
+    Evaluation	expected;
+    Evaluation	sequential;
+    Evaluation	parallel;
+
+    data       = getData(true);
+    expected   = crossValidateEvaluation(data, new ModifyingClassifier());
+    sequential = crossValidateSequential(data, new ModifyingClassifier());
+    parallel   = crossValidateParallel(data, new ModifyingClassifier());
+    assertEquals(expected.toSummaryString(), sequential.toSummaryString());
+    assertEquals(expected.toSummaryString(), parallel.toSummaryString());
+  }
+
+  /**
+   * Tests whether interrupting the thread that performs the cross-validation
+   * aborts the fold subtasks running on other threads of the pool.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testInterrupt() throws Exception {
+    final Instances			data;
+    final AtomicReference<Thread>	caller;
+    final AtomicReference<Throwable>	error;
+    final CountDownLatch		finished;
+    ForkJoinPool			pool;
+
+    data     = getData(true);
+    caller   = new AtomicReference<Thread>();
+    error    = new AtomicReference<Throwable>();
+    finished = new CountDownLatch(1);
+    SlowClassifier.COMPLETED.set(0);
+    pool     = new ForkJoinPool(4);
+    try {
+      pool.execute(new Runnable() {
+	@Override
+	public void run() {
+	  caller.set(Thread.currentThread());
+	  try {
+	    CrossValidationFoldTask.crossValidateModel(new Evaluation(data), new SlowClassifier(), new FoldPlan(data, 4, 1));
+	  }
+	  catch (Throwable t) {
+	    error.set(t);
+	  }
+	  finished.countDown();
+	}
+      });
+      // let the folds start, then interrupt
+      Thread.sleep(500);
+      caller.get().interrupt();
+      assertTrue("not aborted", finished.await(1500, TimeUnit.MILLISECONDS));
+      assertTrue("error: " + error.get(), error.get() instanceof InterruptedException);
+      // the folds on the other threads must not complete either
+      Thread.sleep(2500);
+      assertEquals(0, SlowClassifier.COMPLETED.get());
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(CrossValidationFoldTaskTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,203 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ExecutorBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import weka.classifiers.meta.MultiSearch;
+import weka.classifiers.rules.ZeroR;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.TestData;
+import weka.core.Utils;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.MathParameter;
+
+/**
+ * Benchmark comparing the executor types of {@link AbstractMultiThreadedSearch}
+ * on an I/O-heavy configuration, using a classifier that blocks during
+ * training (eg when reading external resources).
+ * <br>
+ * Usage: ExecutorBenchmark [num-slots [delay-ms]]
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class ExecutorBenchmark {
+
+  /**
+   * Classifier that blocks for a while before training, simulating the
+   * loading of external resources.
+   */
+  public static class BlockingClassifier
+    extends ZeroR {
+
+    private static final long serialVersionUID = -2914770398632826128L;
+
+    /** the time to block in msec. */
+    protected int m_Delay = 10;
+
+    /** dummy parameter to search. */
+    protected int m_Dummy = 1;
+
+    /**
+     * Sets the time to block.
+     *
+     * @param value	the time in msec
+     */
+    public void setDelay(int value) {
+      m_Delay = value;
+    }
+
+    /**
+     * Returns the time to block.
+     *
+     * @return		the time in msec
+     */
+    public int getDelay() {
+      return m_Delay;
+    }
+
+    /**
+     * Sets the dummy parameter.
+     *
+     * @param value	the value
+     */
+    public void setDummy(int value) {
+      m_Dummy = value;
+    }
+
+    /**
+     * Returns the dummy parameter.
+     *
+     * @return		the value
+     */
+    public int getDummy() {
+      return m_Dummy;
+    }
+
+    /**
+     * Blocks, then builds the classifier.
+     *
+     * @param instances	the training data
+     * @throws Exception	if building fails
+     */
+    @Override
+    public void buildClassifier(Instances instances) throws Exception {
+      Thread.sleep(m_Delay);
+      super.buildClassifier(instances);
+    }
+  }
+
+  /**
+   * Returns a parameter for the dummy property.
+   *
+   * @param max		the maximum value
+   * @return		the parameter
+   */
+  protected static AbstractParameter newParameter(int max) {
+    MathParameter	result;
+
+    result = new MathParameter();
+    result.setProperty("dummy");
+    result.setMin(1);
+    result.setMax(max);
+    result.setStep(1);
+    result.setBase(10);
+    result.setExpression("I");
+
+    return result;
+  }
+
+  /**
+   * Times the search with the specified executor.
+   *
+   * @param data	the data to use
+   * @param executor	the executor type
+   * @param slots	the number of execution slots
+   * @param delay	the delay of the classifier in msec
+   * @return		the time in msec
+   * @throws Exception	if the search fails
+   */
+  protected static long time(Instances data, int executor, int slots, int delay) throws Exception {
+    MultiSearch		multi;
+    DefaultSearch	search;
+    BlockingClassifier	cls;
+    long		start;
+
+    cls = new BlockingClassifier();
+    cls.setDelay(delay);
+    search = new DefaultSearch();
+    search.setNumExecutionSlots(slots);
+    search.setExecutor(new SelectedTag(executor, AbstractMultiThreadedSearch.TAGS_EXECUTOR));
+    multi = new MultiSearch();
+    multi.setClassifier(cls);
+    multi.setSearchParameters(new AbstractParameter[]{newParameter(10)});
+    multi.setAlgorithm(search);
+
+    start = System.currentTimeMillis();
+    multi.buildClassifier(data);
+
+    return System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args	the number of execution slots and the delay in msec (optional)
+   * @throws Exception	if benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    Instances	data;
+    int		slots;
+    int		delay;
+    int[]	executors;
+    long	fixed;
+    long	duration;
+    int		i;
+
+    slots = 4;
+    delay = 20;
+    if (args.length > 0)
+      slots = Integer.parseInt(args[0]);
+    if (args.length > 1)
+      delay = Integer.parseInt(args[1]);
+
+    System.out.println("Virtual threads available: " + VirtualThreadExecutor.isAvailable());
+    data      = TestData.numeric(100, false);
+    executors = new int[]{
+      AbstractMultiThreadedSearch.EXECUTOR_FIXED,
+      AbstractMultiThreadedSearch.EXECUTOR_SHARED,
+      AbstractMultiThreadedSearch.EXECUTOR_VIRTUAL,
+    };
+
+    // warm up
+    time(data, AbstractMultiThreadedSearch.EXECUTOR_FIXED, slots, 1);
+
+    fixed = -1;
+    for (i = 0; i < executors.length; i++) {
+      duration = time(data, executors[i], slots, delay);
+      if (fixed == -1)
+	fixed = duration;
+      System.out.println(
+	new SelectedTag(executors[i], AbstractMultiThreadedSearch.TAGS_EXECUTOR)
+	  + ": " + duration + "ms"
+	  + ", relative to FIXED=" + Utils.doubleToString((double) duration / (double) fixed, 2) + "x");
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FailureHandlingTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.Instances;
+import weka.core.TestData;
+
+/**
+ * Tests how the multi-threaded searches handle failing evaluations, ie
+ * failing fast or skipping the failed setups.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class FailureHandlingTest
+  extends TestCase {
+
+  /**
+   * Offset classifier that fails for one offset and is slow for another.
+   */
+  public static class FailingClassifier
+    extends OffsetClassifier {
+
+    private static final long serialVersionUID = 5129845766710290357L;
+
+    /** the offset to fail for (-1 = never, -2 = always). */
+    public static volatile int FAIL_AT = -1;
+
+    /** the offset to be slow for (-1 = never). */
+    public static volatile int SLOW_AT = -1;
+
+    /**
+     * Fails or sleeps if required.
+     *
+     * @param data	the training data
+     * @throws Exception	if the offset is the one to fail for
+     */
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+      if ((FAIL_AT == -2) || (getOffset() == FAIL_AT))
+	throw new Exception("Failing for offset " + getOffset());
+      if (getOffset() == SLOW_AT)
+	Thread.sleep(5000);
+      super.buildClassifier(data);
+    }
+  }
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public FailureHandlingTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Resets the classifier.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    OffsetClassifier.reset();
+    FailingClassifier.FAIL_AT = -1;
+    FailingClassifier.SLOW_AT = -1;
+  }
+
+  /**
+   * Resets the classifier.
+   *
+   * @throws Exception	if tear down fails
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    OffsetClassifier.reset();
+    FailingClassifier.FAIL_AT = -1;
+    FailingClassifier.SLOW_AT = -1;
+    super.tearDown();
+  }
+
+  /**
+   * Returns the MultiSearch setup, searching offsets 0-10.
+   *
+   * @param search	the search algorithm to use
+   * @return		the setup
+   */
+  protected MultiSearch getSearch(AbstractMultiThreadedSearch search) {
+    search.setNumExecutionSlots(2);
+    return OffsetClassifier.newSearch(new FailingClassifier(), search);
+  }
+
+  /**
+   * Returns the offset of the best setup.
+   *
+   * @param search	the search to get the setup from
+   * @return		the offset
+   */
+  protected int getBestOffset(MultiSearch search) {
+    return ((OffsetClassifier) search.getBestClassifier()).getOffset();
+  }
+
+  /**
+   * Tests that a failing setup aborts the search as soon as it fails, even
+   * if evaluations submitted earlier are still running.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testFailFast() throws Exception {
+    MultiSearch		multi;
+    long		start;
+
+    FailingClassifier.SLOW_AT = 0;
+    FailingClassifier.FAIL_AT = 1;
+    multi = getSearch(new DefaultSearch());
+    start = System.currentTimeMillis();
+    try {
+      multi.buildClassifier(TestData.numeric(80, false));
+      fail("search did not fail");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+    // the slow setup would take 10 sec (2 folds)
+    assertTrue("took " + (System.currentTimeMillis() - start) + "ms", System.currentTimeMillis() - start < 4000);
+  }
+
+  /**
+   * Tests that the failed setup gets skipped, even if it would be the best
+   * one.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testSkipFailures() throws Exception {
+    DefaultSearch	search;
+    MultiSearch		multi;
+    int			offset;
+
+    FailingClassifier.FAIL_AT = 5;
+    search = new DefaultSearch();
+    search.setSkipFailures(true);
+    multi = getSearch(search);
+    multi.buildClassifier(TestData.numeric(80, false));
+    offset = getBestOffset(multi);
+    assertTrue("offset: " + offset, (offset == 4) || (offset == 6));
+  }
+
+  /**
+   * Tests skipping failed setups with RandomSearch.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testSkipFailuresRandomSearch() throws Exception {
+    RandomSearch	search;
+    MultiSearch		multi;
+
+    FailingClassifier.FAIL_AT = 5;
+    search = new RandomSearch();
+    search.setNumIterations(OffsetClassifier.NUM_SETUPS);
+    search.setSkipFailures(true);
+    multi = getSearch(search);
+    multi.buildClassifier(TestData.numeric(80, false));
+    assertTrue(getBestOffset(multi) != 5);
+  }
+
+  /**
+   * Tests that the search fails if all the setups fail, even when skipping
+   * failures.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testAllFailed() throws Exception {
+    DefaultSearch	search;
+    MultiSearch		multi;
+
+    FailingClassifier.FAIL_AT = -2;
+    search = new DefaultSearch();
+    search.setSkipFailures(true);
+    multi = getSearch(search);
+    try {
+      multi.buildClassifier(TestData.numeric(80, false));
+      fail("search did not fail");
+    }
+    catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(FailureHandlingTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * FoldPlanTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.Evaluation;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.TestData;
+
+import java.util.Random;
+
+/**
+ * Tests the {@link FoldPlan} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class FoldPlanTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public FoldPlanTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Tests whether the splits are the same as the ones generated by
+   * randomize, stratify, trainCV and testCV.
+   *
+   * @throws Exception	if generating the splits fails
+   */
+  public void testSplits() throws Exception {
+    Instances	data;
+    Instances	copy;
+    Random	random;
+    FoldPlan	plan;
+    int		i;
+    int		n;
+
+    data   = TestData.nominal(97, true);
+    plan   = new FoldPlan(data, 5, 3);
+    random = new Random(3);
+    copy   = new Instances(data);
+    copy.randomize(random);
+    copy.stratify(5);
+    for (i = 0; i < 5; i++) {
+      assertEquals(copy.trainCV(5, i, random).toString(), plan.getTrain(i).toString());
+      assertEquals(copy.testCV(5, i).toString(), plan.getTest(i).toString());
+      assertSame(plan.getTrain(i), plan.getTrain(i));
+      for (n = 0; n < plan.getTrain(i).numInstances(); n++)
+	assertEquals(plan.getTrain(i).instance(n).weight(), data.instance(plan.getTrainIndices(i)[n]).weight());
+    }
+  }
+
+  /**
+   * Tests whether cross-validation via the plan is identical to the one of
+   * {@link Evaluation}.
+   *
+   * @throws Exception	if evaluation fails
+   */
+  public void testCrossValidation() throws Exception {
+    Instances	data;
+    Evaluation	expected;
+    Evaluation	actual;
+
+    data     = TestData.nominal(97, true);
+    expected = new Evaluation(data);
+    expected.crossValidateModel(new J48(), data, 10, new Random(1));
+    actual   = new Evaluation(data);
+    CrossValidationFoldTask.crossValidateModel(actual, new J48(), new FoldPlan(data, 10, 1));
+    assertEquals(expected.toSummaryString(), actual.toSummaryString());
+    assertEquals(expected.weightedAreaUnderROC(), actual.weightedAreaUnderROC());
+  }
+
+  public static Test suite() {
+    return new TestSuite(FoldPlanTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
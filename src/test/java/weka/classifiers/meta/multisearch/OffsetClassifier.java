@@ -0,0 +1,149 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * OffsetClassifier.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.MathParameter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classifier for testing the searches, which always predicts the offset.
+ * With the numeric test data (class around 5), the best offset is the one
+ * in the middle of the search space. Counts the builds, can stop the
+ * search and block at a certain build.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ * @see weka.core.TestData#numeric(int, boolean)
+ */
+public class OffsetClassifier
+  extends AbstractClassifier {
+
+  private static final long serialVersionUID = 3446019839410209582L;
+
+  /** the number of setups in the search space. */
+  public static final int NUM_SETUPS = 11;
+
+  /** the number of builds so far. */
+  public static final AtomicInteger BUILDS = new AtomicInteger();
+
+  /** the build at which to stop the search (0 = never). */
+  public static volatile int STOP_AT;
+
+  /** the build at which to block until interrupted (0 = never). */
+  public static volatile int BLOCK_AT;
+
+  /** the search to stop. */
+  public static volatile MultiSearch SEARCH;
+
+  /** the value to predict. */
+  protected int m_Offset = 0;
+
+  /**
+   * Resets the counter and the triggers.
+   */
+  public static void reset() {
+    BUILDS.set(0);
+    STOP_AT  = 0;
+    BLOCK_AT = 0;
+    SEARCH   = null;
+  }
+
+  /**
+   * Sets the value to predict.
+   *
+   * @param value	the value
+   */
+  public void setOffset(int value) {
+    m_Offset = value;
+  }
+
+  /**
+   * Returns the value to predict.
+   *
+   * @return		the value
+   */
+  public int getOffset() {
+    return m_Offset;
+  }
+
+  /**
+   * Counts the build, stops the search or blocks if required.
+   *
+   * @param data	ignored
+   * @throws Exception	if interrupted while blocking
+   */
+  @Override
+  public void buildClassifier(Instances data) throws Exception {
+    int	build;
+
+    build = BUILDS.incrementAndGet();
+    if ((build == STOP_AT) && (SEARCH != null))
+      SEARCH.stopSearch();
+    if (build == BLOCK_AT)
+      Thread.sleep(60000);
+  }
+
+  /**
+   * Returns the offset.
+   *
+   * @param instance	ignored
+   * @return		the offset
+   */
+  @Override
+  public double[] distributionForInstance(Instance instance) {
+    return new double[]{m_Offset};
+  }
+
+  /**
+   * Returns the MultiSearch setup for searching the offsets 0 to
+   * {@link #NUM_SETUPS} - 1 of the classifier, using RMSE.
+   *
+   * @param classifier	the classifier to search
+   * @param search	the search algorithm to use
+   * @return		the setup
+   */
+  public static MultiSearch newSearch(OffsetClassifier classifier, AbstractSearch search) {
+    MultiSearch		result;
+    MathParameter	param;
+
+    param = new MathParameter();
+    param.setProperty("offset");
+    param.setMin(0);
+    param.setMax(NUM_SETUPS - 1);
+    param.setStep(1);
+    param.setBase(10);
+    param.setExpression("I");
+
+    result = new MultiSearch();
+    result.setClassifier(classifier);
+    result.setSearchParameters(new AbstractParameter[]{param});
+    result.setEvaluation(new SelectedTag(DefaultEvaluationMetrics.EVALUATION_RMSE, new DefaultEvaluationMetrics().getTags()));
+    result.setAlgorithm(search);
+
+    return result;
+  }
+}
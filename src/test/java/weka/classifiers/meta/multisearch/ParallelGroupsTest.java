@@ -0,0 +1,195 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelGroupsTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.InstancesFingerprint;
+import weka.core.TestData;
+import weka.core.Utils;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.ListParameter;
+import weka.core.setupgenerator.MathParameter;
+import weka.core.setupgenerator.ParameterGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests that searching the parameter groups concurrently yields the same
+ * results as searching them one after the other.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class ParallelGroupsTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public ParallelGroupsTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns the MultiSearch setup with two parameter groups for J48.
+   *
+   * @param search	the search algorithm to use
+   * @param parallel	whether to search the groups concurrently
+   * @return		the setup
+   */
+  protected MultiSearch getSearch(AbstractSearch search, boolean parallel) {
+    MultiSearch		result;
+    ListParameter	conf;
+    MathParameter	minNum;
+    ParameterGroup	group1;
+    ParameterGroup	group2;
+
+    conf = new ListParameter();
+    conf.setProperty("confidenceFactor");
+    conf.setList("0.05 0.1 0.25 0.5");
+    group1 = new ParameterGroup();
+    group1.setParameters(new AbstractParameter[]{conf});
+
+    minNum = new MathParameter();
+    minNum.setProperty("minNumObj");
+    minNum.setMin(1);
+    minNum.setMax(20);
+    minNum.setStep(1);
+    minNum.setBase(10);
+    minNum.setExpression("I");
+    group2 = new ParameterGroup();
+    group2.setParameters(new AbstractParameter[]{minNum});
+
+    result = new MultiSearch();
+    result.setClassifier(new J48());
+    result.setSearchParameters(new AbstractParameter[]{group1, group2});
+    result.setAlgorithm(search);
+    result.setParallelGroups(parallel);
+
+    return result;
+  }
+
+  /**
+   * Returns the trace as sorted list of setup and performance.
+   *
+   * @param search	the search to get the trace from
+   * @return		the trace
+   */
+  protected List<String> getTrace(MultiSearch search) {
+    List<String>	result;
+    int			i;
+
+    result = new ArrayList<String>();
+    for (i = 0; i < search.getTraceSize(); i++)
+      result.add(search.getTraceClassifierAsCli(i) + " = " + search.getTraceValue(i));
+    Collections.sort(result);
+
+    return result;
+  }
+
+  /**
+   * Searches the groups sequentially and concurrently and compares the
+   * results.
+   *
+   * @param sequential	the search algorithm for the sequential search
+   * @param concurrent	the search algorithm for the concurrent search
+   * @throws Exception	if the search fails
+   */
+  protected void compare(AbstractSearch sequential, AbstractSearch concurrent) throws Exception {
+    MultiSearch	expected;
+    MultiSearch	actual;
+    Instances	data;
+
+    data     = TestData.nominal(150, false);
+    expected = getSearch(sequential, false);
+    expected.buildClassifier(data);
+    actual   = getSearch(concurrent, true);
+    actual.buildClassifier(data);
+
+    assertEquals(Utils.toCommandLine(expected.getBestClassifier()), Utils.toCommandLine(actual.getBestClassifier()));
+    assertEquals(getTrace(expected), getTrace(actual));
+    assertEquals(expected.toString(), actual.toString());
+    // fingerprint computed by MultiSearch (no missing class values)
+    assertEquals(InstancesFingerprint.compute(data), expected.getAlgorithm().getDataFingerprint());
+    assertEquals(InstancesFingerprint.compute(data), actual.getAlgorithm().getDataFingerprint());
+  }
+
+  /**
+   * Tests DefaultSearch with a single execution slot.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testDefaultSearch() throws Exception {
+    compare(new DefaultSearch(), new DefaultSearch());
+  }
+
+  /**
+   * Tests DefaultSearch with the groups sharing a pool of several
+   * execution slots.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testDefaultSearchMultiThreaded() throws Exception {
+    DefaultSearch	sequential;
+    DefaultSearch	concurrent;
+
+    sequential = new DefaultSearch();
+    sequential.setNumExecutionSlots(3);
+    concurrent = new DefaultSearch();
+    concurrent.setNumExecutionSlots(3);
+    compare(sequential, concurrent);
+  }
+
+  /**
+   * Tests RandomSearch.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testRandomSearch() throws Exception {
+    RandomSearch	sequential;
+    RandomSearch	concurrent;
+
+    sequential = new RandomSearch();
+    sequential.setNumIterations(5);
+    sequential.setNumExecutionSlots(2);
+    concurrent = new RandomSearch();
+    concurrent.setNumIterations(5);
+    concurrent.setNumExecutionSlots(2);
+    compare(sequential, concurrent);
+  }
+
+  public static Test suite() {
+    return new TestSuite(ParallelGroupsTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
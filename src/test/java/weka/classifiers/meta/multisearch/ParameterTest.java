@@ -188,7 +188,7 @@ public class ParameterTest extends TestCase {
     expectedValues.put("3, 2", false);
     expectedValues.put("3, 3", false);
     for (Performance result : results) {
-      MultilayerPerceptron current = (MultilayerPerceptron) result.m_Classifier;
+      MultilayerPerceptron current = (MultilayerPerceptron) result.getClassifier();
       expectedValues.put(current.getHiddenLayers(), true);
     }
     verifyExpectedValues(expectedValues, 4);
@@ -207,7 +207,7 @@ public class ParameterTest extends TestCase {
     expectedValues.put("3, 2", false);
     expectedValues.put("3, 3", false);
     for (Performance result : results) {
-      MultilayerPerceptron current = (MultilayerPerceptron) result.m_Classifier;
+      MultilayerPerceptron current = (MultilayerPerceptron) result.getClassifier();
       expectedValues.put(current.getHiddenLayers(), true);
     }
     verifyExpectedValues(expectedValues, 4);
@@ -258,7 +258,7 @@ public class ParameterTest extends TestCase {
     
     Map<Boolean, Boolean> expectedValues = new HashMap<Boolean, Boolean>();
     for (Performance result : results) {
-      J48 current = (J48) result.m_Classifier;
+      J48 current = (J48) result.getClassifier();
       expectedValues.put(current.getUnpruned(), true);
     }
     verifyExpectedValues(expectedValues, 2);
@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PerformanceCacheTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.setupgenerator.FunctionSpaceDimension;
+import weka.core.setupgenerator.GridPoint;
+import weka.core.setupgenerator.Space;
+import weka.core.setupgenerator.SpaceDimension;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests the {@link PerformanceCache} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class PerformanceCacheTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public PerformanceCacheTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a 10x10 space.
+   *
+   * @return		the space
+   */
+  protected Space getSpace() {
+    return new Space(new SpaceDimension[]{
+      new FunctionSpaceDimension(0, 9, 1, "x"),
+      new FunctionSpaceDimension(0, 9, 1, "y"),
+    });
+  }
+
+  /**
+   * Creates a performance for the point.
+   *
+   * @param point	the point
+   * @return		the performance
+   */
+  protected Performance newPerformance(GridPoint point) {
+    Map<Integer,Double>		values;
+    DefaultEvaluationMetrics	metrics;
+
+    metrics = new DefaultEvaluationMetrics();
+    values  = new HashMap<Integer,Double>();
+    values.put(DefaultEvaluationMetrics.EVALUATION_ACC, (double) point.getIndex());
+
+    return new Performance(point, metrics, values, DefaultEvaluationMetrics.EVALUATION_ACC, -1, null);
+  }
+
+  /**
+   * Tests the hit and miss counters of an unbounded cache.
+   */
+  public void testUnbounded() {
+    PerformanceCache	cache;
+    Space		space;
+    int			i;
+
+    cache = new PerformanceCache();
+    space = getSpace();
+    for (i = 0; i < space.size(); i++)
+      cache.add(2, newPerformance(space.gridPointAt(i)));
+    assertEquals(space.size(), cache.size());
+    assertNotNull(cache.getIfPresent(2, space.gridPointAt(5)));
+    assertNull(cache.getIfPresent(10, space.gridPointAt(5)));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0, cache.getEvictions());
+  }
+
+  /**
+   * Tests the eviction of the least recently used entries.
+   */
+  public void testEviction() {
+    PerformanceCache	cache;
+    Space		space;
+    int			i;
+
+    cache = new PerformanceCache(20, 0);
+    space = getSpace();
+    for (i = 0; i < space.size(); i++) {
+      cache.add(2, newPerformance(space.gridPointAt(i)));
+      // keep first point in use
+      cache.getIfPresent(2, space.gridPointAt(0));
+      assertTrue(cache.size() <= 20);
+    }
+    assertTrue(cache.getEvictions() > 0);
+    assertNotNull(cache.getIfPresent(2, space.gridPointAt(0)));
+    assertNotNull(cache.getIfPresent(2, space.gridPointAt(space.size() - 1)));
+    assertNull(cache.getIfPresent(2, space.gridPointAt(1)));
+
+    cache = new PerformanceCache(0, newPerformance(space.gridPointAt(0)).estimateMemory() * 10);
+    for (i = 0; i < space.size(); i++)
+      cache.add(2, newPerformance(space.gridPointAt(i)));
+    assertTrue(cache.size() <= 10);
+    assertTrue(cache.getMemory() <= cache.getMaxMemory());
+  }
+
+  /**
+   * Tests whether pinned points are never evicted.
+   */
+  public void testPinned() {
+    PerformanceCache	cache;
+    Space		space;
+    Space		pinned;
+    int			i;
+
+    cache  = new PerformanceCache(20, 0);
+    space  = getSpace();
+    pinned = space.subspace(space.gridPointAt(11));
+    cache.setPinned(pinned);
+    for (i = 0; i < space.size(); i++)
+      cache.add(2, newPerformance(space.gridPointAt(i)));
+    for (i = 0; i < pinned.size(); i++)
+      assertNotNull(cache.getIfPresent(2, pinned.gridPointAt(i)));
+  }
+
+  public static Test suite() {
+    return new TestSuite(PerformanceCacheTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
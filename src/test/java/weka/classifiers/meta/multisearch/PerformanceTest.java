@@ -0,0 +1,304 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PerformanceTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.core.Tag;
+import weka.core.setupgenerator.FunctionSpaceDimension;
+import weka.core.setupgenerator.GridPoint;
+import weka.core.setupgenerator.Space;
+import weka.core.setupgenerator.SpaceDimension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the {@link Performance} and {@link PerformanceComparator} classes.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class PerformanceTest
+  extends TestCase {
+
+  /**
+   * Wrapper that returns a value derived from the metric ID and offset,
+   * recording the metrics that get retrieved.
+   */
+  public static class DummyWrapper
+    extends AbstractEvaluationWrapper<Double, DefaultEvaluationMetrics> {
+
+    private static final long serialVersionUID = 2384129817416127751L;
+
+    /** the offset to add to the metric values. */
+    protected double m_Offset;
+
+    /** the IDs of the metrics that got retrieved. */
+    protected List<Integer> m_Retrieved;
+
+    /**
+     * Initializes the wrapper.
+     *
+     * @param offset	the offset to add to the metric values
+     */
+    public DummyWrapper(double offset) {
+      super(offset, new DefaultEvaluationMetrics());
+      m_Retrieved = new ArrayList<Integer>();
+    }
+
+    /**
+     * Sets the offset.
+     *
+     * @param eval	the offset
+     */
+    @Override
+    protected void setEvaluation(Double eval) {
+      m_Offset = eval;
+    }
+
+    /**
+     * Returns the value for the metric.
+     *
+     * @param id		the id to get the metric for
+     * @param classLabel  	the class label index
+     * @return		the value
+     */
+    @Override
+    public double getMetric(int id, int classLabel) {
+      m_Retrieved.add(id);
+      return getValue(id, m_Offset);
+    }
+
+    /**
+     * Returns the value the wrapper returns for the metric.
+     *
+     * @param id		the id of the metric
+     * @param offset	the offset
+     * @return		the value
+     */
+    public static double getValue(int id, double offset) {
+      return id * 10 + offset;
+    }
+  }
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public PerformanceTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a grid point from a one-dimensional space.
+   *
+   * @param index	the index of the point
+   * @return		the point
+   */
+  protected GridPoint getPoint(int index) {
+    return new Space(new SpaceDimension[]{
+      new FunctionSpaceDimension(0, 9, 1, "x")
+    }).gridPointAt(index);
+  }
+
+  /**
+   * Tests retrieving all the metrics.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testAllMetrics() throws Exception {
+    Performance	perf;
+    Tag[]	tags;
+    int		i;
+
+    perf = new Performance(getPoint(0), new DummyWrapper(0.5), DefaultEvaluationMetrics.EVALUATION_RMSE, 0, null, null);
+    tags = new DefaultEvaluationMetrics().getTags();
+    for (i = 0; i < tags.length; i++)
+      assertEquals(tags[i].getIDStr(), DummyWrapper.getValue(tags[i].getID(), 0.5), perf.getPerformance(tags[i].getID()));
+    assertEquals(DummyWrapper.getValue(DefaultEvaluationMetrics.EVALUATION_RMSE, 0.5), perf.getPerformance());
+    assertEquals(DefaultEvaluationMetrics.EVALUATION_RMSE, perf.getEvaluation());
+  }
+
+  /**
+   * Tests that only the requested metrics get retrieved and that all the
+   * other ones are NaN.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testSelectedMetrics() throws Exception {
+    DummyWrapper	wrapper;
+    Performance		perf;
+    Tag[]		tags;
+    int			i;
+    int			id;
+
+    wrapper = new DummyWrapper(0.5);
+    perf    = new Performance(getPoint(0), wrapper, DefaultEvaluationMetrics.EVALUATION_RMSE, 0,
+      new int[]{DefaultEvaluationMetrics.EVALUATION_RMSE, DefaultEvaluationMetrics.EVALUATION_ACC}, null);
+    assertEquals(Arrays.asList(DefaultEvaluationMetrics.EVALUATION_RMSE, DefaultEvaluationMetrics.EVALUATION_ACC), wrapper.m_Retrieved);
+    assertEquals(DummyWrapper.getValue(DefaultEvaluationMetrics.EVALUATION_RMSE, 0.5), perf.getPerformance());
+    assertEquals(DummyWrapper.getValue(DefaultEvaluationMetrics.EVALUATION_ACC, 0.5), perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_ACC));
+    tags = new DefaultEvaluationMetrics().getTags();
+    for (i = 0; i < tags.length; i++) {
+      id = tags[i].getID();
+      if ((id != DefaultEvaluationMetrics.EVALUATION_RMSE) && (id != DefaultEvaluationMetrics.EVALUATION_ACC))
+	assertTrue(tags[i].getIDStr(), Double.isNaN(perf.getPerformance(id)));
+    }
+  }
+
+  /**
+   * Tests that metrics outside the range of the metrics are NaN and cannot
+   * be set.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testUnknownMetrics() throws Exception {
+    Performance	perf;
+    int		max;
+
+    perf = new Performance(getPoint(0), new DummyWrapper(0.5), DefaultEvaluationMetrics.EVALUATION_RMSE, 0, null, null);
+    max  = new DefaultEvaluationMetrics().getMaxID();
+    assertTrue(Double.isNaN(perf.getPerformance(-1)));
+    assertTrue(Double.isNaN(perf.getPerformance(max + 1)));
+    assertTrue(Double.isNaN(perf.getPerformance(Integer.MAX_VALUE)));
+
+    perf.setPerformance(-1, 1.0);
+    perf.setPerformance(max + 1, 1.0);
+    assertTrue(Double.isNaN(perf.getPerformance(-1)));
+    assertTrue(Double.isNaN(perf.getPerformance(max + 1)));
+
+    perf.setPerformance(DefaultEvaluationMetrics.EVALUATION_ACC, 42.0);
+    assertEquals(42.0, perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_ACC));
+  }
+
+  /**
+   * Tests that all metrics are NaN without an evaluation.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testNoEvaluation() throws Exception {
+    Performance	perf;
+    Tag[]	tags;
+    int		i;
+
+    perf = new Performance(getPoint(0), null, DefaultEvaluationMetrics.EVALUATION_RMSE, 0, null, null);
+    tags = new DefaultEvaluationMetrics().getTags();
+    for (i = 0; i < tags.length; i++)
+      assertTrue(tags[i].getIDStr(), Double.isNaN(perf.getPerformance(tags[i].getID())));
+    assertTrue(Double.isNaN(perf.getPerformance()));
+  }
+
+  /**
+   * Tests initializing the performance with previously computed values.
+   */
+  public void testPreviousValues() {
+    Map<Integer,Double>	values;
+    Performance		perf;
+
+    values = new HashMap<Integer,Double>();
+    values.put(DefaultEvaluationMetrics.EVALUATION_RMSE, 0.25);
+    values.put(DefaultEvaluationMetrics.EVALUATION_ACC, 75.0);
+    values.put(-1, 1.0);
+    values.put(1000, 1.0);
+    perf = new Performance(getPoint(0), new DefaultEvaluationMetrics(), values, DefaultEvaluationMetrics.EVALUATION_RMSE, 0, null);
+    assertEquals(0.25, perf.getPerformance());
+    assertEquals(75.0, perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_ACC));
+    assertTrue(Double.isNaN(perf.getPerformance(DefaultEvaluationMetrics.EVALUATION_MAE)));
+    assertTrue(Double.isNaN(perf.getPerformance(-1)));
+    assertTrue(Double.isNaN(perf.getPerformance(1000)));
+  }
+
+  /**
+   * Tests that a clone has its own metric values.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testClone() throws Exception {
+    Performance	perf;
+    Performance	clone;
+
+    perf  = new Performance(getPoint(3), new DummyWrapper(0.5), DefaultEvaluationMetrics.EVALUATION_RMSE, 0, null, null);
+    clone = (Performance) perf.clone();
+    assertEquals(perf.getPoint(), clone.getPoint());
+    assertEquals(perf.getPerformance(), clone.getPerformance());
+
+    clone.setPerformance(DefaultEvaluationMetrics.EVALUATION_RMSE, 99.0);
+    assertEquals(99.0, clone.getPerformance());
+    assertEquals(DummyWrapper.getValue(DefaultEvaluationMetrics.EVALUATION_RMSE, 0.5), perf.getPerformance());
+  }
+
+  /**
+   * Sorts performances with the given offsets for the metric and returns
+   * the indices of the points in the sorted order.
+   *
+   * @param evaluation	the metric to sort on
+   * @param offsets	the offsets for the performances
+   * @return		the indices of the points
+   * @throws Exception	if the test fails
+   */
+  protected List<Long> sort(int evaluation, double[] offsets) throws Exception {
+    List<Performance>	perfs;
+    List<Long>		result;
+    int			i;
+
+    perfs = new ArrayList<Performance>();
+    for (i = 0; i < offsets.length; i++)
+      perfs.add(new Performance(getPoint(i), new DummyWrapper(offsets[i]), evaluation, 0, null, null));
+    Collections.sort(perfs, new PerformanceComparator(evaluation, new DefaultEvaluationMetrics()));
+
+    result = new ArrayList<Long>();
+    for (i = 0; i < perfs.size(); i++)
+      result.add(perfs.get(i).getPoint().getIndex());
+
+    return result;
+  }
+
+  /**
+   * Tests that the comparator puts the best performance first, with ties
+   * broken by the points.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testComparator() throws Exception {
+    double[]	offsets;
+
+    offsets = new double[]{0.3, 0.1, 0.2, 0.1};
+    // errors: smaller is better
+    assertEquals(Arrays.asList(1L, 3L, 2L, 0L), sort(DefaultEvaluationMetrics.EVALUATION_RMSE, offsets));
+    // accuracy: larger is better
+    assertEquals(Arrays.asList(0L, 2L, 3L, 1L), sort(DefaultEvaluationMetrics.EVALUATION_ACC, offsets));
+  }
+
+  public static Test suite() {
+    return new TestSuite(PerformanceTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,377 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * PersistentPerformanceCacheTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.Instances;
+import weka.core.TestData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the {@link PersistentPerformanceCache} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class PersistentPerformanceCacheTest
+  extends TestCase {
+
+  /** the number of records each writer process appends. */
+  public static final int NUM_RECORDS = 200;
+
+  /**
+   * Appends records to a cache directory from a separate process.
+   */
+  public static class Writer {
+
+    /**
+     * Appends the records.
+     *
+     * @param args	the directory, the key prefix and the number of records
+     * @throws Exception	if writing fails
+     */
+    public static void main(String[] args) throws Exception {
+      PersistentPerformanceCache	cache;
+      int				count;
+      int				i;
+
+      cache = PersistentPerformanceCache.getInstance(new File(args[0]));
+      count = Integer.parseInt(args[2]);
+      for (i = 0; i < count; i++)
+	cache.put(args[1] + i, new int[]{1}, new double[]{i});
+      cache.close();
+    }
+  }
+
+  /** the temporary cache directory. */
+  protected File m_Directory;
+
+  /** the caches opened by the test. */
+  protected List<PersistentPerformanceCache> m_Opened;
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public PersistentPerformanceCacheTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Creates the temporary cache directory.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_Directory = File.createTempFile("perfcache", "");
+    m_Directory.delete();
+    m_Opened    = new ArrayList<PersistentPerformanceCache>();
+  }
+
+  /**
+   * Removes the temporary cache directory.
+   *
+   * @throws Exception	if tear down fails
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    int		i;
+
+    for (i = 0; i < m_Opened.size(); i++)
+      m_Opened.get(i).close();
+    new File(m_Directory, PersistentPerformanceCache.DATA_FILE).delete();
+    new File(m_Directory, PersistentPerformanceCache.INDEX_FILE).delete();
+    m_Directory.delete();
+    super.tearDown();
+  }
+
+  /**
+   * Opens a separate cache on the directory, ie behaves like a different
+   * process (but must not be used concurrently with other instances).
+   *
+   * @return		the cache
+   * @throws IOException	if opening fails
+   */
+  protected PersistentPerformanceCache open() throws IOException {
+    return opened(new PersistentPerformanceCache(m_Directory));
+  }
+
+  /**
+   * Records the cache for closing it when the test finishes.
+   *
+   * @param cache	the cache to record
+   * @return		the cache
+   */
+  protected PersistentPerformanceCache opened(PersistentPerformanceCache cache) {
+    m_Opened.add(cache);
+    return cache;
+  }
+
+  /**
+   * Checks the stored value for the key.
+   *
+   * @param cache	the cache to query
+   * @param key		the key to look up
+   * @param expected	the expected value of metric 1
+   * @throws IOException	if reading fails
+   */
+  protected void assertValue(PersistentPerformanceCache cache, String key, double expected) throws IOException {
+    Map<Integer,Double>	values;
+
+    values = cache.get(key);
+    assertNotNull("missing: " + key, values);
+    assertEquals(1, values.size());
+    assertEquals(expected, values.get(1), 0.0);
+  }
+
+  /**
+   * Tests storing and retrieving records.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testRoundTrip() throws Exception {
+    PersistentPerformanceCache	cache;
+    Map<Integer,Double>		values;
+
+    cache = opened(PersistentPerformanceCache.getInstance(m_Directory));
+    assertSame(cache, opened(PersistentPerformanceCache.getInstance(m_Directory)));
+    assertNull(cache.get("a"));
+
+    cache.put("a", new int[]{1, 2}, new double[]{0.5, Double.NaN});
+    cache.put("bü", new int[]{1}, new double[]{2.0});
+    values = cache.get("a");
+    assertEquals(2, values.size());
+    assertEquals(0.5, values.get(1), 0.0);
+    assertTrue(Double.isNaN(values.get(2)));
+    assertValue(cache, "bü", 2.0);
+    assertNull(cache.get("c"));
+    assertEquals(2, cache.size());
+
+    // most recent record wins
+    cache.put("a", new int[]{1}, new double[]{3.0});
+    assertValue(cache, "a", 3.0);
+    assertEquals(3, cache.size());
+  }
+
+  /**
+   * Tests reopening the cache directory.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testReopen() throws Exception {
+    PersistentPerformanceCache	cache;
+    int				i;
+
+    cache = open();
+    for (i = 0; i < 50; i++)
+      cache.put("key" + i, new int[]{1}, new double[]{i});
+
+    cache = open();
+    assertEquals(50, cache.size());
+    for (i = 0; i < 50; i++)
+      assertValue(cache, "key" + i, i);
+    assertNull(cache.get("key50"));
+  }
+
+  /**
+   * Tests recovering from an incomplete index entry, as left behind by a
+   * process that crashed while appending.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testIncompleteIndexEntry() throws Exception {
+    PersistentPerformanceCache	cache;
+    FileOutputStream		out;
+
+    cache = open();
+    cache.put("a", new int[]{1}, new double[]{1.0});
+    cache.put("b", new int[]{1}, new double[]{2.0});
+
+    // half an index entry
+    out = new FileOutputStream(new File(m_Directory, PersistentPerformanceCache.INDEX_FILE), true);
+    out.write(new byte[PersistentPerformanceCache.INDEX_ENTRY_SIZE / 2]);
+    out.close();
+
+    cache = open();
+    assertEquals(2, cache.size());
+    assertValue(cache, "a", 1.0);
+    assertValue(cache, "b", 2.0);
+
+    // appending drops the incomplete entry
+    cache.put("c", new int[]{1}, new double[]{3.0});
+    assertEquals(0, new File(m_Directory, PersistentPerformanceCache.INDEX_FILE).length() % PersistentPerformanceCache.INDEX_ENTRY_SIZE);
+
+    cache = open();
+    assertEquals(3, cache.size());
+    assertValue(cache, "a", 1.0);
+    assertValue(cache, "b", 2.0);
+    assertValue(cache, "c", 3.0);
+  }
+
+  /**
+   * Tests whether a more recent record for a known key, written by another
+   * process, gets picked up.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testNewerRecordFromOtherWriter() throws Exception {
+    PersistentPerformanceCache	reader;
+    PersistentPerformanceCache	writer;
+
+    reader = open();
+    writer = open();
+    writer.put("a", new int[]{1}, new double[]{1.0});
+    assertValue(reader, "a", 1.0);
+    writer.put("a", new int[]{1}, new double[]{2.0});
+    assertValue(reader, "a", 2.0);
+  }
+
+  /**
+   * Tests two processes appending to the same directory at the same time,
+   * while this process appends as well.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testConcurrentWriters() throws Exception {
+    List<Process>		processes;
+    ProcessBuilder		builder;
+    PersistentPerformanceCache	cache;
+    String			java;
+    int				i;
+    int				n;
+
+    java      = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    processes = new ArrayList<Process>();
+    for (i = 0; i < 2; i++) {
+      builder = new ProcessBuilder(
+	java, "-cp", System.getProperty("java.class.path"), Writer.class.getName(),
+	m_Directory.getAbsolutePath(), "proc" + i + "-", "" + NUM_RECORDS);
+      builder.redirectErrorStream(true);
+      builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+      processes.add(builder.start());
+    }
+    Writer.main(new String[]{m_Directory.getAbsolutePath(), "self-", "" + NUM_RECORDS});
+    for (i = 0; i < processes.size(); i++)
+      assertEquals("exit code of writer #" + (i+1), 0, processes.get(i).waitFor());
+
+    cache = open();
+    assertEquals(3 * NUM_RECORDS, cache.size());
+    for (i = 0; i < NUM_RECORDS; i++) {
+      for (n = 0; n < 2; n++)
+	assertValue(cache, "proc" + n + "-" + i, i);
+      assertValue(cache, "self-" + i, i);
+    }
+    // the instance of this process sees the other records as well
+    assertValue(opened(PersistentPerformanceCache.getInstance(m_Directory)), "proc0-" + (NUM_RECORDS - 1), NUM_RECORDS - 1);
+  }
+
+  /**
+   * Tests that the instance of a directory only gets closed and discarded
+   * once all its users have closed it.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testClose() throws Exception {
+    PersistentPerformanceCache	first;
+    PersistentPerformanceCache	second;
+    PersistentPerformanceCache	third;
+
+    first  = PersistentPerformanceCache.getInstance(m_Directory);
+    second = PersistentPerformanceCache.getInstance(m_Directory);
+    assertSame(first, second);
+    first.put("a", new int[]{1}, new double[]{1.0});
+
+    first.close();
+    assertValue(second, "a", 1.0);
+    second.close();
+    try {
+      second.get("a");
+      fail("cache not closed");
+    }
+    catch (IOException e) {
+      // expected
+    }
+
+    // the directory can be removed and a new instance gets opened
+    assertTrue(new File(m_Directory, PersistentPerformanceCache.DATA_FILE).delete());
+    assertTrue(new File(m_Directory, PersistentPerformanceCache.INDEX_FILE).delete());
+    third = opened(PersistentPerformanceCache.getInstance(m_Directory));
+    assertNotSame(first, third);
+    assertNull(third.get("a"));
+  }
+
+  /**
+   * Tests that a search reuses the results stored by a previous search and
+   * releases the cache when it finishes.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testSearch() throws Exception {
+    Instances		data;
+    DefaultSearch	search;
+    MultiSearch		multi;
+    int			builds;
+
+    data = TestData.numeric(80, false);
+    OffsetClassifier.reset();
+    try {
+      search = new DefaultSearch();
+      search.setPersistentCacheDir(m_Directory);
+      multi = OffsetClassifier.newSearch(new OffsetClassifier(), search);
+      multi.buildClassifier(data);
+      assertEquals(0, search.m_PersistentHits);
+      assertFalse(PersistentPerformanceCache.m_Instances.containsKey(m_Directory.getCanonicalFile()));
+      builds = OffsetClassifier.BUILDS.get();
+
+      OffsetClassifier.reset();
+      search = new DefaultSearch();
+      search.setPersistentCacheDir(m_Directory);
+      multi = OffsetClassifier.newSearch(new OffsetClassifier(), search);
+      multi.buildClassifier(data);
+      assertTrue(search.m_PersistentHits > 0);
+      assertTrue(OffsetClassifier.BUILDS.get() < builds);
+      assertFalse(PersistentPerformanceCache.m_Instances.containsKey(m_Directory.getCanonicalFile()));
+    }
+    finally {
+      OffsetClassifier.reset();
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(PersistentPerformanceCacheTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
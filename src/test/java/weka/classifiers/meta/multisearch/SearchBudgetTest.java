@@ -0,0 +1,197 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SearchBudgetTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.SelectedTag;
+import weka.core.TestData;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.MathParameter;
+
+/**
+ * Tests that the searches return the best setup found so far when the
+ * budget gets exhausted or the search gets stopped.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SearchBudgetTest
+  extends TestCase {
+
+  /** the number of builds for evaluating the initial space (2-fold CV). */
+  public static final int NUM_INITIAL_BUILDS = OffsetClassifier.NUM_SETUPS * 2;
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public SearchBudgetTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Resets the classifier.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    OffsetClassifier.reset();
+  }
+
+  /**
+   * Resets the classifier.
+   *
+   * @throws Exception	if tear down fails
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    OffsetClassifier.reset();
+    super.tearDown();
+  }
+
+  /**
+   * Returns the MultiSearch setup, searching offsets 0-10 with DefaultSearch.
+   *
+   * @param search	the search algorithm to use
+   * @return		the setup
+   */
+  protected MultiSearch getSearch(DefaultSearch search) {
+    return OffsetClassifier.newSearch(new OffsetClassifier(), search);
+  }
+
+  /**
+   * Checks that the best setup of the initial space got returned.
+   *
+   * @param search	the search to check
+   */
+  protected void assertBestSoFar(MultiSearch search) {
+    assertEquals(5, ((OffsetClassifier) search.getBestClassifier()).getOffset());
+  }
+
+  /**
+   * Tests running out of evaluations after the initial space, ie when the
+   * neighbourhood cannot get evaluated at all.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testMaxEvaluations() throws Exception {
+    DefaultSearch	search;
+    MultiSearch		multi;
+
+    search = new DefaultSearch();
+    search.setMaxEvaluations(OffsetClassifier.NUM_SETUPS);
+    multi = getSearch(search);
+    multi.buildClassifier(TestData.numeric(80, false));
+    assertBestSoFar(multi);
+    // initial space plus final build
+    assertEquals(NUM_INITIAL_BUILDS + 1, OffsetClassifier.BUILDS.get());
+  }
+
+  /**
+   * Tests reaching the maximum time while evaluating the neighbourhood.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testMaxTime() throws Exception {
+    DefaultSearch	search;
+    MultiSearch		multi;
+
+    OffsetClassifier.BLOCK_AT = NUM_INITIAL_BUILDS + 1;
+    search = new DefaultSearch();
+    search.setMaxTime(2);
+    multi = getSearch(search);
+    multi.buildClassifier(TestData.numeric(80, false));
+    assertBestSoFar(multi);
+  }
+
+  /**
+   * Tests stopping the search while evaluating the neighbourhood.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testStopSearch() throws Exception {
+    DefaultSearch	search;
+    MultiSearch		multi;
+
+    OffsetClassifier.STOP_AT  = NUM_INITIAL_BUILDS + 1;
+    OffsetClassifier.BLOCK_AT = NUM_INITIAL_BUILDS + 1;
+    search = new DefaultSearch();
+    multi  = getSearch(search);
+    OffsetClassifier.SEARCH = multi;
+    multi.buildClassifier(TestData.numeric(80, false));
+    assertBestSoFar(multi);
+  }
+
+  /**
+   * Tests whether the task timeout gets enforced when evaluating the folds
+   * in parallel, ie whether the fold subtasks get aborted.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testTaskTimeoutFoldParallel() throws Exception {
+    ExecutorBenchmark.BlockingClassifier	cls;
+    MathParameter				param;
+    DefaultSearch				search;
+    MultiSearch					multi;
+    long					start;
+
+    // delay of 1 msec or 3 sec
+    param = new MathParameter();
+    param.setProperty("delay");
+    param.setMin(1);
+    param.setMax(3000);
+    param.setStep(2999);
+    param.setBase(10);
+    param.setExpression("I");
+
+    cls = new ExecutorBenchmark.BlockingClassifier();
+    search = new DefaultSearch();
+    search.setNumExecutionSlots(2);
+    search.setFoldParallel(true);
+    search.setInitialSpaceNumFolds(10);
+    search.setTaskTimeout(1);
+    multi = new MultiSearch();
+    multi.setClassifier(cls);
+    multi.setSearchParameters(new AbstractParameter[]{param});
+    multi.setEvaluation(new SelectedTag(DefaultEvaluationMetrics.EVALUATION_RMSE, new DefaultEvaluationMetrics().getTags()));
+    multi.setAlgorithm(search);
+
+    // without timeout, 10 folds of 3 sec on 2 threads would take at least 15 sec
+    start = System.currentTimeMillis();
+    multi.buildClassifier(TestData.numeric(100, false));
+    assertTrue("took " + (System.currentTimeMillis() - start) + "ms", System.currentTimeMillis() - start < 10000);
+    assertEquals(1, ((ExecutorBenchmark.BlockingClassifier) multi.getBestClassifier()).getDelay());
+  }
+
+  public static Test suite() {
+    return new TestSuite(SearchBudgetTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
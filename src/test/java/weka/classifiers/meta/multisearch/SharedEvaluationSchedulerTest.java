@@ -0,0 +1,241 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SharedEvaluationSchedulerTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link SharedEvaluationScheduler} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SharedEvaluationSchedulerTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public SharedEvaluationSchedulerTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a task that waits for the latch.
+   *
+   * @param latch	the latch to wait for
+   * @return		the task
+   */
+  protected Runnable newGate(final CountDownLatch latch) {
+    return new Runnable() {
+      @Override
+      public void run() {
+	try {
+	  latch.await();
+	}
+	catch (InterruptedException e) {
+	  // ignored
+	}
+      }
+    };
+  }
+
+  /**
+   * Returns a task that records its name.
+   *
+   * @param name	the name to record
+   * @param order	the list to record the name in
+   * @return		the task
+   */
+  protected Runnable newRecorder(final String name, final List<String> order) {
+    return new Runnable() {
+      @Override
+      public void run() {
+	order.add(name);
+      }
+    };
+  }
+
+  /**
+   * Tests whether the concurrency limit of an executor is honored.
+   *
+   * @throws Exception	if waiting fails
+   */
+  public void testConcurrencyLimit() throws Exception {
+    SharedEvaluationScheduler	scheduler;
+    ExecutorService		executor;
+    final AtomicInteger		running;
+    final AtomicInteger		max;
+    final AtomicInteger		done;
+    int				i;
+
+    scheduler = new SharedEvaluationScheduler(4);
+    executor  = scheduler.newExecutor(2);
+    running   = new AtomicInteger();
+    max       = new AtomicInteger();
+    done      = new AtomicInteger();
+    for (i = 0; i < 20; i++) {
+      executor.execute(new Runnable() {
+	@Override
+	public void run() {
+	  int current = running.incrementAndGet();
+	  synchronized(max) {
+	    max.set(Math.max(max.get(), current));
+	  }
+	  try {
+	    Thread.sleep(5);
+	  }
+	  catch (InterruptedException e) {
+	    // ignored
+	  }
+	  running.decrementAndGet();
+	  done.incrementAndGet();
+	}
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(20, done.get());
+    assertTrue("max=" + max.get(), max.get() <= 2);
+  }
+
+  /**
+   * Tests whether the queues of the executors get served in turn.
+   *
+   * @throws Exception	if waiting fails
+   */
+  public void testFairness() throws Exception {
+    SharedEvaluationScheduler	scheduler;
+    ExecutorService		first;
+    ExecutorService		second;
+    CountDownLatch		latch;
+    List<String>		order;
+    int				i;
+
+    scheduler = new SharedEvaluationScheduler(1);
+    first     = scheduler.newExecutor(1);
+    second    = scheduler.newExecutor(1);
+    latch     = new CountDownLatch(1);
+    order     = Collections.synchronizedList(new ArrayList<String>());
+    first.execute(newGate(latch));
+    for (i = 0; i < 5; i++)
+      first.execute(newRecorder("first", order));
+    for (i = 0; i < 5; i++)
+      second.execute(newRecorder("second", order));
+    latch.countDown();
+    first.shutdown();
+    second.shutdown();
+    assertTrue(first.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(second.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(10, order.size());
+    for (i = 1; i < order.size(); i++)
+      assertFalse("Not alternating: " + order, order.get(i).equals(order.get(i - 1)));
+  }
+
+  /**
+   * Tests whether shutting down an executor only affects its own tasks.
+   *
+   * @throws Exception	if waiting fails
+   */
+  public void testShutdownNow() throws Exception {
+    SharedEvaluationScheduler	scheduler;
+    ExecutorService		first;
+    ExecutorService		second;
+    CountDownLatch		latch;
+    List<String>		order;
+    int				i;
+
+    scheduler = new SharedEvaluationScheduler(1);
+    first     = scheduler.newExecutor(1);
+    second    = scheduler.newExecutor(1);
+    latch     = new CountDownLatch(1);
+    order     = Collections.synchronizedList(new ArrayList<String>());
+    second.execute(newGate(latch));
+    for (i = 0; i < 3; i++) {
+      first.execute(newRecorder("first", order));
+      second.execute(newRecorder("second", order));
+    }
+    assertEquals(3, first.shutdownNow().size());
+    assertTrue(first.isTerminated());
+    latch.countDown();
+    second.shutdown();
+    assertTrue(second.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(3, order.size());
+    assertFalse(order.contains("first"));
+  }
+
+  /**
+   * Tests whether tasks submitted from a worker thread, like the ones of a
+   * nested search, get executed instead of waiting for a worker forever.
+   *
+   * @throws Exception	if waiting fails
+   */
+  public void testNested() throws Exception {
+    SharedEvaluationScheduler		scheduler;
+    final ExecutorService		inner;
+    ExecutorService			outer;
+    Future<String>			future;
+
+    scheduler = new SharedEvaluationScheduler(1);
+    outer     = scheduler.newExecutor(1);
+    inner     = scheduler.newExecutor(1);
+    future    = outer.submit(new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+	Future<String> nested = inner.submit(new Callable<String>() {
+	  @Override
+	  public String call() {
+	    return Thread.currentThread().getName();
+	  }
+	});
+	return nested.get(10, TimeUnit.SECONDS);
+      }
+    });
+    // runs in the worker that executes the outer task
+    assertEquals("SharedEvaluationScheduler-1", future.get(10, TimeUnit.SECONDS));
+    inner.shutdown();
+    outer.shutdown();
+    assertTrue(inner.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(outer.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  public static Test suite() {
+    return new TestSuite(SharedEvaluationSchedulerTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
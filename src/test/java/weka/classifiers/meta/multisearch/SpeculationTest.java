@@ -0,0 +1,239 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SpeculationTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.Instances;
+import weka.core.TestData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the speculative evaluations of {@link DefaultSearch}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SpeculationTest
+  extends TestCase {
+
+  /** the size of the training sets of the subsequent spaces (10-fold CV). */
+  public static final int SUBSEQUENT_TRAIN_SIZE = 72;
+
+  /**
+   * Offset classifier that counts the builds on the training sets of the
+   * subsequent spaces, per offset.
+   */
+  public static class CountingClassifier
+    extends OffsetClassifier {
+
+    private static final long serialVersionUID = -3092345620923759321L;
+
+    /** the builds per offset (subsequent spaces only). */
+    public static final Map<Integer,Integer> SUBSEQUENT_BUILDS = new HashMap<Integer,Integer>();
+
+    /**
+     * Counts the build.
+     *
+     * @param data	the training data
+     * @throws Exception	if building fails
+     */
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+      Integer	count;
+
+      if (data.numInstances() == SUBSEQUENT_TRAIN_SIZE) {
+	synchronized(SUBSEQUENT_BUILDS) {
+	  count = SUBSEQUENT_BUILDS.get(getOffset());
+	  SUBSEQUENT_BUILDS.put(getOffset(), (count == null) ? 1 : count + 1);
+	}
+      }
+      super.buildClassifier(data);
+    }
+  }
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public SpeculationTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Resets the counters.
+   *
+   * @throws Exception	if setup fails
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    OffsetClassifier.reset();
+    CountingClassifier.SUBSEQUENT_BUILDS.clear();
+  }
+
+  /**
+   * Resets the counters.
+   *
+   * @throws Exception	if tear down fails
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    OffsetClassifier.reset();
+    CountingClassifier.SUBSEQUENT_BUILDS.clear();
+    super.tearDown();
+  }
+
+  /**
+   * Returns the search.
+   *
+   * @param speculative	the number of speculative candidates
+   * @param maxEvals	the maximum number of evaluations
+   * @return		the search
+   */
+  protected DefaultSearch getAlgorithm(int speculative, int maxEvals) {
+    DefaultSearch	result;
+
+    result = new DefaultSearch();
+    result.setNumExecutionSlots(2);
+    result.setSpeculativeCandidates(speculative);
+    result.setMaxEvaluations(maxEvals);
+
+    return result;
+  }
+
+  /**
+   * Returns the MultiSearch setup, searching offsets 0-10.
+   *
+   * @param search	the search algorithm to use
+   * @return		the setup
+   */
+  protected MultiSearch getSearch(DefaultSearch search) {
+    return OffsetClassifier.newSearch(new CountingClassifier(), search);
+  }
+
+  /**
+   * Returns the trace as sorted list of folds, setup and performance.
+   *
+   * @param search	the search to get the trace from
+   * @return		the trace
+   */
+  protected List<String> getTrace(MultiSearch search) {
+    List<String>	result;
+    int			i;
+
+    result = new ArrayList<String>();
+    for (i = 0; i < search.getTraceSize(); i++)
+      result.add(search.getTraceFolds(i) + ": " + search.getTraceParameterSettings(i) + " = " + search.getTraceValue(i));
+    Collections.sort(result);
+
+    return result;
+  }
+
+  /**
+   * Searches with and without speculation and compares the results.
+   *
+   * @param maxEvals	the maximum number of evaluations
+   * @throws Exception	if the search fails
+   */
+  protected void compare(int maxEvals) throws Exception {
+    MultiSearch		expected;
+    MultiSearch		actual;
+    DefaultSearch	speculative;
+    Instances		data;
+
+    data        = TestData.numeric(80, false);
+    expected    = getSearch(getAlgorithm(0, maxEvals));
+    expected.buildClassifier(data);
+    speculative = getAlgorithm(3, maxEvals);
+    actual      = getSearch(speculative);
+    actual.buildClassifier(data);
+
+    assertTrue("no hits: " + speculative.getSpeculativeStatistics(), speculative.m_SpeculativeHits > 0);
+    assertEquals(((OffsetClassifier) expected.getBestClassifier()).getOffset(), ((OffsetClassifier) actual.getBestClassifier()).getOffset());
+    assertEquals(getTrace(expected), getTrace(actual));
+  }
+
+  /**
+   * Tests that speculation does not change the results.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testSameResults() throws Exception {
+    compare(0);
+  }
+
+  /**
+   * Tests that speculation does not change the results under a budget, ie
+   * that only adopted speculative evaluations count towards it.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testSameResultsWithBudget() throws Exception {
+    // initial space and the neighbourhood of the best setup
+    compare(OffsetClassifier.NUM_SETUPS + 3);
+  }
+
+  /**
+   * Tests that the adopted speculative evaluations get reused rather than
+   * evaluated again.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testAdoptedReused() throws Exception {
+    DefaultSearch		search;
+    MultiSearch			multi;
+    Iterator<Integer>		iter;
+    int				offset;
+
+    search = getAlgorithm(3, 0);
+    multi  = getSearch(search);
+    multi.buildClassifier(TestData.numeric(80, false));
+
+    assertTrue("no hits: " + search.getSpeculativeStatistics(), search.m_SpeculativeHits > 0);
+    // the neighbourhood of the best setup got evaluated exactly once with
+    // 10-fold CV, unused speculations may have been aborted
+    for (offset = 4; offset <= 6; offset++)
+      assertEquals("offset " + offset, 10, CountingClassifier.SUBSEQUENT_BUILDS.get(offset).intValue());
+    iter = CountingClassifier.SUBSEQUENT_BUILDS.keySet().iterator();
+    while (iter.hasNext()) {
+      offset = iter.next();
+      assertTrue("offset " + offset, CountingClassifier.SUBSEQUENT_BUILDS.get(offset) <= 10);
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(SpeculationTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
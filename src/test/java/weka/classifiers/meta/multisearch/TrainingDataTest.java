@@ -0,0 +1,184 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TrainingDataTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.classifiers.rules.ZeroR;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.InstancesView;
+import weka.core.TestData;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.MathParameter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the training data that {@link MultiSearch} passes on to the
+ * evaluations and the final model.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TrainingDataTest
+  extends TestCase {
+
+  /**
+   * Classifier that records the datasets it gets trained on.
+   */
+  public static class RecordingClassifier
+    extends ZeroR {
+
+    private static final long serialVersionUID = 7946285061374458930L;
+
+    /** the training datasets, in the order of the builds. */
+    public static final List<Instances> DATA = Collections.synchronizedList(new ArrayList<Instances>());
+
+    /** a dummy parameter to search. */
+    protected int m_Dummy = 0;
+
+    /**
+     * Sets the dummy parameter.
+     *
+     * @param value	the value
+     */
+    public void setDummy(int value) {
+      m_Dummy = value;
+    }
+
+    /**
+     * Returns the dummy parameter.
+     *
+     * @return		the value
+     */
+    public int getDummy() {
+      return m_Dummy;
+    }
+
+    /**
+     * Records the data and builds the classifier.
+     *
+     * @param instances	the training data
+     * @throws Exception	if building fails
+     */
+    @Override
+    public void buildClassifier(Instances instances) throws Exception {
+      DATA.add(instances);
+      super.buildClassifier(instances);
+    }
+  }
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public TrainingDataTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Clears the recorded datasets.
+   *
+   * @throws Exception	if tear down fails
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    RecordingClassifier.DATA.clear();
+    super.tearDown();
+  }
+
+  /**
+   * Asserts that the dataset does not share any instances with the
+   * caller's data.
+   *
+   * @param caller	the caller's instances
+   * @param data	the dataset to check
+   */
+  protected void assertNotShared(Map<Instance,Boolean> caller, Instances data) {
+    int		i;
+
+    for (i = 0; i < data.numInstances(); i++)
+      assertFalse("instance #" + (i+1) + " shared", caller.containsKey(data.instance(i)));
+  }
+
+  /**
+   * Tests that neither the evaluations nor the final model share the
+   * instances with the caller and that the final model gets trained on a
+   * modifiable copy.
+   *
+   * @throws Exception	if the search fails
+   */
+  public void testCopy() throws Exception {
+    Instances			data;
+    String			before;
+    Map<Instance,Boolean>	caller;
+    MathParameter		param;
+    MultiSearch			multi;
+    Instances			last;
+    int				i;
+
+    data   = TestData.numeric(30, false);
+    before = data.toString();
+    caller = new IdentityHashMap<Instance,Boolean>();
+    for (i = 0; i < data.numInstances(); i++)
+      caller.put(data.instance(i), true);
+
+    param = new MathParameter();
+    param.setProperty("dummy");
+    param.setMin(1);
+    param.setMax(3);
+    param.setStep(1);
+    param.setBase(10);
+    param.setExpression("I");
+    multi = new MultiSearch();
+    multi.setClassifier(new RecordingClassifier());
+    multi.setSearchParameters(new AbstractParameter[]{param});
+    multi.buildClassifier(data);
+
+    assertEquals(before, data.toString());
+    assertTrue(RecordingClassifier.DATA.size() > 1);
+    for (i = 0; i < RecordingClassifier.DATA.size(); i++)
+      assertNotShared(caller, RecordingClassifier.DATA.get(i));
+
+    // final model
+    last = RecordingClassifier.DATA.get(RecordingClassifier.DATA.size() - 1);
+    assertFalse(last instanceof InstancesView);
+    assertEquals(data.numInstances(), last.numInstances());
+    last.delete(0);
+    assertEquals(data.numInstances() - 1, last.numInstances());
+  }
+
+  public static Test suite() {
+    return new TestSuite(TrainingDataTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * VirtualThreadExecutorTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta.multisearch;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.meta.MultiSearch;
+import weka.core.SelectedTag;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the {@link VirtualThreadExecutor} class. Uses a cached thread pool
+ * as underlying executor, so that the tests also run on JVMs without
+ * virtual threads.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class VirtualThreadExecutorTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public VirtualThreadExecutorTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Tests whether the concurrency limit is honored.
+   *
+   * @throws Exception	if waiting fails
+   */
+  public void testConcurrencyLimit() throws Exception {
+    ExecutorService		executor;
+    final AtomicInteger		running;
+    final AtomicInteger		max;
+    final AtomicInteger		done;
+    int				i;
+
+    executor = new VirtualThreadExecutor(Executors.newCachedThreadPool(), 3);
+    running  = new AtomicInteger();
+    max      = new AtomicInteger();
+    done     = new AtomicInteger();
+    for (i = 0; i < 20; i++) {
+      executor.execute(new Runnable() {
+	@Override
+	public void run() {
+	  int current = running.incrementAndGet();
+	  synchronized(max) {
+	    max.set(Math.max(max.get(), current));
+	  }
+	  try {
+	    Thread.sleep(5);
+	  }
+	  catch (InterruptedException e) {
+	    // ignored
+	  }
+	  running.decrementAndGet();
+	  done.incrementAndGet();
+	}
+      });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(20, done.get());
+    assertTrue("max=" + max.get(), max.get() <= 3);
+  }
+
+  /**
+   * Tests whether tasks waiting for a slot get cancelled by shutdownNow.
+   *
+   * @throws Exception	if waiting fails
+   */
+  public void testShutdownNow() throws Exception {
+    ExecutorService		executor;
+    final CountDownLatch	latch;
+    Future<?>			waiting;
+
+    executor = new VirtualThreadExecutor(Executors.newCachedThreadPool(), 1);
+    latch    = new CountDownLatch(1);
+    executor.submit(new Runnable() {
+      @Override
+      public void run() {
+	// keeps the slot until released, ignoring interrupts
+	while (latch.getCount() > 0) {
+	  try {
+	    latch.await();
+	  }
+	  catch (InterruptedException e) {
+	    // ignored
+	  }
+	}
+      }
+    });
+    waiting = executor.submit(new Runnable() {
+      @Override
+      public void run() {
+	// nothing to do
+      }
+    });
+    executor.shutdownNow();
+    try {
+      waiting.get(10, TimeUnit.SECONDS);
+    }
+    catch (CancellationException e) {
+      // expected
+    }
+    latch.countDown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertTrue(waiting.isCancelled());
+  }
+
+  /**
+   * Tests the fallback when virtual threads are not supported.
+   */
+  public void testFallback() {
+    DefaultSearch	search;
+    ExecutorService	executor;
+
+    search = new DefaultSearch();
+    search.setOwner(new MultiSearch());
+    search.setNumExecutionSlots(2);
+    search.setExecutor(new SelectedTag(AbstractMultiThreadedSearch.EXECUTOR_VIRTUAL, AbstractMultiThreadedSearch.TAGS_EXECUTOR));
+    executor = search.newExecutorPool();
+    try {
+      assertEquals(VirtualThreadExecutor.isAvailable(), (executor instanceof VirtualThreadExecutor));
+    }
+    finally {
+      executor.shutdownNow();
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(VirtualThreadExecutorTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
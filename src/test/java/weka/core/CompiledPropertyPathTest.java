@@ -0,0 +1,330 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CompiledPropertyPathTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.functions.SMO;
+import weka.classifiers.functions.supportVector.PolyKernel;
+import weka.classifiers.functions.supportVector.RBFKernel;
+
+import java.io.Serializable;
+
+/**
+ * Tests the {@link CompiledPropertyPath} class, comparing it against the
+ * reflective {@link SetupGenerator#setValue(Object, String, Object)}.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class CompiledPropertyPathTest
+  extends TestCase {
+
+  /** the tags of the selected tag property (ID strings get upper-cased). */
+  public static final Tag[] TAGS = {
+    new Tag(1, "one", "First"),
+    new Tag(2, "two", "Second"),
+  };
+
+  /**
+   * Enum for testing.
+   */
+  public enum Size {
+    SMALL,
+    LARGE
+  }
+
+  /**
+   * Bean with properties of all the supported types.
+   */
+  public static class Bean
+    implements Serializable {
+
+    private static final long serialVersionUID = -4815079813424541416L;
+
+    protected int m_Int;
+    protected long m_Long;
+    protected float m_Float;
+    protected double m_Double;
+    protected boolean m_Boolean;
+    protected char m_Char;
+    protected Integer m_IntObj = 0;
+    protected Double m_DoubleObj = 0.0;
+    protected Character m_CharObj = ' ';
+    protected String m_String = "";
+    protected SelectedTag m_Tag = new SelectedTag(1, TAGS);
+    protected Size m_Size = Size.SMALL;
+    protected double[] m_Values = new double[3];
+    protected Bean m_Nested;
+    protected Bean[] m_Children = new Bean[0];
+
+    public int getInt() { return m_Int; }
+    public void setInt(int value) { m_Int = value; }
+    public long getLong() { return m_Long; }
+    public void setLong(long value) { m_Long = value; }
+    public float getFloat() { return m_Float; }
+    public void setFloat(float value) { m_Float = value; }
+    public double getDouble() { return m_Double; }
+    public void setDouble(double value) { m_Double = value; }
+    public boolean getBoolean() { return m_Boolean; }
+    public void setBoolean(boolean value) { m_Boolean = value; }
+    public char getChar() { return m_Char; }
+    public void setChar(char value) { m_Char = value; }
+    public Integer getIntObj() { return m_IntObj; }
+    public void setIntObj(Integer value) { m_IntObj = value; }
+    public Double getDoubleObj() { return m_DoubleObj; }
+    public void setDoubleObj(Double value) { m_DoubleObj = value; }
+    public Character getCharObj() { return m_CharObj; }
+    public void setCharObj(Character value) { m_CharObj = value; }
+    public String getString() { return m_String; }
+    public void setString(String value) { m_String = value; }
+    public SelectedTag getTag() { return m_Tag; }
+    public void setTag(SelectedTag value) { m_Tag = value; }
+    public Size getSize() { return m_Size; }
+    public void setSize(Size value) { m_Size = value; }
+    public double[] getValues() { return m_Values; }
+    public void setValues(double[] value) { m_Values = value; }
+    public Bean getNested() { return m_Nested; }
+    public void setNested(Bean value) { m_Nested = value; }
+    public Bean[] getChildren() { return m_Children; }
+    public void setChildren(Bean[] value) { m_Children = value; }
+
+    /**
+     * Returns the state of the bean.
+     *
+     * @return		the state
+     */
+    @Override
+    public String toString() {
+      StringBuilder	result;
+      int		i;
+
+      result = new StringBuilder();
+      result.append(m_Int).append(",").append(m_Long).append(",").append(m_Float).append(",");
+      result.append(m_Double).append(",").append(m_Boolean).append(",").append((int) m_Char).append(",");
+      result.append(m_IntObj).append(",").append(m_DoubleObj).append(",").append((int) m_CharObj.charValue()).append(",");
+      result.append(m_String).append(",").append(m_Tag.getSelectedTag().getID()).append(",").append(m_Size).append(",");
+      for (i = 0; i < m_Values.length; i++)
+	result.append(m_Values[i]).append(";");
+      result.append(",[").append(m_Nested).append("]");
+      for (i = 0; i < m_Children.length; i++)
+	result.append(",<").append(m_Children[i]).append(">");
+
+      return result.toString();
+    }
+  }
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public CompiledPropertyPathTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a bean with a nested bean and two children.
+   *
+   * @return		the bean
+   */
+  protected Bean newBean() {
+    Bean	result;
+
+    result = new Bean();
+    result.setNested(new Bean());
+    result.setChildren(new Bean[]{new Bean(), new Bean()});
+
+    return result;
+  }
+
+  /**
+   * Sets the value via the compiled path and the reflective path and
+   * compares the resulting objects.
+   *
+   * @param path	the property path
+   * @param value	the value to set (Double or String)
+   * @return		the bean modified via the compiled path
+   * @throws Exception	if setting fails
+   */
+  protected Bean compare(String path, Object value) throws Exception {
+    Bean			expected;
+    Bean			actual;
+    CompiledPropertyPath	compiled;
+
+    expected = newBean();
+    new SetupGenerator().setValue(expected, path, value);
+
+    actual   = newBean();
+    compiled = CompiledPropertyPath.compile(actual, path, value);
+    assertTrue("not compiled: " + path, compiled.isValid());
+    assertTrue("not applied: " + path, compiled.setValue(actual, value));
+    assertEquals(path + "=" + value, expected.toString(), actual.toString());
+
+    // the compiled path can be reused for other objects
+    actual = newBean();
+    assertTrue(compiled.setValue(actual, value));
+    assertEquals(path + "=" + value, expected.toString(), actual.toString());
+
+    return actual;
+  }
+
+  /**
+   * Tests primitive properties.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testPrimitive() throws Exception {
+    assertEquals(3, compare("int", 3.7).getInt());
+    assertEquals(-4, compare("int", "-4").getInt());
+    assertEquals(123456789012L, compare("long", 123456789012.0).getLong());
+    assertEquals(2.5f, compare("float", 2.5).getFloat());
+    assertEquals(0.125, compare("double", 0.125).getDouble());
+    assertEquals(1e-3, compare("double", "1e-3").getDouble());
+    assertTrue(compare("boolean", 1.0).getBoolean());
+    assertFalse(compare("boolean", 0.0).getBoolean());
+    assertTrue(compare("boolean", "true").getBoolean());
+    assertEquals('x', compare("char", "x").getChar());
+  }
+
+  /**
+   * Tests that a double value for a char property gets set as the
+   * character with that code.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testCharFromDouble() throws Exception {
+    assertEquals('A', compare("char", 65.0).getChar());
+    assertEquals(Character.valueOf('a'), compare("charObj", 97.0).getCharObj());
+  }
+
+  /**
+   * Tests boxed properties.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testBoxed() throws Exception {
+    assertEquals(Integer.valueOf(7), compare("intObj", 7.0).getIntObj());
+    assertEquals(Integer.valueOf(8), compare("intObj", "8").getIntObj());
+    assertEquals(Double.valueOf(0.5), compare("doubleObj", 0.5).getDoubleObj());
+    assertEquals(Character.valueOf('z'), compare("charObj", "z").getCharObj());
+  }
+
+  /**
+   * Tests string, selected tag and enum properties.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testStringTagEnum() throws Exception {
+    assertEquals("hello", compare("string", "hello").getString());
+    assertEquals(2, compare("tag", "TWO").getTag().getSelectedTag().getID());
+    assertEquals(2, compare("tag", "Second").getTag().getSelectedTag().getID());
+    // unknown tag: unchanged
+    assertEquals(1, compare("tag", "three").getTag().getSelectedTag().getID());
+
+    // enums are not supported, neither compiled nor reflective
+    assertFalse(CompiledPropertyPath.compile(newBean(), "size", "LARGE").isValid());
+    assertFalse(CompiledPropertyPath.compile(newBean(), "size", "LARGE").setValue(newBean(), "LARGE"));
+    try {
+      new SetupGenerator().setValue(newBean(), "size", "LARGE");
+      fail("enum got set");
+    }
+    catch (Exception e) {
+      // expected
+    }
+  }
+
+  /**
+   * Tests array elements, both as final property and along the path.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testArray() throws Exception {
+    Bean			bean;
+    CompiledPropertyPath	compiled;
+
+    // array element as final property (not supported by the reflective path)
+    bean     = newBean();
+    compiled = CompiledPropertyPath.compile(bean, "values[1]", 4.5);
+    assertTrue(compiled.isValid());
+    assertTrue(compiled.setValue(bean, 4.5));
+    assertEquals(0.0, bean.getValues()[0]);
+    assertEquals(4.5, bean.getValues()[1]);
+    assertEquals(0.0, bean.getValues()[2]);
+
+    // array element along the path
+    bean = compare("children[1].int", 9.0);
+    assertEquals(0, bean.getChildren()[0].getInt());
+    assertEquals(9, bean.getChildren()[1].getInt());
+  }
+
+  /**
+   * Tests nested properties, also of Weka objects.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testNested() throws Exception {
+    SMO				smo;
+    CompiledPropertyPath	compiled;
+
+    assertEquals(0.75, compare("nested.double", 0.75).getNested().getDouble());
+    assertEquals(2, compare("nested.tag", "TWO").getNested().getTag().getSelectedTag().getID());
+
+    smo      = new SMO();
+    compiled = CompiledPropertyPath.compile(smo, "kernel.exponent", 3.0);
+    assertTrue(compiled.setValue(smo, 3.0));
+    assertEquals(3.0, ((PolyKernel) smo.getKernel()).getExponent());
+
+    compiled = CompiledPropertyPath.compile(smo, "kernel", RBFKernel.class.getName() + " -G 0.5");
+    assertTrue(compiled.setValue(smo, RBFKernel.class.getName() + " -G 0.5"));
+    assertEquals(0.5, ((RBFKernel) smo.getKernel()).getGamma());
+  }
+
+  /**
+   * Tests that the path does not get applied if the classes differ from
+   * the ones it was compiled for.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testMismatch() throws Exception {
+    SMO				smo;
+    CompiledPropertyPath	compiled;
+
+    smo      = new SMO();
+    compiled = CompiledPropertyPath.compile(smo, "kernel.exponent", 3.0);
+    // different value class
+    assertFalse(compiled.setValue(smo, "3.0"));
+    // different class along the path
+    smo.setKernel(new RBFKernel());
+    assertFalse(compiled.setValue(smo, 3.0));
+    // different root object
+    assertFalse(compiled.setValue(newBean(), 3.0));
+  }
+
+  public static Test suite() {
+    return new TestSuite(CompiledPropertyPathTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
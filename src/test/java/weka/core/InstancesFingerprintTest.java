@@ -0,0 +1,169 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstancesFingerprintTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import java.util.ArrayList;
+
+/**
+ * Tests the {@link InstancesFingerprint} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesFingerprintTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public InstancesFingerprintTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a small weighted dataset.
+   *
+   * @return		the dataset
+   */
+  protected Instances getData() {
+    return TestData.nominal(10, true);
+  }
+
+  /**
+   * Tests whether identical data results in the same fingerprint.
+   */
+  public void testEqual() {
+    Instances	data;
+
+    data = getData();
+    assertEquals(InstancesFingerprint.compute(data), InstancesFingerprint.compute(getData()));
+    assertEquals(InstancesFingerprint.compute(data), InstancesFingerprint.compute(new Instances(data)));
+    assertEquals(16, new InstancesFingerprint().update(data).toString().length());
+  }
+
+  /**
+   * Tests whether changes to header, values and weights are detected.
+   */
+  public void testChanges() {
+    Instances	data;
+    long	fp;
+
+    fp = InstancesFingerprint.compute(getData());
+
+    data = getData();
+    data.setRelationName("other");
+    assertFalse(fp == InstancesFingerprint.compute(data));
+
+    data = getData();
+    data.setClassIndex(0);
+    assertFalse(fp == InstancesFingerprint.compute(data));
+
+    data = getData();
+    data.instance(3).setValue(0, 1.0);
+    assertFalse(fp == InstancesFingerprint.compute(data));
+
+    data = getData();
+    data.instance(5).setWeight(2.0);
+    assertFalse(fp == InstancesFingerprint.compute(data));
+
+    data = getData();
+    data.instance(7).setMissing(0);
+    assertFalse(fp == InstancesFingerprint.compute(data));
+
+    data = getData();
+    data.delete(9);
+    assertFalse(fp == InstancesFingerprint.compute(data));
+
+    data = getData();
+    data.swap(1, 2);
+    assertFalse(fp == InstancesFingerprint.compute(data));
+  }
+
+  /**
+   * Returns a dataset with a single string attribute and value.
+   *
+   * @param value	the string value
+   * @return		the dataset
+   */
+  protected Instances getStringData(String value) {
+    ArrayList<Attribute>	atts;
+    Instances			result;
+
+    atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("str", (ArrayList<String>) null));
+    result = new Instances("test", atts, 0);
+    result.add(new DenseInstance(1.0, new double[]{result.attribute(0).addStringValue(value)}));
+
+    return result;
+  }
+
+  /**
+   * Tests whether changes to the text of string values are detected, also
+   * for the first string of an attribute (value 0).
+   */
+  public void testStrings() {
+    Instances	dense;
+    Instances	sparse;
+
+    assertEquals(0.0, getStringData("foo").instance(0).value(0));
+    assertFalse(InstancesFingerprint.compute(getStringData("foo")) == InstancesFingerprint.compute(getStringData("completely different")));
+    assertEquals(InstancesFingerprint.compute(getStringData("foo")), InstancesFingerprint.compute(getStringData("foo")));
+
+    // the sparse instance does not store value 0
+    dense  = getStringData("foo");
+    sparse = new Instances(dense, 1);
+    sparse.add(new SparseInstance(dense.instance(0)));
+    assertEquals(0, sparse.instance(0).numValues());
+    assertEquals(InstancesFingerprint.compute(dense), InstancesFingerprint.compute(sparse));
+    assertFalse(InstancesFingerprint.compute(getStringData("bar")) == InstancesFingerprint.compute(sparse));
+  }
+
+  /**
+   * Tests whether the sparse and dense representations result in the same
+   * fingerprint.
+   */
+  public void testSparse() {
+    Instances	dense;
+    Instances	sparse;
+    int		i;
+
+    dense  = getData();
+    sparse = new Instances(dense, dense.numInstances());
+    for (i = 0; i < dense.numInstances(); i++)
+      sparse.add(new SparseInstance(dense.instance(i)));
+    assertTrue(sparse.instance(0) instanceof SparseInstance);
+    assertEquals(InstancesFingerprint.compute(dense), InstancesFingerprint.compute(sparse));
+  }
+
+  public static Test suite() {
+    return new TestSuite(InstancesFingerprintTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstancesViewTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import java.util.Random;
+
+/**
+ * Tests the {@link InstancesView} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class InstancesViewTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public InstancesViewTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a dataset with a numeric class, missing for every 5th instance.
+   *
+   * @return		the dataset
+   */
+  protected Instances getData() {
+    Instances	result;
+    int		i;
+
+    result = TestData.numeric(20, false);
+    for (i = 0; i < result.numInstances(); i += 5)
+      result.instance(i).setClassMissing();
+
+    return result;
+  }
+
+  /**
+   * Tests whether the view shares the instances of the dataset.
+   */
+  public void testSharing() {
+    Instances	data;
+    Instances	view;
+    int		i;
+
+    data = getData();
+    view = new InstancesView(data, new int[]{3, 1, 7});
+    assertEquals(3, view.numInstances());
+    assertEquals(data.classIndex(), view.classIndex());
+    assertTrue(data.equalHeaders(view));
+    assertSame(data.instance(3), view.instance(0));
+    assertSame(data.instance(1), view.instance(1));
+    assertSame(data.instance(7), view.instance(2));
+
+    view = new InstancesView(data);
+    assertEquals(data.numInstances(), view.numInstances());
+    for (i = 0; i < data.numInstances(); i++)
+      assertSame(data.instance(i), view.instance(i));
+    assertEquals(data.toString(), view.toString());
+  }
+
+  /**
+   * Tests whether the modifying methods fail.
+   */
+  public void testReadOnly() {
+    Instances	data;
+    Instances	view;
+
+    data = getData();
+    view = new InstancesView(data);
+    view.setClassIndex(data.classIndex());
+    try {
+      view.add(data.instance(0));
+      fail("add did not fail");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      view.randomize(new Random(1));
+      fail("randomize did not fail");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      view.setClassIndex(0);
+      fail("setClassIndex did not fail");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      view.deleteWithMissingClass();
+      fail("deleteWithMissingClass did not fail");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // copies are modifiable
+    data = new Instances(view);
+    data.deleteWithMissingClass();
+    assertEquals(16, data.numInstances());
+  }
+
+  public static Test suite() {
+    return new TestSuite(InstancesViewTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SetupGeneratorBenchmark.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.meta.FilteredClassifier;
+
+/**
+ * Microbenchmark comparing the reflective {@link SetupGenerator#setValue(Object, String, Object)}
+ * with {@link CompiledPropertyPath#setValue(Object, Object)}.
+ * <br>
+ * Usage: SetupGeneratorBenchmark [iterations]
+ *
+ * @author  fracpete (fracpete at waikato dot ac dot nz)
+ */
+public class SetupGeneratorBenchmark {
+
+  /**
+   * Times setting the value via the reflective path.
+   *
+   * @param generator	the generator to use
+   * @param o		the object to modify
+   * @param path	the property path
+   * @param values	the values to cycle through
+   * @param iterations	the number of iterations
+   * @return		the time in nanoseconds
+   * @throws Exception	if setting fails
+   */
+  protected static long timeReflective(SetupGenerator generator, Object o, String path, Object[] values, int iterations) throws Exception {
+    long	start;
+    int		i;
+
+    start = System.nanoTime();
+    for (i = 0; i < iterations; i++)
+      generator.setValue(o, path, values[i % values.length]);
+
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Times setting the value via the compiled path.
+   *
+   * @param o		the object to modify
+   * @param path	the property path
+   * @param values	the values to cycle through
+   * @param iterations	the number of iterations
+   * @return		the time in nanoseconds
+   * @throws Exception	if setting fails
+   */
+  protected static long timeCompiled(Object o, String path, Object[] values, int iterations) throws Exception {
+    CompiledPropertyPath	compiled;
+    long			start;
+    int				i;
+
+    start    = System.nanoTime();
+    compiled = CompiledPropertyPath.compile(o, path, values[0]);
+    if (!compiled.isValid())
+      throw new IllegalStateException("Failed to compile: " + path);
+    for (i = 0; i < iterations; i++) {
+      if (!compiled.setValue(o, values[i % values.length]))
+	throw new IllegalStateException("Guard failed: " + path);
+    }
+
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Runs the benchmark for a single property path.
+   *
+   * @param generator	the generator to use
+   * @param o		the object to modify
+   * @param path	the property path
+   * @param values	the values to cycle through
+   * @param iterations	the number of iterations
+   * @throws Exception	if setting fails
+   */
+  protected static void benchmark(SetupGenerator generator, Object o, String path, Object[] values, int iterations) throws Exception {
+    long	reflective;
+    long	compiled;
+
+    // warm up
+    timeReflective(generator, o, path, values, iterations / 10);
+    timeCompiled(o, path, values, iterations / 10);
+
+    reflective = timeReflective(generator, o, path, values, iterations);
+    compiled   = timeCompiled(o, path, values, iterations);
+    System.out.println(
+      path + ": reflective=" + (reflective / iterations) + "ns/op"
+	+ ", compiled=" + (compiled / iterations) + "ns/op"
+	+ ", speedup=" + Utils.doubleToString((double) reflective / (double) compiled, 1) + "x");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args	the number of iterations (optional)
+   * @throws Exception	if benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    SetupGenerator	generator;
+    FilteredClassifier	fc;
+    int			iterations;
+
+    iterations = 1000000;
+    if (args.length > 0)
+      iterations = Integer.parseInt(args[0]);
+
+    generator = new SetupGenerator();
+    fc        = new FilteredClassifier();
+    fc.setClassifier(new LinearRegression());
+
+    benchmark(generator, fc, "classifier.ridge", new Object[]{1e-8, 1e-4, 1.0}, iterations);
+    benchmark(generator, fc, "classifier.eliminateColinearAttributes", new Object[]{"true", "false"}, iterations);
+    benchmark(generator, fc, "classifier.attributeSelectionMethod", new Object[]{"0", "1", "2"}, iterations);
+  }
+}
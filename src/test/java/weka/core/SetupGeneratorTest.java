@@ -0,0 +1,221 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SetupGeneratorTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.functions.SMO;
+import weka.classifiers.functions.supportVector.PolyKernel;
+import weka.core.setupgenerator.AbstractParameter;
+import weka.core.setupgenerator.MathParameter;
+import weka.core.setupgenerator.Point;
+
+/**
+ * Tests the {@link SetupGenerator} class, in particular that the setups
+ * created from the shared template are independent of each other.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SetupGeneratorTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public SetupGeneratorTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a parameter for the specified property.
+   *
+   * @param property	the property to set
+   * @return		the parameter
+   */
+  protected MathParameter getParameter(String property) {
+    MathParameter	result;
+
+    result = new MathParameter();
+    result.setProperty(property);
+    result.setMin(1);
+    result.setMax(5);
+    result.setStep(1);
+    result.setBase(10);
+    result.setExpression("I");
+
+    return result;
+  }
+
+  /**
+   * Returns a generator for the complexity and the kernel's exponent of
+   * the SMO.
+   *
+   * @param base	the base object
+   * @return		the generator
+   */
+  protected SetupGenerator getGenerator(SMO base) {
+    SetupGenerator	result;
+
+    result = new SetupGenerator();
+    result.setBaseObject(base);
+    result.setParameters(new AbstractParameter[]{
+      getParameter("c"),
+      getParameter("kernel.exponent"),
+    });
+
+    return result;
+  }
+
+  /**
+   * Returns the setup for the given values.
+   *
+   * @param generator	the generator to use
+   * @param original	the object to configure
+   * @param c		the complexity
+   * @param exponent	the exponent of the kernel
+   * @return		the setup
+   * @throws Exception	if setup fails
+   */
+  protected SMO setup(SetupGenerator generator, SMO original, double c, double exponent) throws Exception {
+    return (SMO) generator.setup(original, new Point<Object>(new Object[]{c, exponent}));
+  }
+
+  /**
+   * Returns the exponent of the SMO's kernel.
+   *
+   * @param smo		the SMO to get the exponent from
+   * @return		the exponent
+   */
+  protected double getExponent(SMO smo) {
+    return ((PolyKernel) smo.getKernel()).getExponent();
+  }
+
+  /**
+   * Tests that consecutive setups are independent of each other and do
+   * not change the original object.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testIndependentSetups() throws Exception {
+    SMO			original;
+    SetupGenerator	generator;
+    SMO			first;
+    SMO			second;
+    SMO			third;
+
+    original = new SMO();
+    original.setToleranceParameter(0.01);
+    generator = getGenerator(original);
+
+    first  = setup(generator, original, 2.0, 3.0);
+    second = setup(generator, original, 4.0, 5.0);
+    assertNotSame(first, second);
+    assertNotSame(first.getKernel(), second.getKernel());
+    assertEquals(2.0, first.getC());
+    assertEquals(3.0, getExponent(first));
+    assertEquals(4.0, second.getC());
+    assertEquals(5.0, getExponent(second));
+
+    // changes to a setup do not show up in later setups
+    first.setEpsilon(0.5);
+    ((PolyKernel) first.getKernel()).setUseLowerOrder(true);
+    third = setup(generator, original, 1.0, 1.0);
+    assertEquals(original.getEpsilon(), third.getEpsilon());
+    assertFalse(((PolyKernel) third.getKernel()).getUseLowerOrder());
+    assertEquals(0.01, third.getToleranceParameter());
+
+    // the original is unchanged
+    assertEquals(new SMO().getC(), original.getC());
+    assertEquals(new PolyKernel().getExponent(), getExponent(original));
+    assertNotSame(original.getKernel(), third.getKernel());
+  }
+
+  /**
+   * Tests that the changes made to the original object get picked up after
+   * resetting the generator or when using a different original.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testChangedOriginal() throws Exception {
+    SMO			original;
+    SMO			other;
+    SetupGenerator	generator;
+    SMO			smo;
+
+    original  = new SMO();
+    generator = getGenerator(original);
+    smo       = setup(generator, original, 2.0, 3.0);
+    assertFalse(smo.getBuildCalibrationModels());
+
+    original.setBuildCalibrationModels(true);
+    generator.reset();
+    smo = setup(generator, original, 2.0, 3.0);
+    assertTrue(smo.getBuildCalibrationModels());
+    assertEquals(3.0, getExponent(smo));
+
+    // different original, with a different kernel setup
+    other = new SMO();
+    other.setKernel(new PolyKernel());
+    ((PolyKernel) other.getKernel()).setUseLowerOrder(true);
+    generator.setBaseObject(other);
+    smo = setup(generator, other, 4.0, 5.0);
+    assertFalse(smo.getBuildCalibrationModels());
+    assertEquals(4.0, smo.getC());
+    assertEquals(5.0, getExponent(smo));
+    assertTrue(((PolyKernel) smo.getKernel()).getUseLowerOrder());
+  }
+
+  /**
+   * Tests that the setups are the same as when copying the original for
+   * every setup.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testSameAsCopy() throws Exception {
+    SMO			original;
+    SetupGenerator	generator;
+    SMO			expected;
+    int			i;
+
+    original  = new SMO();
+    generator = getGenerator(original);
+    for (i = 1; i <= 5; i++) {
+      expected = (SMO) new SerializedObject(original).getObject();
+      expected.setC(i);
+      ((PolyKernel) expected.getKernel()).setExponent(6 - i);
+      assertEquals(
+	Utils.joinOptions(expected.getOptions()),
+	Utils.joinOptions(setup(generator, original, i, 6 - i).getOptions()));
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(SetupGeneratorTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
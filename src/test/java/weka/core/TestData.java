@@ -0,0 +1,110 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * TestData.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates the artificial datasets used by the tests. The datasets have
+ * two numeric attributes "x" and "y" (standard normal) and a class. The
+ * same parameters always result in the same data.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class TestData {
+
+  /** the seed for generating the data. */
+  public static final long SEED = 42;
+
+  /**
+   * Returns a dataset with a nominal class (labels "a", "b" and "c"): every
+   * 7th instance is "c", the others "a" if x + 0.3*y is positive, otherwise
+   * "b".
+   *
+   * @param numInstances	the number of instances
+   * @param weighted		whether to use weights 1, 2 and 3 in turn
+   * 				instead of 1 for all instances
+   * @return			the dataset
+   */
+  public static Instances nominal(int numInstances, boolean weighted) {
+    return generate(true, numInstances, weighted);
+  }
+
+  /**
+   * Returns a dataset with a numeric class around 5:
+   * 5 + 2*x - y + noise.
+   *
+   * @param numInstances	the number of instances
+   * @param weighted		whether to use weights 1, 2 and 3 in turn
+   * 				instead of 1 for all instances
+   * @return			the dataset
+   */
+  public static Instances numeric(int numInstances, boolean weighted) {
+    return generate(false, numInstances, weighted);
+  }
+
+  /**
+   * Generates the dataset.
+   *
+   * @param nominal		whether to generate a nominal or numeric class
+   * @param numInstances	the number of instances
+   * @param weighted		whether to use varying weights
+   * @return			the dataset
+   */
+  protected static Instances generate(boolean nominal, int numInstances, boolean weighted) {
+    ArrayList<Attribute>	atts;
+    ArrayList<String>		values;
+    Instances			result;
+    Random			random;
+    double[]			vals;
+    int				i;
+
+    atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x"));
+    atts.add(new Attribute("y"));
+    if (nominal) {
+      values = new ArrayList<String>();
+      values.add("a");
+      values.add("b");
+      values.add("c");
+      atts.add(new Attribute("class", values));
+    }
+    else {
+      atts.add(new Attribute("class"));
+    }
+    result = new Instances("test", atts, numInstances);
+    result.setClassIndex(2);
+    random = new Random(SEED);
+    for (i = 0; i < numInstances; i++) {
+      vals    = new double[3];
+      vals[0] = random.nextGaussian();
+      vals[1] = random.nextGaussian();
+      if (nominal)
+	vals[2] = (i % 7 == 0) ? 2 : ((vals[0] + 0.3 * vals[1] > 0) ? 0 : 1);
+      else
+	vals[2] = 5 + 2 * vals[0] - vals[1] + random.nextGaussian() * 0.3;
+      result.add(new DenseInstance(weighted ? 1.0 + (i % 3) : 1.0, vals));
+    }
+
+    return result;
+  }
+}
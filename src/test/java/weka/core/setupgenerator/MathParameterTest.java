@@ -0,0 +1,162 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * MathParameterTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.setupgenerator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests the {@link MathParameter} class, comparing the precomputed values
+ * against evaluating the expression.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class MathParameterTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public MathParameterTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a parameter using all the variables of the expression.
+   *
+   * @return		the parameter
+   */
+  protected MathParameter getParameter() {
+    MathParameter	result;
+
+    result = new MathParameter();
+    result.setProperty("dummy");
+    result.setMin(-3);
+    result.setMax(3);
+    result.setStep(0.5);
+    result.setBase(2);
+    result.setExpression("pow(BASE,I) + FROM*STEP - TO");
+
+    return result;
+  }
+
+  /**
+   * Compares the values for all the locations of the dimension against
+   * evaluating the expression for the values of the dimension.
+   *
+   * @param param	the parameter to evaluate
+   * @param dimension	the dimension to evaluate
+   */
+  protected void compare(MathParameter param, SpaceDimension dimension) {
+    Object	expected;
+    Object	actual;
+    int		i;
+
+    for (i = 0; i < dimension.width(); i++) {
+      expected = param.evaluate(dimension.getValue(i));
+      actual   = param.evaluate(dimension, i);
+      assertEquals(dimension + ", location " + i, expected, actual);
+    }
+  }
+
+  /**
+   * Tests the values for the dimension of the parameter.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testOwnDimension() throws Exception {
+    MathParameter	param;
+    SpaceDimension	dimension;
+
+    param     = getParameter();
+    dimension = param.spaceDimension();
+    assertEquals(13, dimension.width());
+    compare(param, dimension);
+    assertNotNull("not tabulated", param.m_Table);
+    assertEquals(1.0 - 1.5 - 3.0, param.evaluate(dimension, 6));
+    // out of range: evaluated from the dimension's value
+    assertEquals(param.evaluate(dimension.getValue(-1)), param.evaluate(dimension, -1));
+  }
+
+  /**
+   * Tests the values for subdimensions, as used by the search algorithms,
+   * and for dimensions whose min or step differ from the parameter.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testOtherDimensions() throws Exception {
+    MathParameter	param;
+    SpaceDimension	dimension;
+
+    param     = getParameter();
+    dimension = param.spaceDimension();
+    compare(param, dimension.subdimension(0, 4));
+    compare(param, dimension.subdimension(5, 8));
+    compare(param, dimension.subdimension(10, 12));
+    // different min
+    compare(param, new FunctionSpaceDimension(-2.75, 3.25, 0.5, "dummy"));
+    // different step
+    compare(param, new FunctionSpaceDimension(-3, 3, 0.25, "dummy"));
+    // larger max
+    compare(param, new FunctionSpaceDimension(-3, 5, 0.5, "dummy"));
+  }
+
+  /**
+   * Tests that changing the parameter discards the precomputed values.
+   *
+   * @throws Exception	if the test fails
+   */
+  public void testChange() throws Exception {
+    MathParameter	param;
+    SpaceDimension	dimension;
+
+    param     = getParameter();
+    dimension = param.spaceDimension();
+    compare(param, dimension);
+
+    param.setBase(3);
+    assertNull(param.m_Table);
+    compare(param, dimension);
+    assertEquals(1.0 - 1.5 - 3.0, param.evaluate(dimension, 6));
+    assertEquals(9.0 - 1.5 - 3.0, param.evaluate(dimension, 10));
+
+    param.setExpression("I*I");
+    compare(param, dimension);
+    assertEquals(6.25, param.evaluate(dimension, 1));
+
+    param.setMin(-2);
+    dimension = param.spaceDimension();
+    compare(param, dimension);
+    assertEquals(4.0, param.evaluate(dimension, 0));
+  }
+
+  public static Test suite() {
+    return new TestSuite(MathParameterTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,280 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SpaceTest.java
+ * Copyright (C) 2021 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core.setupgenerator;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the {@link Space} class.
+ *
+ * @author FracPete (fracpete at waikato dot ac dot nz)
+ */
+public class SpaceTest
+  extends TestCase {
+
+  /**
+   * Initializes the test.
+   *
+   * @param name	the name of the test
+   */
+  public SpaceTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns a small space with a numeric and a list dimension.
+   *
+   * @return		the space
+   */
+  protected Space getSpace() {
+    return new Space(new SpaceDimension[]{
+      new FunctionSpaceDimension(-2, 2, 1, "x"),
+      new ListSpaceDimension(0, 2, new String[]{"a", "b", "c"}, "y"),
+    });
+  }
+
+  /**
+   * Tests the size computation.
+   */
+  public void testSize() {
+    assertEquals(15, getSpace().size());
+  }
+
+  /**
+   * Tests the space without dimensions, which consists of a single empty
+   * point.
+   */
+  public void testEmpty() {
+    Space			space;
+    Enumeration<Point<Integer>>	enm;
+    Point<Integer>		point;
+
+    space = new Space(new SpaceDimension[0]);
+    assertEquals(1, space.size());
+    enm = space.points();
+    assertTrue(enm.hasMoreElements());
+    point = enm.nextElement();
+    assertEquals(0, point.dimensions());
+    assertFalse(enm.hasMoreElements());
+    assertEquals(point, space.pointAt(0));
+    assertEquals(0, space.indexOf(point));
+    assertEquals(0, space.gridPoints().nextElement().getIndex());
+  }
+
+  /**
+   * Tests whether the size is computed without enumerating the space.
+   */
+  public void testLargeSize() {
+    Space	space;
+
+    space = new Space(new SpaceDimension[]{
+      new FunctionSpaceDimension(0, 999, 1, "a"),
+      new FunctionSpaceDimension(0, 999, 1, "b"),
+      new FunctionSpaceDimension(0, 999, 1, "c"),
+      new FunctionSpaceDimension(0, 999, 1, "d"),
+    });
+    assertEquals(1000L * 1000L * 1000L * 1000L, space.size());
+  }
+
+  /**
+   * Tests the enumeration of the points.
+   */
+  public void testPoints() {
+    Space			space;
+    Enumeration<Point<Integer>>	enm;
+    Set<String>			points;
+    int				count;
+
+    space  = getSpace();
+    enm    = space.points();
+    points = new HashSet<String>();
+    count  = 0;
+    while (enm.hasMoreElements()) {
+      points.add(enm.nextElement().toString());
+      count++;
+    }
+    assertEquals(space.size(), count);
+    assertEquals(space.size(), points.size());
+  }
+
+  /**
+   * Tests the enumeration of the values.
+   */
+  public void testValues() {
+    Enumeration<Point<Object>>	enm;
+    Point<Object>		first;
+
+    enm   = getSpace().values();
+    first = enm.nextElement();
+    assertEquals(-2.0, first.getValue(0));
+    assertEquals("a", first.getValue(1));
+  }
+
+  /**
+   * Tests the conversion between indices and points.
+   */
+  public void testIndexing() {
+    Space			space;
+    Enumeration<Point<Integer>>	enm;
+    Point<Integer>		point;
+    long			index;
+
+    space = getSpace();
+    enm   = space.points();
+    index = 0;
+    while (enm.hasMoreElements()) {
+      point = enm.nextElement();
+      assertEquals(point, space.pointAt(index));
+      assertEquals(index, space.indexOf(point));
+      index++;
+    }
+
+    try {
+      space.pointAt(space.size());
+      fail("Index out of range not detected!");
+    }
+    catch (IndexOutOfBoundsException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Tests the grid points of a space and its subspaces.
+   */
+  public void testGridPoints() {
+    Space			space;
+    Space			sub;
+    Enumeration<GridPoint>	enm;
+    Set<GridPoint>		points;
+    GridPoint			point;
+    GridPoint			center;
+
+    space  = getSpace();
+    enm    = space.gridPoints();
+    points = new HashSet<GridPoint>();
+    while (enm.hasMoreElements()) {
+      point = enm.nextElement();
+      assertEquals(space.getValues(space.toLocal(point)), point.getValues());
+      points.add(point);
+    }
+    assertEquals(space.size(), points.size());
+
+    center = space.gridPointAt(6);
+    assertFalse(space.isOnBorder(center));
+    sub = space.subspace(center);
+    assertEquals(9, sub.size());
+    assertTrue(sub.contains(center));
+    enm = sub.gridPoints();
+    while (enm.hasMoreElements()) {
+      point = enm.nextElement();
+      assertTrue(points.contains(point));
+      assertEquals(point, space.gridPointAt(space.indexOf(point)));
+      assertEquals(space.indexOf(point), point.getIndex());
+    }
+  }
+
+  /**
+   * Tests the lookup of locations for values.
+   */
+  public void testLocations() {
+    Space			space;
+    Space			sub;
+    Enumeration<Point<Integer>>	enm;
+    Point<Integer>		point;
+    List<Point<Integer>>	points;
+    List<Point<Object>>		values;
+    int				i;
+
+    space  = getSpace();
+    enm    = space.points();
+    points = new ArrayList<Point<Integer>>();
+    values = new ArrayList<Point<Object>>();
+    while (enm.hasMoreElements()) {
+      point = enm.nextElement();
+      assertEquals(point, space.getLocations(space.getValues(point)));
+      points.add(point);
+      values.add(space.getValues(point));
+    }
+    assertEquals(points, space.getLocations(values));
+
+    assertEquals(1, space.getDimension(0).getLocation(-0.9));
+    assertEquals(1, space.getDimension(0).getLocation(-0.5));
+    assertEquals(0, space.getDimension(0).getLocation(10.0));
+    assertEquals(2, space.getDimension(1).getLocation("c"));
+    assertEquals(0, space.getDimension(1).getLocation("z"));
+
+    sub = space.subspace(space.gridPointAt(6));
+    enm = sub.points();
+    while (enm.hasMoreElements()) {
+      point = enm.nextElement();
+      assertEquals(point, sub.getLocations(sub.getValues(point)));
+    }
+    values = new ArrayList<Point<Object>>();
+    enm    = sub.points();
+    while (enm.hasMoreElements())
+      values.add(sub.getValues(enm.nextElement()));
+    for (i = 0; i < values.size(); i++)
+      assertEquals(values.get(i), sub.toGridPoints(values).get(i).getValues());
+  }
+
+  /**
+   * Tests the spliterator and the streams.
+   */
+  public void testStream() {
+    Space			space;
+    Spliterator<GridPoint>	first;
+    Spliterator<GridPoint>	second;
+    List<GridPoint>		points;
+    Enumeration<GridPoint>	enm;
+
+    space  = getSpace();
+    second = space.spliterator();
+    assertTrue(second.hasCharacteristics(Spliterator.SUBSIZED));
+    first  = second.trySplit();
+    assertEquals(space.size(), first.estimateSize() + second.estimateSize());
+
+    points = space.parallelStream().collect(Collectors.<GridPoint>toList());
+    assertEquals(space.size(), points.size());
+    enm = space.gridPoints();
+    for (GridPoint point: points)
+      assertEquals(enm.nextElement(), point);
+    assertEquals(space.size(), space.stream().distinct().count());
+  }
+
+  public static Test suite() {
+    return new TestSuite(SpaceTest.class);
+  }
+
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}